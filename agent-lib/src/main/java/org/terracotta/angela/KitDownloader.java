@@ -0,0 +1,293 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terracotta.angela.common.util.FileUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Downloads a file in one pass, computing its MD5 on the fly.
+ * <p>
+ * When the server accepts range requests, the file is cut into chunks downloaded by several connections at the same
+ * time into a preallocated file, and hashed in order as soon as each chunk is complete. The completed chunks are
+ * recorded next to the partial download, so that a download which failed resumes where it stopped, as long as the
+ * remote file did not change.
+ */
+final class KitDownloader {
+  private static final Logger logger = LoggerFactory.getLogger(KitDownloader.class);
+  static final int CHUNK_SIZE = 4 * 1024 * 1024;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final URL url;
+  private final Path dest;
+  private final Path part;
+  private final Path progress;
+  private final int connections;
+
+  KitDownloader(URL url, Path dest, int connections) {
+    this.url = url;
+    this.dest = dest;
+    this.part = dest.resolveSibling(dest.getFileName() + ".part");
+    this.progress = dest.resolveSibling(dest.getFileName() + ".progress");
+    this.connections = connections;
+  }
+
+  /**
+   * @return the MD5 of the downloaded file, as an hex string
+   */
+  String download() throws IOException {
+    Files.createDirectories(dest.toAbsolutePath().getParent());
+    MessageDigest md5 = md5();
+    boolean probed = false;
+    if (connections > 1 && url.getProtocol().startsWith("http")) {
+      // the server is probed with a HEAD request, so that the whole file does not start being sent for nothing
+      HttpURLConnection head = (HttpURLConnection) url.openConnection();
+      head.setRequestMethod("HEAD");
+      try {
+        int responseCode = head.getResponseCode();
+        if (responseCode / 100 == 2) {
+          probed = true;
+          if (acceptsRanges(head)) {
+            downloadRanges(head.getURL(), head.getContentLengthLong(), validator(head), md5);
+            return complete(md5);
+          }
+        } else {
+          logger.debug("HEAD request rejected by: {}: HTTP {}, probing it with a GET request", url, responseCode);
+        }
+      } finally {
+        head.disconnect();
+      }
+    }
+    URLConnection connection = url.openConnection();
+    connection.connect();
+    long length = connection.getContentLengthLong();
+    if (!probed && acceptsRanges(connection)) {
+      // the url may have been redirected: the ranges are requested from where the file is
+      URL location = connection.getURL();
+      ((HttpURLConnection) connection).disconnect();
+      downloadRanges(location, length, validator(connection), md5);
+    } else {
+      try (InputStream is = connection.getInputStream();
+           OutputStream os = Files.newOutputStream(part)) {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        Progress downloaded = new Progress(length);
+        int count;
+        while ((count = is.read(buffer)) != -1) {
+          os.write(buffer, 0, count);
+          md5.update(buffer, 0, count);
+          downloaded.add(count);
+        }
+      }
+    }
+    return complete(md5);
+  }
+
+  private boolean acceptsRanges(URLConnection connection) {
+    return connections > 1 && connection.getContentLengthLong() > CHUNK_SIZE && connection instanceof HttpURLConnection
+        && "bytes".equalsIgnoreCase(connection.getHeaderField("Accept-Ranges"));
+  }
+
+  private static String validator(URLConnection connection) {
+    return connection.getHeaderField("ETag") != null ? connection.getHeaderField("ETag") : connection.getHeaderField("Last-Modified");
+  }
+
+  private String complete(MessageDigest md5) throws IOException {
+    Files.move(part, dest, ATOMIC_MOVE);
+    Files.deleteIfExists(progress);
+    return FileUtils.toHex(md5.digest());
+  }
+
+  private void downloadRanges(URL location, long length, String validator, MessageDigest md5) throws IOException {
+    int chunks = (int) ((length + CHUNK_SIZE - 1) / CHUNK_SIZE);
+    String header = length + " " + validator;
+    Set<Integer> done = validator == null ? new HashSet<>() : completedChunks(header, length);
+    if (done.isEmpty()) {
+      Files.write(progress, (header + "\n").getBytes(UTF_8), CREATE, WRITE, TRUNCATE_EXISTING);
+    } else {
+      logger.info("Resuming download of: {} ({}/{} chunks already downloaded)", location, done.size(), chunks);
+    }
+    logger.debug("Downloading: {} in {} chunks through {} connections", location, chunks, connections);
+
+    AtomicInteger counter = new AtomicInteger();
+    ExecutorService pool = Executors.newFixedThreadPool(connections, r -> {
+      Thread thread = new Thread(r, "kit-download-" + counter.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+    try (FileChannel channel = FileChannel.open(part, CREATE, READ, WRITE);
+         BufferedWriter progressWriter = Files.newBufferedWriter(progress, UTF_8, APPEND)) {
+      if (channel.size() < length) {
+        channel.write(ByteBuffer.allocate(1), length - 1); // preallocate
+      }
+      List<CompletableFuture<Void>> futures = new ArrayList<>(chunks);
+      for (int i = 0; i < chunks; i++) {
+        int chunk = i;
+        futures.add(done.contains(chunk) ? CompletableFuture.completedFuture(null) : CompletableFuture.runAsync(() -> {
+          downloadChunk(location, channel, chunk, length);
+          synchronized (progressWriter) {
+            try {
+              progressWriter.write(chunk + "\n");
+              progressWriter.flush();
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          }
+        }, pool));
+      }
+
+      // the chunks are hashed in order while the next ones are being downloaded
+      ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+      Progress hashed = new Progress(length);
+      for (int i = 0; i < chunks; i++) {
+        try {
+          futures.get(i).join();
+        } catch (CompletionException e) {
+          futures.forEach(future -> future.cancel(false));
+          throw e.getCause() instanceof UncheckedIOException ? ((UncheckedIOException) e.getCause()).getCause() : new IOException(e.getCause());
+        }
+        buffer.clear();
+        buffer.limit((int) Math.min(CHUNK_SIZE, length - (long) i * CHUNK_SIZE));
+        long position = (long) i * CHUNK_SIZE;
+        while (buffer.hasRemaining()) {
+          if (channel.read(buffer, position + buffer.position()) < 0) {
+            throw new IOException("Truncated download: " + part);
+          }
+        }
+        md5.update(buffer.array(), 0, buffer.limit());
+        hashed.add(buffer.limit());
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private static void downloadChunk(URL location, FileChannel channel, int chunk, long length) {
+    long start = (long) chunk * CHUNK_SIZE;
+    long end = Math.min(length, start + CHUNK_SIZE);
+    try {
+      HttpURLConnection connection = (HttpURLConnection) location.openConnection();
+      connection.setRequestProperty("Range", "bytes=" + start + "-" + (end - 1));
+      try {
+        if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+          throw new IOException("Range request not honoured by: " + location + ": HTTP " + connection.getResponseCode());
+        }
+        try (InputStream is = connection.getInputStream()) {
+          byte[] bytes = new byte[BUFFER_SIZE];
+          long position = start;
+          int count;
+          while (position < end && (count = is.read(bytes, 0, (int) Math.min(bytes.length, end - position))) != -1) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, count);
+            while (buffer.hasRemaining()) {
+              position += channel.write(buffer, position);
+            }
+          }
+          if (position != end) {
+            throw new IOException("Truncated range " + start + "-" + end + " of: " + location);
+          }
+        }
+      } finally {
+        connection.disconnect();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * @return the chunks of the partial download which are complete, none if the remote file changed since
+   */
+  private Set<Integer> completedChunks(String header, long length) throws IOException {
+    Set<Integer> done = new HashSet<>();
+    if (!Files.isRegularFile(progress) || !Files.isRegularFile(part) || Files.size(part) != length) {
+      return done;
+    }
+    List<String> lines = Files.readAllLines(progress, UTF_8);
+    if (lines.isEmpty() || !lines.get(0).equals(header)) {
+      return done;
+    }
+    for (String line : lines.subList(1, lines.size())) {
+      try {
+        done.add(Integer.parseInt(line.trim()));
+      } catch (NumberFormatException e) {
+        // partially written line
+      }
+    }
+    return done;
+  }
+
+  private static MessageDigest md5() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static class Progress {
+    private final long length;
+    private long done;
+    private long lastProgress = -1;
+
+    Progress(long length) {
+      this.length = length;
+    }
+
+    void add(long count) {
+      done += count;
+      if (length > 0) {
+        long progress = 100 * done / length;
+        if (progress % 10 == 0 && progress > lastProgress) {
+          logger.debug("Download progress = {}%", progress);
+          lastProgress = progress;
+        }
+      }
+    }
+  }
+}
@@ -26,17 +26,17 @@ import org.terracotta.angela.common.topology.PackageType;
 import org.terracotta.angela.common.topology.Version;
 import org.terracotta.angela.common.util.FileUtils;
 
+import org.terracotta.angela.agent.kit.VerifiedChecksum;
+
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.net.URL;
-import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Objects;
 
+import static org.terracotta.angela.common.AngelaProperties.KIT_DOWNLOAD_CONNECTIONS;
 import static org.terracotta.angela.common.topology.PackageType.KIT;
 
 /**
@@ -118,58 +118,47 @@ public abstract class KitResolver {
     URL[] urls = resolveKitUrls(version, licenseType, packageType);
     URL kitUrl = urls[0];
     URL md5Url = urls[1];
-    download(kitUrl, localInstallerFile);
+    String md5 = downloadAndHash(kitUrl, localInstallerFile);
 
     // snapshots and SAG installer have no MD5
     if (!version.isSnapshot() && packageType == KIT) {
-      download(md5Url, Paths.get(localInstallerFile + ".md5"));
+      Path md5File = Paths.get(localInstallerFile + ".md5");
+      download(md5Url, md5File);
+      String expected;
+      try {
+        expected = new String(Files.readAllBytes(md5File), StandardCharsets.US_ASCII).trim();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      if (!md5.equalsIgnoreCase(expected)) {
+        FileUtils.deleteQuietly(localInstallerFile);
+        throw new IllegalStateException("Downloaded " + kitUrl + " does not match its MD5: " + md5 + " instead of " + expected);
+      }
+      // the hash was computed during the download: no need to read the installer again to validate it
+      VerifiedChecksum.record(localInstallerFile, md5);
     }
     logger.debug("Success -> file downloaded successfully");
   }
 
   protected void download(URL url, Path dest) {
-    logger.info("Downloading: {} to: {}", url, dest);
+    downloadAndHash(url, dest);
+  }
 
+  /**
+   * Downloads a file, resuming the previous download of the same file if it failed.
+   *
+   * @return the MD5 of the downloaded file, as an hex string
+   */
+  protected String downloadAndHash(URL url, Path dest) {
+    logger.info("Downloading: {} to: {}", url, dest);
     try {
-      URLConnection urlConnection = url.openConnection();
-      urlConnection.connect();
-
-      int contentLength = urlConnection.getContentLength();
-
-      createParentDirs(dest);
-
-      long lastProgress = -1;
-      try (OutputStream fos = Files.newOutputStream(dest);
-           InputStream is = url.openStream()) {
-        byte[] buffer = new byte[8192];
-        long len = 0;
-        int count;
-        while ((count = is.read(buffer)) != -1) {
-          len += count;
-
-          long progress = 100 * len / contentLength;
-          if (progress % 10 == 0 && progress > lastProgress) {
-            logger.debug("Download progress = {}%", progress);
-            lastProgress = progress;
-          }
-          fos.write(buffer, 0, count);
-        }
-      }
-
+      String md5 = new KitDownloader(url, dest, Integer.parseInt(KIT_DOWNLOAD_CONNECTIONS.getValue())).download();
       logger.debug("Success -> file downloaded successfully");
+      return md5;
     } catch (IOException e) {
-      // messed up download -> delete it
-      logger.debug("Deleting: " + dest.getParent() + " dir as it's messed up");
-      FileUtils.deleteQuietly(dest.getParent());
+      // the partial download is kept to be resumed
       throw new UncheckedIOException(e);
     }
   }
 
-  private static void createParentDirs(Path file) throws IOException {
-    Objects.requireNonNull(file);
-    Path parent = file.getParent();
-    if (parent != null) {
-      Files.createDirectories(parent);
-    }
-  }
 }
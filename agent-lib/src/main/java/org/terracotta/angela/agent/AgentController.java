@@ -20,6 +20,7 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.terracotta.angela.agent.client.ClientPool;
 import org.terracotta.angela.agent.client.RemoteClientManager;
 import org.terracotta.angela.agent.com.AgentGroup;
 import org.terracotta.angela.agent.com.AgentID;
@@ -75,8 +76,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.BiFunction;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.function.Consumer;
 
 import static java.util.stream.Collectors.toList;
 
@@ -95,6 +95,7 @@ public class AgentController {
 
   private final AgentID localAgentID;
   private final PortAllocator portAllocator;
+  private final ClientPool clientPool = new ClientPool();
   private volatile MonitoringInstance monitoringInstance;
 
   public AgentController(AgentID localAgentID, PortAllocator portAllocator) {
@@ -500,6 +501,26 @@ public class AgentController {
     return serverInstance.getTerracottaServerState();
   }
 
+  public Map<TerracottaServer, TerracottaServerState> getTsaStates(InstanceId instanceId, Collection<TerracottaServer> terracottaServers) {
+    Map<TerracottaServer, TerracottaServerState> states = new LinkedHashMap<>();
+    for (TerracottaServer terracottaServer : terracottaServers) {
+      states.put(terracottaServer, getTsaState(instanceId, terracottaServer));
+    }
+    return states;
+  }
+
+  /**
+   * Registers a listener called with the current state of an installed server, then on each of its state transitions.
+   */
+  public void addTsaStateListener(InstanceId instanceId, TerracottaServer terracottaServer, Consumer<TerracottaServerState> listener) {
+    TerracottaInstall terracottaInstall = tsaInstalls.get(instanceId);
+    TerracottaServerInstance serverInstance = terracottaInstall == null ? null : terracottaInstall.getTerracottaServerInstance(terracottaServer);
+    if (serverInstance == null) {
+      throw new IllegalStateException("Server " + terracottaServer + " has not been installed");
+    }
+    serverInstance.addStateListener(listener);
+  }
+
   public Map<ServerSymbolicName, Integer> getProxyGroupPortsForServer(InstanceId instanceId, TerracottaServer terracottaServer) {
     TerracottaInstall terracottaInstall = tsaInstalls.get(instanceId);
     if (terracottaInstall == null) {
@@ -629,6 +650,15 @@ public class AgentController {
     }
   }
 
+  public void copyClientClasspath(InstanceId source, InstanceId instanceId) throws IOException {
+    Path sourceRoot = new RemoteClientManager(source).getClientClasspathRoot();
+    RemoteClientManager remoteClientManager = new RemoteClientManager(instanceId);
+    Files.createDirectories(remoteClientManager.getClientInstallationPath());
+    logger.debug("[{}] Copying classpath of client '{}' to client '{}'", localAgentID, source, instanceId);
+    // jars are links to the client jar store: link them again, and copy the content of the classpath directories
+    FileUtils.linkOrCopyTree(sourceRoot, remoteClientManager.getClientClasspathRoot(), file -> file.getParent().equals(sourceRoot));
+  }
+
   public void deleteClient(InstanceId instanceId) {
     Path subAgentRoot = new RemoteClientManager(instanceId).getClientInstallationPath();
     logger.debug("[{}] Cleaning up directory structure '{}' of client {}", localAgentID, subAgentRoot, instanceId);
@@ -652,6 +682,28 @@ public class AgentController {
     return remoteClientManager.spawnClient(tcEnv, group);
   }
 
+  /**
+   * Same as {@link #spawnClient(InstanceId, TerracottaCommandLineEnvironment, AgentGroup)}, but the client runs in a
+   * JVM leased from the pool of this agent, which keeps the given number of idle JVMs for the client classpath.
+   */
+  public AgentID leaseClient(InstanceId instanceId, TerracottaCommandLineEnvironment tcEnv, AgentGroup group, int poolSize) {
+    if (localAgentID.isLocal()) {
+      return localAgentID;
+    }
+    return clientPool.lease(instanceId, tcEnv, group, poolSize);
+  }
+
+  /**
+   * Gives back the JVM leased by a client to the pool.
+   *
+   * @param recycle false if the JVM must be replaced by a fresh one
+   * @return true if the JVM is still alive, idle in the pool
+   */
+  public boolean releaseClient(InstanceId instanceId, boolean recycle) {
+    logger.info("[{}] releasing pooled JVM of client '{}'", localAgentID, instanceId);
+    return clientPool.release(instanceId, recycle);
+  }
+
   public List<String> listFiles(String folder) {
     File[] files = new File(folder).listFiles(pathname -> !pathname.isDirectory());
     if (files == null) {
@@ -690,40 +742,6 @@ public class AgentController {
     }
   }
 
-  public byte[] downloadFolder(String file) {
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    try (ZipOutputStream zos = new ZipOutputStream(baos)) {
-      File root = new File(file);
-      zipFolder(zos, "", root);
-    } catch (IOException ioe) {
-      throw new UncheckedIOException("Error downloading folder " + file, ioe);
-    }
-    return baos.toByteArray();
-  }
-
-  private void zipFolder(ZipOutputStream zos, String parent, File folder) throws IOException {
-    if (!folder.canRead()) {
-      throw new IOException("Folder does not exist or is not readable : " + folder);
-    }
-    File[] files = folder.listFiles();
-    if (files == null) {
-      throw new IOException("Error listing folder " + folder);
-    }
-    for (File file : files) {
-      if (file.isDirectory()) {
-        zipFolder(zos, parent + file.getName() + "/", file);
-      } else {
-        ZipEntry zipEntry = new ZipEntry(parent + file.getName());
-        zipEntry.setTime(file.lastModified());
-        zos.putNextEntry(zipEntry);
-        try (FileInputStream fis = new FileInputStream(file)) {
-          IOUtils.copy(fis, zos);
-        }
-        zos.closeEntry();
-      }
-    }
-  }
-
   private static class Dirs {
     final File kitDir;
     final File workingDir;
@@ -798,6 +816,7 @@ public class AgentController {
       throw new IllegalStateException("Unable to remove installed AgentController: " + AgentController.instance + ": caller has another AgentController: " + agentController);
     }
     AgentController.instance = null;
+    agentController.clientPool.close();
     logger.info("Uninstalled AgentController: " + agentController);
   }
 }
@@ -0,0 +1,274 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.agent.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terracotta.angela.agent.Agent;
+import org.terracotta.angela.common.util.FileUtils;
+import org.terracotta.angela.common.util.OS;
+import org.zeroturnaround.exec.ProcessExecutor;
+import org.zeroturnaround.exec.ProcessResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.terracotta.angela.common.AngelaProperties.CLASS_DATA_SHARING;
+
+/**
+ * AppCDS archives of the client JVMs spawned by the agents, kept under {@code ROOT_DIR/cds} and keyed by the JDK,
+ * the JVM options and the jars of the classpath.
+ * <p>
+ * A JVM cannot dump an archive at exit when its classpath contains a non-empty directory, which is the case of most
+ * client classpaths (i.e. target/test-classes). So the first client spawned for a key records the classes it loads
+ * with {@code -XX:DumpLoadedClassList}, and once it is ready, an archive of these classes is dumped in the background
+ * for the leading jars of the classpath. The next clients use it with {@code -XX:SharedArchiveFile}: the JVM accepts
+ * it as long as the runtime classpath starts with the archived one, and silently ignores it otherwise.
+ */
+public class ClassDataSharing {
+  private static final Logger logger = LoggerFactory.getLogger(ClassDataSharing.class);
+
+  // relative classpath entries, like the ones of the clients, are only matched against the archived ones since JDK 15
+  static final int MIN_JAVA_VERSION = 15;
+  // -XX:ArchiveClassesAtExit exists since JDK 13
+  public static final int MIN_DYNAMIC_ARCHIVE_JAVA_VERSION = 13;
+
+  // keys of the archives being generated by this agent
+  private static final Set<String> GENERATING = ConcurrentHashMap.newKeySet();
+
+  private final Path root;
+
+  public ClassDataSharing() {
+    this(Agent.ROOT_DIR.resolve("cds"));
+  }
+
+  ClassDataSharing(Path root) {
+    this.root = root;
+  }
+
+  /**
+   * @param javaHome  the JDK the client is started with
+   * @param javaOpts  the JVM options of the client
+   * @param workDir   the directory the client is started from, relative classpath entries are resolved against it
+   * @param classpath the classpath of the client: its leading regular files are the ones archived
+   * @return how the client JVM being spawned takes part in class data sharing
+   */
+  public Spawn prepare(Path javaHome, Collection<String> javaOpts, Path workDir, List<String> classpath) {
+    if (!CLASS_DATA_SHARING.getBooleanValue()) {
+      return new Spawn(null, Collections.emptyList());
+    }
+    try {
+      Path release = javaHome.resolve("release");
+      String releaseContent = Files.isRegularFile(release) ? new String(Files.readAllBytes(release), StandardCharsets.UTF_8) : "";
+      if (majorVersion(releaseContent) < MIN_JAVA_VERSION) {
+        logger.debug("Not using class data sharing with JDK: {}", javaHome);
+        return new Spawn(null, Collections.emptyList());
+      }
+
+      List<String> archived = new ArrayList<>();
+      List<String> keyParts = new ArrayList<>();
+      keyParts.add(javaHome.toRealPath().toString());
+      keyParts.add(releaseContent);
+      keyParts.addAll(javaOpts);
+      for (String entry : classpath) {
+        Path file = workDir.resolve(entry);
+        if (!Files.isRegularFile(file)) {
+          break;
+        }
+        archived.add(entry);
+        keyParts.add(entry + "\t" + Files.size(file) + "\t" + Files.getLastModifiedTime(file).toMillis());
+      }
+      if (archived.isEmpty()) {
+        return new Spawn(null, Collections.emptyList());
+      }
+
+      String key = hash(keyParts);
+      Path archive = root.resolve(key + ".jsa");
+      if (Files.isRegularFile(archive)) {
+        return new Spawn(null, Collections.singletonList("-XX:SharedArchiveFile=" + archive));
+      }
+      if (!GENERATING.add(key)) {
+        // another client is already recording the classes for this archive
+        return new Spawn(null, Collections.emptyList());
+      }
+      Files.createDirectories(root);
+      Path classList = root.resolve(key + "." + UUID.randomUUID() + ".classlist");
+      Generation generation = new Generation(key, javaHome, javaOpts, workDir, archived, classList, archive);
+      return new Spawn(generation, Collections.singletonList("-XX:DumpLoadedClassList=" + classList));
+    } catch (IOException e) {
+      logger.warn("Not using class data sharing: {}", e.getMessage(), e);
+      return new Spawn(null, Collections.emptyList());
+    }
+  }
+
+  /**
+   * @return the major version of a JDK, read from the content of its {@code release} file, or -1 if unknown
+   */
+  public static int majorVersion(String release) {
+    Properties properties = new Properties();
+    try {
+      properties.load(new StringReader(release));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    String version = properties.getProperty("JAVA_VERSION", "").replace("\"", "");
+    if (version.startsWith("1.")) {
+      version = version.substring(2);
+    }
+    int end = 0;
+    while (end < version.length() && Character.isDigit(version.charAt(end))) {
+      end++;
+    }
+    return end == 0 ? -1 : Integer.parseInt(version.substring(0, end));
+  }
+
+  /**
+   * @return a hex-encoded hash of the given strings, usable as an archive key
+   */
+  public static String hash(List<String> parts) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      for (String part : parts) {
+        digest.update(part.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+      }
+      return FileUtils.toHex(digest.digest());
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public static class Spawn {
+    private final Generation generation;
+    private final List<String> jvmOptions;
+    private final boolean shared;
+
+    private Spawn(Generation generation, List<String> jvmOptions) {
+      this.generation = generation;
+      this.jvmOptions = jvmOptions;
+      this.shared = generation == null && !jvmOptions.isEmpty();
+    }
+
+    /**
+     * @return the options to add to the command line of the client JVM
+     */
+    public List<String> getJvmOptions() {
+      return jvmOptions;
+    }
+
+    /**
+     * @return true if the client JVM is started with an existing archive
+     */
+    public boolean isShared() {
+      return shared;
+    }
+
+    /**
+     * Must be called once the client JVM is ready, or failed to start: the classes recorded by a successful start are
+     * archived in the background.
+     */
+    public void spawned(boolean ready) {
+      if (generation == null) {
+        return;
+      }
+      if (!ready) {
+        generation.cancel();
+        return;
+      }
+      Thread thread = new Thread(generation::run, "cds-archive-" + generation.key);
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  private static class Generation {
+    private final String key;
+    private final Path javaHome;
+    private final Collection<String> javaOpts;
+    private final Path workDir;
+    private final List<String> classpath;
+    private final Path classList;
+    private final Path archive;
+
+    Generation(String key, Path javaHome, Collection<String> javaOpts, Path workDir, List<String> classpath, Path classList, Path archive) {
+      this.key = key;
+      this.javaHome = javaHome;
+      this.javaOpts = javaOpts;
+      this.workDir = workDir;
+      this.classpath = classpath;
+      this.classList = classList;
+      this.archive = archive;
+    }
+
+    void run() {
+      Path tmp = archive.resolveSibling(classList.getFileName() + ".jsa");
+      try {
+        List<String> cmdLine = new ArrayList<>();
+        cmdLine.add(javaHome.resolve("bin").resolve(OS.INSTANCE.isWindows() ? "java.exe" : "java").toString());
+        cmdLine.addAll(javaOpts);
+        cmdLine.add("-Xshare:dump");
+        cmdLine.add("-XX:SharedClassListFile=" + classList);
+        cmdLine.add("-XX:SharedArchiveFile=" + tmp);
+        cmdLine.add("-classpath");
+        cmdLine.add(String.join(File.pathSeparator, classpath));
+
+        long start = System.nanoTime();
+        ProcessResult result = new ProcessExecutor()
+            .command(cmdLine)
+            .directory(workDir.toFile())
+            .redirectErrorStream(true)
+            .readOutput(true)
+            .timeout(5, TimeUnit.MINUTES)
+            .execute();
+        if (result.getExitValue() != 0 || !Files.isRegularFile(tmp)) {
+          logger.warn("Failed to generate class data sharing archive: {} (exit code: {}):\n{}", archive, result.getExitValue(), result.outputUTF8());
+          return;
+        }
+        Files.move(tmp, archive, REPLACE_EXISTING, ATOMIC_MOVE);
+        logger.info("Generated class data sharing archive: {} for {} classpath entries in {} ms", archive, classpath.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+      } catch (Exception e) {
+        logger.warn("Failed to generate class data sharing archive: {}", archive, e);
+      } finally {
+        FileUtils.deleteQuietly(tmp);
+        cancel();
+      }
+    }
+
+    void cancel() {
+      FileUtils.deleteQuietly(classList);
+      GENERATING.remove(key);
+    }
+  }
+}
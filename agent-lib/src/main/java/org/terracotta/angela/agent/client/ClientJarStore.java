@@ -0,0 +1,224 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.agent.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terracotta.angela.agent.Agent;
+import org.terracotta.angela.common.util.FileUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static org.terracotta.utilities.io.Files.ExtendedOption.RECURSIVE;
+
+/**
+ * Content-addressed store of client classpath files kept by each agent under {@code ROOT_DIR/jar-store}.
+ * <p>
+ * Files are stored by SHA-256, so that the orchestrator only has to upload the classpath entries an agent has
+ * never seen. The client classpath root of each client instance is then made of links into this store.
+ * Only regular files (jars) are stored: classpath directories (i.e. target/classes) are always uploaded.
+ */
+public class ClientJarStore {
+  private static final Logger logger = LoggerFactory.getLogger(ClientJarStore.class);
+
+  // orchestrator side: avoids hashing the same classpath again for each client being spawned
+  private static final Map<FileKey, String> HASHES = new ConcurrentHashMap<>();
+
+  private final Path root;
+
+  public ClientJarStore() {
+    this(Agent.ROOT_DIR.resolve("jar-store"));
+  }
+
+  public ClientJarStore(Path root) {
+    this.root = root;
+  }
+
+  public Path getRoot() {
+    return root;
+  }
+
+  /**
+   * @return the hashes from the given list which are not in the store
+   */
+  public Set<String> missing(Collection<String> hashes) {
+    return hashes.stream().filter(hash -> !Files.isRegularFile(root.resolve(hash))).collect(toSet());
+  }
+
+  /**
+   * Moves the uploaded files found in the classpath root into the store, then links all the manifest entries
+   * from the store into the classpath root.
+   *
+   * @param manifest      classpath file name to hash
+   * @param classpathRoot the client classpath root, containing the files that were uploaded
+   */
+  public void adopt(Map<String, String> manifest, Path classpathRoot) {
+    try {
+      Files.createDirectories(root);
+      Files.createDirectories(classpathRoot);
+      for (Map.Entry<String, String> entry : manifest.entrySet()) {
+        Path dest = classpathRoot.resolve(entry.getKey());
+        Path stored = root.resolve(entry.getValue());
+        if (Files.isRegularFile(dest, NOFOLLOW_LINKS)) {
+          // this file was uploaded: keep it in the store if its content is what was announced
+          if (!store(dest, entry.getValue())) {
+            continue;
+          }
+        }
+        if (!Files.isRegularFile(stored)) {
+          throw new IllegalStateException("Missing classpath entry: " + entry.getKey() + " (" + entry.getValue() + ") in: " + root);
+        }
+        FileUtils.linkOrCopy(stored, dest);
+      }
+      logger.debug("Linked {} classpath entries from: {} into: {}", manifest.size(), root, classpathRoot);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Same-host replacement of an upload followed by {@link #adopt(Map, Path)}: the missing files are copied into the
+   * store straight from the orchestrator classpath, and classpath directories into the classpath root.
+   */
+  public void adoptLocal(List<Path> locations, Map<String, String> manifest, Path classpathRoot) {
+    try {
+      Files.createDirectories(root);
+      Files.createDirectories(classpathRoot);
+      for (Path location : locations) {
+        String name = String.valueOf(location.getFileName());
+        if (!Files.exists(location)) {
+          logger.debug("Skipping non-existing classpath entry: {}", location);
+        } else if (Files.isDirectory(location)) {
+          Path dest = classpathRoot.resolve(name);
+          if (Files.exists(dest)) {
+            FileUtils.deleteTree(dest);
+          }
+          FileUtils.copy(location, dest, RECURSIVE);
+        } else if (!store(location, manifest.get(name))) {
+          // the file with the same name was overridden by another classpath entry
+          Files.copy(location, classpathRoot.resolve(name), REPLACE_EXISTING);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    adopt(manifest, classpathRoot);
+  }
+
+  private boolean store(Path uploaded, String hash) throws IOException {
+    Path stored = root.resolve(hash);
+    if (Files.isRegularFile(stored)) {
+      return true;
+    }
+    String actual = FileUtils.sha256(uploaded);
+    if (!actual.equals(hash)) {
+      // the file with the same name was overridden by another classpath entry: keep the uploaded one as-is
+      logger.warn("Not storing: {}: hash is: {} but expected: {}", uploaded, actual, hash);
+      return false;
+    }
+    // several clients can be installed concurrently on the same agent: write to a temp file then rename atomically
+    Path tmp = Files.createTempFile(root, hash, ".tmp");
+    try {
+      Files.copy(uploaded, tmp, REPLACE_EXISTING);
+      Files.move(tmp, stored, ATOMIC_MOVE);
+    } catch (IOException e) {
+      Files.deleteIfExists(tmp);
+      if (!Files.isRegularFile(stored)) {
+        throw e;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the hashes of the regular files of a classpath, keyed by file name, which is how they will be
+   * named in the client classpath root
+   */
+  public static Map<String, String> manifest(List<Path> locations) {
+    Map<String, String> manifest = new LinkedHashMap<>();
+    for (Path location : locations) {
+      if (Files.isRegularFile(location)) {
+        manifest.putIfAbsent(String.valueOf(location.getFileName()), hash(location));
+      }
+    }
+    return manifest;
+  }
+
+  /**
+   * @return the locations that still have to be uploaded: directories and files the agent is missing
+   */
+  public static List<Path> uploads(List<Path> locations, Map<String, String> manifest, Set<String> missing) {
+    return locations.stream()
+        .filter(location -> {
+          if (!Files.isRegularFile(location)) {
+            return true;
+          }
+          String hash = hash(location);
+          return missing.contains(hash) || !hash.equals(manifest.get(String.valueOf(location.getFileName())));
+        })
+        .collect(toList());
+  }
+
+  static String hash(Path file) {
+    try {
+      FileKey key = new FileKey(file.toAbsolutePath().normalize(), Files.size(file), Files.getLastModifiedTime(file).toMillis());
+      return HASHES.computeIfAbsent(key, k -> FileUtils.sha256(k.path));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static class FileKey {
+    final Path path;
+    final long size;
+    final long lastModified;
+
+    FileKey(Path path, long size, long lastModified) {
+      this.path = path;
+      this.size = size;
+      this.lastModified = lastModified;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof FileKey)) return false;
+      FileKey fileKey = (FileKey) o;
+      return size == fileKey.size && lastModified == fileKey.lastModified && path.equals(fileKey.path);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(path, size, lastModified);
+    }
+  }
+}
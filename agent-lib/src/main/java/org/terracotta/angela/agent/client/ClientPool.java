@@ -0,0 +1,290 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.agent.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terracotta.angela.agent.com.AgentGroup;
+import org.terracotta.angela.agent.com.AgentID;
+import org.terracotta.angela.common.TerracottaCommandLineEnvironment;
+import org.terracotta.angela.common.topology.InstanceId;
+import org.terracotta.angela.common.util.FileUtils;
+import org.terracotta.angela.common.util.ProcessUtil;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Client JVMs kept idle by an agent, already joined to the agent group, so that spawning a client only consists in
+ * leasing one of them.
+ * <p>
+ * The idle JVMs are keyed by JDK, JVM options and classpath content, and each JVM has its own copy of the classpath
+ * (linked from the one of the client it was first spawned for). When a client is closed, its JVM goes back to the
+ * pool, or is replaced by a fresh one if it cannot be recycled, so that the pool keeps the requested number of idle
+ * JVMs for every key it has seen.
+ */
+public class ClientPool {
+  private static final Logger logger = LoggerFactory.getLogger(ClientPool.class);
+
+  private final Map<String, Deque<PooledClient>> idle = new HashMap<>();
+  private final Map<String, Integer> spawning = new HashMap<>();
+  private final Map<InstanceId, PooledClient> leased = new ConcurrentHashMap<>();
+  private final ExecutorService spawner = Executors.newCachedThreadPool(r -> {
+    Thread thread = new Thread(r, "client-pool-spawner");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private boolean closed;
+
+  /**
+   * Leases an idle client JVM matching the classpath uploaded for the given client, or spawns one if none is idle.
+   *
+   * @param size the number of idle JVMs to keep for this classpath
+   * @return the agent of the leased JVM
+   */
+  public AgentID lease(InstanceId instanceId, TerracottaCommandLineEnvironment tcEnv, AgentGroup group, int size) {
+    Path classpathRoot = new RemoteClientManager(instanceId).getClientClasspathRoot();
+    String key = key(classpathRoot, tcEnv, group);
+    PooledClient client;
+    synchronized (this) {
+      client = idle.computeIfAbsent(key, k -> new ArrayDeque<>()).poll();
+    }
+    if (client == null) {
+      client = prepare(key, classpathRoot, tcEnv, group, size).spawn();
+      logger.info("Spawned pooled client JVM: {} for client: {}", client.agentID, instanceId);
+    } else {
+      logger.info("Leased idle client JVM: {} for client: {}", client.agentID, instanceId);
+    }
+    leased.put(instanceId, client);
+    refill(client);
+    return client.agentID;
+  }
+
+  /**
+   * Gives the JVM leased by a client back to the pool. It is killed instead if it cannot be recycled, or if the pool
+   * already has enough idle JVMs.
+   *
+   * @param recycle false if the lease could not be cleaned
+   * @return true if the JVM is still alive, idle in the pool
+   */
+  public boolean release(InstanceId instanceId, boolean recycle) {
+    PooledClient client = leased.remove(instanceId);
+    if (client == null) {
+      return false;
+    }
+    boolean kept;
+    synchronized (this) {
+      Deque<PooledClient> clients = idle.computeIfAbsent(client.key, k -> new ArrayDeque<>());
+      kept = recycle && !closed && client.isAlive() && clients.size() < client.size;
+      if (kept) {
+        clients.add(client);
+      }
+    }
+    if (kept) {
+      logger.info("Client JVM: {} leased by: {} is back in the pool", client.agentID, instanceId);
+    } else {
+      logger.info("Discarding client JVM: {} leased by: {}", client.agentID, instanceId);
+      refill(client);
+      client.kill();
+    }
+    return kept;
+  }
+
+  /**
+   * Kills the idle JVMs, and the ones still being spawned as soon as they are ready.
+   */
+  public void close() {
+    List<PooledClient> clients;
+    synchronized (this) {
+      closed = true;
+      clients = idle.values().stream().flatMap(Deque::stream).collect(toList());
+      idle.clear();
+    }
+    spawner.shutdown();
+    clients.forEach(PooledClient::kill);
+  }
+
+  /**
+   * Spawns in the background the JVMs missing for the pool to have its size of idle JVMs like the given one.
+   */
+  private void refill(PooledClient template) {
+    int missing;
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      missing = template.size - idle.computeIfAbsent(template.key, k -> new ArrayDeque<>()).size() - spawning.getOrDefault(template.key, 0);
+      if (missing <= 0) {
+        return;
+      }
+      spawning.merge(template.key, missing, Integer::sum);
+    }
+    for (int i = 0; i < missing; i++) {
+      Spawn spawn;
+      try {
+        // the classpath is linked right now as the one of the template can be deleted as soon as it is discarded
+        spawn = prepare(template.key, template.getClasspathRoot(), template.tcEnv, template.group, template.size);
+      } catch (RuntimeException e) {
+        logger.warn("Unable to refill the client pool", e);
+        synchronized (this) {
+          spawning.merge(template.key, i - missing, Integer::sum);
+        }
+        return;
+      }
+      try {
+        spawner.execute(() -> spawnIdle(spawn));
+      } catch (RejectedExecutionException e) {
+        // closed in the meantime
+        synchronized (this) {
+          spawning.merge(spawn.key, -1, Integer::sum);
+        }
+        FileUtils.deleteQuietly(spawn.manager.getClientInstallationPath());
+      }
+    }
+  }
+
+  private void spawnIdle(Spawn spawn) {
+    PooledClient client = null;
+    try {
+      client = spawn.spawn();
+    } catch (RuntimeException e) {
+      logger.warn("Unable to spawn a pooled client JVM", e);
+      FileUtils.deleteQuietly(spawn.manager.getClientInstallationPath());
+    }
+    boolean kept = false;
+    synchronized (this) {
+      spawning.merge(spawn.key, -1, Integer::sum);
+      if (client != null && !closed) {
+        idle.computeIfAbsent(spawn.key, k -> new ArrayDeque<>()).add(client);
+        kept = true;
+      }
+    }
+    if (client != null && !kept) {
+      client.kill();
+    }
+  }
+
+  private Spawn prepare(String key, Path classpathRoot, TerracottaCommandLineEnvironment tcEnv, AgentGroup group, int size) {
+    RemoteClientManager manager = new RemoteClientManager(new InstanceId(UUID.randomUUID().toString(), "pool"));
+    try {
+      Files.createDirectories(manager.getClientInstallationPath());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    FileUtils.linkOrCopyTree(classpathRoot, manager.getClientClasspathRoot(), file -> true);
+    return new Spawn(key, manager, tcEnv, group, size);
+  }
+
+  /**
+   * @return a key identifying the agent group, JDK, JVM options and classpath a client JVM is started with
+   */
+  static String key(Path classpathRoot, TerracottaCommandLineEnvironment tcEnv, AgentGroup group) {
+    List<String> parts = new ArrayList<>();
+    parts.add(group.getId().toString());
+    parts.add(tcEnv.getJavaHome().toString());
+    parts.addAll(tcEnv.getJavaOpts());
+    try (Stream<Path> files = Files.walk(classpathRoot)) {
+      for (Path file : files.filter(Files::isRegularFile).sorted().collect(toList())) {
+        String name = classpathRoot.relativize(file).toString();
+        if (file.getParent().equals(classpathRoot)) {
+          // jars are linked from the client jar store: they are the same file when they have the same content
+          parts.add(name + "\t" + Files.size(file) + "\t" + Files.getLastModifiedTime(file).toMillis());
+        } else {
+          // classpath directories are uploaded for each client
+          parts.add(name + "\t" + FileUtils.sha256(file));
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return ClassDataSharing.hash(parts);
+  }
+
+  private static class Spawn {
+    final String key;
+    final RemoteClientManager manager;
+    final TerracottaCommandLineEnvironment tcEnv;
+    final AgentGroup group;
+    final int size;
+
+    Spawn(String key, RemoteClientManager manager, TerracottaCommandLineEnvironment tcEnv, AgentGroup group, int size) {
+      this.key = key;
+      this.manager = manager;
+      this.tcEnv = tcEnv;
+      this.group = group;
+      this.size = size;
+    }
+
+    PooledClient spawn() {
+      AgentID agentID = manager.spawnClient(tcEnv, group);
+      return new PooledClient(this, agentID);
+    }
+  }
+
+  private static class PooledClient {
+    final String key;
+    final RemoteClientManager manager;
+    final TerracottaCommandLineEnvironment tcEnv;
+    final AgentGroup group;
+    final int size;
+    final AgentID agentID;
+
+    PooledClient(Spawn spawn, AgentID agentID) {
+      this.key = spawn.key;
+      this.manager = spawn.manager;
+      this.tcEnv = spawn.tcEnv;
+      this.group = spawn.group;
+      this.size = spawn.size;
+      this.agentID = agentID;
+    }
+
+    Path getClasspathRoot() {
+      return manager.getClientClasspathRoot();
+    }
+
+    boolean isAlive() {
+      return ProcessHandle.of(agentID.getPid()).map(ProcessHandle::isAlive).orElse(false);
+    }
+
+    void kill() {
+      try {
+        if (isAlive()) {
+          ProcessUtil.destroyGracefullyOrForcefullyAndWait(agentID.getPid());
+        }
+      } catch (Exception e) {
+        logger.warn("Error killing pooled client JVM: {}", agentID, e);
+      }
+      FileUtils.deleteQuietly(manager.getClientInstallationPath());
+    }
+  }
+}
@@ -40,6 +40,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
@@ -91,11 +92,14 @@ public class RemoteClientManager {
       } else {
         cmdLine.add(javaHome + "/bin/java");
       }
+      List<String> classpath = buildClasspath();
+      ClassDataSharing.Spawn cds = new ClassDataSharing().prepare(javaHome, tcEnv.getJavaOpts(), getClientInstallationPath(), classpath);
       cmdLine.add("-classpath");
-      cmdLine.add(buildClasspath());
+      cmdLine.add(String.join(File.pathSeparator, classpath));
       if (!tcEnv.getJavaOpts().isEmpty()) {
         cmdLine.addAll(tcEnv.getJavaOpts());
       }
+      cmdLine.addAll(cds.getJvmOptions());
       // angela.java.resolver=user will ensure that any usage of TerracottaCommandLineEnvironment
       // will point to the exact same JVM as the one used to start the process by default
       cmdLine.add("-Dangela.java.resolver=user");
@@ -126,22 +130,29 @@ public class RemoteClientManager {
           })
           .redirectErrorStream(true)
           .directory(getClientInstallationPath().toFile());
-      StartedProcess startedProcess = processExecutor.start();
-
-      logger.info("Waiting for spawned agent with PID: {} to be ready...", PidUtil.getPid(startedProcess.getProcess()));
-      while (startedProcess.getProcess().isAlive() && !started.get()) {
-        Thread.sleep(200); // no need to do a short wait because ignite startup is really slow
-      }
-      if (!startedProcess.getProcess().isAlive()) {
-        throw new RuntimeException("Client process died in infancy");
-      }
+      long start = System.nanoTime();
+      AgentID id = null;
+      try {
+        StartedProcess startedProcess = processExecutor.start();
+
+        logger.info("Waiting for spawned agent with PID: {} to be ready...", PidUtil.getPid(startedProcess.getProcess()));
+        while (startedProcess.getProcess().isAlive() && !started.get()) {
+          Thread.sleep(200); // no need to do a short wait because ignite startup is really slow
+        }
+        if (!startedProcess.getProcess().isAlive()) {
+          throw new RuntimeException("Client process died in infancy");
+        }
 
-      AgentID id = agentID.get();
-      if (id == null) {
-        throw new AssertionError("No AgentID");
+        id = agentID.get();
+        if (id == null) {
+          throw new AssertionError("No AgentID");
+        }
+      } finally {
+        cds.spawned(id != null);
       }
 
-      logger.info("Spawned client with PID {}", id.getPid());
+      logger.info("Spawned client with PID {} in {} ms{}", id.getPid(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+          cds.isShared() ? " using a class data sharing archive" : "");
       return id;
     } catch (IOException | InterruptedException e) {
       logger.error("Error spawning client {}", instanceId, e);
@@ -149,14 +160,18 @@ public class RemoteClientManager {
     }
   }
 
-  private String buildClasspath() throws IOException {
+  /**
+   * The order of the entries is kept as-is, since directories may shadow the classes of jars: class data sharing only
+   * archives the jars leading the classpath.
+   */
+  private List<String> buildClasspath() throws IOException {
     final Path root = getClientClasspathRoot();
     if (!Files.isDirectory(root)) {
       throw new RuntimeException("Cannot build client classpath before the classpath root is uploaded");
     }
-    StringBuilder sb = new StringBuilder();
+    List<String> classpath = new ArrayList<>();
     try (Stream<Path> list = Files.list(root)) {
-      list.forEach(cpentry -> sb.append(CLASSPATH_SUBDIR_NAME).append(File.separator).append(cpentry.getFileName()).append(File.pathSeparator));
+      list.forEach(cpentry -> classpath.add(CLASSPATH_SUBDIR_NAME + File.separator + cpentry.getFileName()));
     }
 
     String agentClassName = Agent.class.getName().replace('.', '/');
@@ -168,13 +183,13 @@ public class RemoteClientManager {
         agentPath = agentPath.substring(0, agentPath.lastIndexOf('!'));
         if (agentPath.startsWith("file:")) {
           agentPath = new File(URI.create(agentPath)).toPath().toAbsolutePath().toString();
-          sb.append(agentPath);
+          classpath.add(agentPath);
         } else {
           logger.error("Unexpected location for Agent.class; omitting from classpath: {}", agentUrl);
         }
       } else if (agentUrl.getProtocol().equals("file")) {
         agentPath = new File(agentUrl.toString()).toPath().toAbsolutePath().toString();
-        sb.append(agentPath);
+        classpath.add(agentPath);
       } else {
         logger.error("Unexpected location for Agent.class; omitting from classpath: {}", agentUrl);
       }
@@ -182,7 +197,7 @@ public class RemoteClientManager {
       logger.error("Failed to determine path to Agent.class; omitting from classpath");
     }
 
-    return sb.toString();
+    return classpath;
   }
 
 }
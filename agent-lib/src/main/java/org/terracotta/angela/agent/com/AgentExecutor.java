@@ -24,7 +24,7 @@ import org.terracotta.angela.agent.com.grid.RemoteRunnable;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author Mathieu Carbou
@@ -52,17 +52,21 @@ public class AgentExecutor {
     executor.execute(agentID, job);
   }
 
-  public Future<Void> executeAsync(RemoteRunnable job) {
+  public CompletableFuture<Void> executeAsync(RemoteRunnable job) {
     return executor.executeAsync(agentID, job);
   }
 
   public <R> R execute(RemoteCallable<R> job) {return executor.execute(agentID, job);}
 
-  public <R> Future<R> executeAsync(RemoteCallable<R> job) {return executor.executeAsync(agentID, job);}
+  public <R> CompletableFuture<R> executeAsync(RemoteCallable<R> job) {return executor.executeAsync(agentID, job);}
+
+  public Batch batch() {return executor.batch(agentID);}
 
   public void uploadKit(InstanceId instanceId, Distribution distribution, String kitInstallationName, Path kitInstallationPath) throws IOException, InterruptedException {
     executor.uploadKit(agentID, instanceId, distribution, kitInstallationName, kitInstallationPath);
   }
 
   public void uploadClientJars(InstanceId instanceId, List<Path> locations) throws IOException, InterruptedException {executor.uploadClientJars(agentID, instanceId, locations);}
+
+  public void downloadFolder(String remoteFolder, Path localFolder, int compressionLevel) {executor.downloadFolder(agentID, remoteFolder, localFolder, compressionLevel);}
 }
@@ -0,0 +1,133 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.agent.com;
+
+import org.terracotta.angela.agent.com.grid.RemoteCallable;
+import org.terracotta.angela.agent.com.grid.RemoteRunnable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Collects calls to an agent and flushes them as one remote job, instead of one job per call.
+ * The calls are executed in the order they have been added.
+ */
+public class Batch {
+  private final Executor executor;
+  private final AgentID agentID;
+  private final List<RemoteCallable<?>> calls = new ArrayList<>();
+  private final List<CompletableFuture<Object>> futures = new ArrayList<>();
+
+  public Batch(Executor executor, AgentID agentID) {
+    this.executor = executor;
+    this.agentID = agentID;
+  }
+
+  public AgentID getTarget() {
+    return agentID;
+  }
+
+  /**
+   * @return a future completed with the result, or the failure, of the call when the batch is flushed
+   */
+  @SuppressWarnings("unchecked")
+  public <R> CompletableFuture<R> add(RemoteCallable<R> call) {
+    CompletableFuture<R> future = new CompletableFuture<>();
+    calls.add(call);
+    futures.add((CompletableFuture<Object>) future);
+    return future;
+  }
+
+  public CompletableFuture<Void> add(RemoteRunnable call) {
+    return add(new RunnableCall(call));
+  }
+
+  public boolean isEmpty() {
+    return calls.isEmpty();
+  }
+
+  /**
+   * Executes the calls added since the last flush in one remote job, and completes their futures.
+   *
+   * @return the result or failure of each call, in order
+   * @throws RuntimeException if the job itself failed, in which case all the futures are failed too
+   */
+  public List<BatchResult<?>> flush() {
+    if (calls.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<RemoteCallable<?>> calls = new ArrayList<>(this.calls);
+    List<CompletableFuture<Object>> futures = new ArrayList<>(this.futures);
+    this.calls.clear();
+    this.futures.clear();
+    List<BatchResult<?>> results;
+    try {
+      results = executor.executeBatch(agentID, calls);
+    } catch (RuntimeException e) {
+      futures.forEach(future -> future.completeExceptionally(e));
+      throw e;
+    }
+    for (int i = 0; i < results.size(); i++) {
+      BatchResult<?> result = results.get(i);
+      if (result.isFailed()) {
+        futures.get(i).completeExceptionally(result.getFailure());
+      } else {
+        futures.get(i).complete(result.get());
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Same as {@link #flush()}, throwing the failure of the first call which failed, if any.
+   */
+  public void execute() {
+    List<BatchResult<?>> results = flush();
+    List<Throwable> failures = new ArrayList<>();
+    results.stream().filter(BatchResult::isFailed).forEach(result -> failures.add(result.getFailure()));
+    if (!failures.isEmpty()) {
+      RuntimeException e = Exceptions.asRuntime(failures.get(0));
+      failures.stream().skip(1).forEach(e::addSuppressed);
+      throw e;
+    }
+  }
+
+  /**
+   * A runnable added to a batch, kept as-is so that its call site can be recorded
+   */
+  static final class RunnableCall implements RemoteCallable<Void> {
+    private static final long serialVersionUID = 1L;
+
+    private final RemoteRunnable job;
+
+    RunnableCall(RemoteRunnable job) {
+      this.job = job;
+    }
+
+    RemoteRunnable getJob() {
+      return job;
+    }
+
+    @Override
+    public Void call() throws Exception {
+      job.run();
+      return null;
+    }
+  }
+}
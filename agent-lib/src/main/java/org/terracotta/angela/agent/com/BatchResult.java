@@ -0,0 +1,92 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.agent.com;
+
+import org.terracotta.angela.agent.com.grid.RemoteCallable;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The result, or the failure, of one of the calls of a batch executed by {@link Executor#executeBatch}.
+ */
+public final class BatchResult<R> implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private final R value;
+  private final Throwable failure;
+  private final long runNanos;
+
+  private BatchResult(R value, Throwable failure, long runNanos) {
+    this.value = value;
+    this.failure = failure;
+    this.runNanos = runNanos;
+  }
+
+  public boolean isFailed() {
+    return failure != null;
+  }
+
+  /**
+   * @return the result of the call
+   * @throws RuntimeException if the call failed
+   */
+  public R get() {
+    if (failure != null) {
+      throw Exceptions.asRuntime(failure);
+    }
+    return value;
+  }
+
+  public Throwable getFailure() {
+    return failure;
+  }
+
+  /**
+   * @return the time the call took to run on the agent
+   */
+  long getRunNanos() {
+    return runNanos;
+  }
+
+  /**
+   * Executes the calls in order, each of them being executed even if the previous ones failed.
+   */
+  static List<BatchResult<?>> callAll(List<RemoteCallable<?>> calls) {
+    List<BatchResult<?>> results = new ArrayList<>(calls.size());
+    for (RemoteCallable<?> call : calls) {
+      results.add(call(call));
+    }
+    return results;
+  }
+
+  private static <R> BatchResult<R> call(RemoteCallable<R> call) {
+    long start = System.nanoTime();
+    try {
+      R value = call.call();
+      return new BatchResult<>(value, null, System.nanoTime() - start);
+    } catch (Exception e) {
+      return new BatchResult<>(null, e, System.nanoTime() - start);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return failure == null ? "success: " + value : "failure: " + failure;
+  }
+}
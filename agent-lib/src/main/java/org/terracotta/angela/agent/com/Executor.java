@@ -22,22 +22,33 @@ import org.terracotta.angela.common.clientconfig.ClientId;
 import org.terracotta.angela.common.cluster.Cluster;
 import org.terracotta.angela.common.distribution.Distribution;
 import org.terracotta.angela.common.topology.InstanceId;
-import org.terracotta.angela.common.util.FileUtils;
 import org.terracotta.angela.agent.com.grid.RemoteCallable;
 import org.terracotta.angela.agent.com.grid.RemoteRunnable;
 
 import java.io.IOException;
-import java.io.UncheckedIOException;
+import java.io.Serializable;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.zip.Deflater;
+
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+import static org.terracotta.angela.common.AngelaProperties.FILE_TRANSFER_QUEUE_SIZE;
 
 /**
  * @author Mathieu Carbou
@@ -56,19 +67,67 @@ public interface Executor extends AutoCloseable {
    */
   Optional<AgentID> startRemoteAgent(String hostname);
 
+  /**
+   * Same as {@link #startRemoteAgent(String)} for several hostnames.
+   *
+   * @return the agentIds that have been spawned
+   */
+  default List<AgentID> startRemoteAgents(Collection<String> hostnames) {
+    List<AgentID> agentIDs = new ArrayList<>();
+    for (String hostname : new LinkedHashSet<>(hostnames)) {
+      startRemoteAgent(hostname).ifPresent(agentIDs::add);
+    }
+    return agentIDs;
+  }
+
   AgentGroup getGroup();
 
+  /**
+   * @return the statistics of the jobs executed by this executor, per call site
+   */
+  RemoteCallStats getRemoteCallStats();
+
+  /**
+   * Sends an event to the listeners of a topic on an agent. The events sent by an agent to a topic are received in the
+   * order they have been sent.
+   */
+  void sendEvent(AgentID agentID, String topic, Serializable event);
+
+  /**
+   * Listens to the events of a topic sent to this agent.
+   */
+  void addEventListener(String topic, Consumer<Serializable> listener);
+
+  void removeEventListener(String topic, Consumer<Serializable> listener);
+
   Cluster getCluster();
 
   Cluster getCluster(ClientId clientId);
 
   // remote calls to target agents
 
-  Future<Void> executeAsync(AgentID agentID, RemoteRunnable job);
+  /**
+   * @return a future completed when the job completes, which can be composed without blocking a thread
+   */
+  CompletableFuture<Void> executeAsync(AgentID agentID, RemoteRunnable job);
+
+  /**
+   * @return a future completed with the result of the job, which can be composed without blocking a thread
+   */
+  <R> CompletableFuture<R> executeAsync(AgentID agentID, RemoteCallable<R> job);
 
-  <R> Future<R> executeAsync(AgentID agentID, RemoteCallable<R> job);
+  /**
+   * Executes several calls on an agent as one remote job. The calls are executed in order, each of them being executed
+   * even if the previous ones failed.
+   *
+   * @return the result or failure of each call, in order
+   */
+  List<BatchResult<?>> executeBatch(AgentID agentID, List<RemoteCallable<?>> calls);
 
-  BlockingQueue<FileTransfer> getFileTransferQueue(InstanceId instanceId);
+  /**
+   * @return the file transfer queue with this name, created with this capacity if needed
+   */
+  BlockingQueue<FileTransfer> getFileTransferQueue(String name, int capacity);
 
   @Override
   void close();
@@ -77,6 +136,21 @@ public interface Executor extends AutoCloseable {
 
   void uploadKit(AgentID agentID, InstanceId instanceId, Distribution distribution, String kitInstallationName, Path kitInstallationPath);
 
+  default void uploadKit(Collection<AgentID> agentIDs, InstanceId instanceId, Distribution distribution, String kitInstallationName, Path kitInstallationPath) {
+    for (AgentID agentID : agentIDs) {
+      uploadKit(agentID, instanceId, distribution, kitInstallationName, kitInstallationPath);
+    }
+  }
+
+  /**
+   * Downloads the content of a remote folder into a local folder, streaming the files in frames
+   * which are written to disk as they arrive.
+   *
+   * @param compressionLevel level of the codec encoding the frames of compressible files,
+   *                         {@link java.util.zip.Deflater#NO_COMPRESSION} for store-only
+   */
+  void downloadFolder(AgentID agentID, String remoteFolder, Path localFolder, int compressionLevel);
+
   Optional<CompletableFuture<Void>> shutdown(AgentID agentID);
 
   // defaults
@@ -97,6 +171,10 @@ public interface Executor extends AutoCloseable {
     }
   }
 
+  default Batch batch(AgentID agentID) {
+    return new Batch(this, agentID);
+  }
+
   default AgentExecutor forAgent(AgentID agentID) {
     return new AgentExecutor(this, agentID);
   }
@@ -105,54 +183,99 @@ public interface Executor extends AutoCloseable {
     return findAgentID(hostname).orElseThrow(() -> new NoSuchElementException(hostname));
   }
 
+  default BlockingQueue<FileTransfer> getFileTransferQueue(InstanceId instanceId) {
+    return getFileTransferQueue(instanceId + "@file-transfer-queue", Integer.parseInt(FILE_TRANSFER_QUEUE_SIZE.getValue()));
+  }
+
+  /**
+   * Queues of the streams used to transfer files to one agent, so that several agents can receive files at the same
+   * time. The queue capacity is shared between the streams so that the memory used by a transfer does not change.
+   */
+  default List<BlockingQueue<FileTransfer>> getFileTransferQueues(InstanceId instanceId, AgentID agentID, int streams) {
+    int capacity = Math.max(1, Integer.parseInt(FILE_TRANSFER_QUEUE_SIZE.getValue()) / streams);
+    return IntStream.range(0, streams)
+        .mapToObj(stream -> getFileTransferQueue(instanceId + "@" + agentID + "@file-transfer-queue#" + stream, capacity))
+        .collect(toList());
+  }
+
   default void downloadFiles(InstanceId instanceId, Path dest) {
-    try {
-      BlockingQueue<FileTransfer> queue = getFileTransferQueue(instanceId);
-      logger.debug("Downloading files to: {}", dest);
-      Files.createDirectories(dest);
-      while (true) {
-        FileTransfer fileTransfer = queue.take();
-        if (fileTransfer.isFinished()) {
-          break;
+    downloadFiles(singletonList(getFileTransferQueue(instanceId)), dest);
+  }
+
+  default void downloadFiles(List<BlockingQueue<FileTransfer>> queues, Path dest) {
+    downloadFiles(queues, dest, null);
+  }
+
+  /**
+   * @param remoteUploadFuture the job uploading the files, so that the download fails as soon as the upload does
+   */
+  default void downloadFiles(List<BlockingQueue<FileTransfer>> queues, Path dest, Future<Void> remoteUploadFuture) {
+    FileTransfers.receive(queues, dest, remoteUploadFuture);
+  }
+
+  default void uploadFiles(InstanceId instanceId, List<Path> locations, Future<Void> remoteDownloadFuture) {
+    uploadFiles(singletonList(getFileTransferQueue(instanceId)), locations, remoteDownloadFuture);
+  }
+
+  /**
+   * Uploads files and folders. A file is received with its name, and the files of a folder with a path relative to
+   * the folder parent.
+   */
+  default void uploadFiles(List<BlockingQueue<FileTransfer>> queues, List<Path> locations, Future<Void> remoteDownloadFuture) {
+    upload(remoteDownloadFuture, () -> FileTransfers.send(queues, Deflater.NO_COMPRESSION, () -> {
+      Map<String, Path> files = new LinkedHashMap<>();
+      for (Path root : locations) {
+        if (Files.exists(root)) {
+          logger.debug("Uploading files from: {}", root);
+          try (Stream<Path> stream = Files.walk(root).filter(Files::isRegularFile)) {
+            stream.forEach(path -> files.put(FileTransfer.relativePath(root, path), path));
+          }
+        } else {
+          logger.debug("Skipping non-existing root: {}", root);
         }
-        fileTransfer.writeTo(dest);
-        logger.debug("Downloaded: " + fileTransfer);
       }
-      FileUtils.setCorrectPermissions(dest);
-    } catch (InterruptedException e) {
-      Thread.currentThread().interrupt();
-      throw new RuntimeException(e);
-    } catch (IOException e) {
-      throw new UncheckedIOException(e);
-    }
+      return files;
+    }));
   }
 
-  default void uploadFiles(InstanceId instanceId, List<Path> locations, Future<Void> remoteDownloadFuture) {
+  /**
+   * Uploads some selected files of a folder. They will be received with a path relative to the folder parent.
+   */
+  default void uploadFiles(List<BlockingQueue<FileTransfer>> queues, Path root, Collection<Path> files, Future<Void> remoteDownloadFuture) {
+    upload(remoteDownloadFuture, () -> FileTransfers.send(queues, Deflater.NO_COMPRESSION, () -> {
+      logger.debug("Uploading {} files from: {}", files.size(), root);
+      Map<String, Path> relativeFiles = new LinkedHashMap<>();
+      files.forEach(path -> relativeFiles.put(FileTransfer.relativePath(root, path), path));
+      return relativeFiles;
+    }));
+  }
+
+  /**
+   * Uploads all the files of a folder with a path relative to this folder.
+   */
+  default void uploadFolder(List<BlockingQueue<FileTransfer>> queues, Path folder, int compressionLevel) {
+    FileTransfers.send(queues, compressionLevel, () -> {
+      if (!Files.isDirectory(folder) || !Files.isReadable(folder)) {
+        throw new IOException("Folder does not exist or is not readable : " + folder);
+      }
+      logger.debug("Uploading folder: {}", folder);
+      Map<String, Path> files = new LinkedHashMap<>();
+      try (Stream<Path> stream = Files.walk(folder).filter(Files::isRegularFile)) {
+        stream.forEach(path -> {
+          List<String> parts = new ArrayList<>();
+          folder.relativize(path).forEach(part -> parts.add(part.toString()));
+          files.put(String.join("/", parts), path);
+        });
+      }
+      return files;
+    });
+  }
+
+  private static void upload(Future<Void> remoteDownloadFuture, Runnable upload) {
     try {
-      BlockingQueue<FileTransfer> queue = getFileTransferQueue(instanceId);
       try {
-        for (Path root : locations) {
-          if (Files.exists(root)) {
-            logger.debug("Uploading files from: {}", root);
-            try (Stream<Path> stream = Files.walk(root).filter(Files::isRegularFile)) {
-              stream.map(path -> FileTransfer.from(root, path)).forEach(fileTransfer -> {
-                try {
-                  queue.put(fileTransfer);
-                } catch (InterruptedException e) {
-                  Thread.currentThread().interrupt();
-                  throw new RuntimeException(e);
-                }
-                logger.debug("Uploaded: {}", fileTransfer);
-              });
-            } catch (IOException e) {
-              throw new UncheckedIOException(e);
-            }
-          } else {
-            logger.debug("Skipping non-existing root: {}", root);
-          }
-        }
+        upload.run();
       } finally {
-        queue.put(FileTransfer.END); // end of upload marker
         remoteDownloadFuture.get();
       }
     } catch (ExecutionException | InterruptedException e) {
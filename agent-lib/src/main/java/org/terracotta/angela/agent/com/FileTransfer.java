@@ -21,64 +21,232 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.IOException;
 import java.io.Serializable;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.Function;
 
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A frame of a file being transferred: a fixed-size chunk of bytes read at a given offset of a file.
+ * A file is sent as a sequence of frames, the last one being flagged so that the receiver knows the file is complete.
+ * The chunk can be encoded by a {@link FileTransferCodec}, in which case it is only kept encoded if this makes it smaller.
+ * Files smaller than a chunk can be grouped into one batch frame.
+ */
 public class FileTransfer implements Serializable {
-  private static final long serialVersionUID = 1L;
+  private static final long serialVersionUID = 5L;
 
-  public static final FileTransfer END = new FileTransfer(null, null);
+  public static final FileTransfer END = new FileTransfer(null, 0, 0, null, 0, null, true);
 
   private final String relativePath; // unix-like
+  private final long offset;
+  private final long fileSize;
   private final byte[] bytes;
+  private final int length; // length of the chunk once decoded
+  private final String codec; // null if the chunk is not encoded
+  private final boolean last;
+  private final List<FileTransfer> batch;
 
-  private FileTransfer(String relativePath, byte[] bytes) {
+  private FileTransfer(String relativePath, long offset, long fileSize, byte[] bytes, int length, String codec, boolean last) {
     this.relativePath = relativePath;
+    this.offset = offset;
+    this.fileSize = fileSize;
     this.bytes = bytes;
+    this.length = length;
+    this.codec = codec;
+    this.last = last;
+    this.batch = null;
+  }
+
+  private FileTransfer(List<FileTransfer> batch) {
+    this.relativePath = null;
+    this.offset = 0;
+    this.fileSize = 0;
+    this.bytes = null;
+    this.length = batch.stream().mapToInt(FileTransfer::getLength).sum();
+    this.codec = null;
+    this.last = true;
+    this.batch = batch;
   }
 
   public boolean isFinished() {
-    return relativePath == null && bytes == null;
+    return relativePath == null && bytes == null && batch == null;
+  }
+
+  public boolean isBatch() {
+    return batch != null;
+  }
+
+  public String getRelativePath() {
+    return relativePath;
+  }
+
+  public long getOffset() {
+    return offset;
+  }
+
+  public long getFileSize() {
+    return fileSize;
+  }
+
+  public int getLength() {
+    return length;
+  }
+
+  public String getCodec() {
+    return codec;
+  }
+
+  public boolean isLast() {
+    return last;
   }
 
   @Override
   public String toString() {
-    return relativePath;
+    return batch != null ? batch.toString() : relativePath + "[" + offset + "+" + getLength() + "/" + fileSize + "]";
   }
 
   @SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
   public void writeTo(Path root) {
+    if (batch != null) {
+      batch.forEach(frame -> frame.writeTo(root));
+      return;
+    }
     try {
       Path dest = root.resolve(relativePath);
       Files.createDirectories(dest.getParent());
-      Files.write(dest, bytes);
+      try (FileChannel channel = FileChannel.open(dest, CREATE, WRITE)) {
+        ByteBuffer buffer = ByteBuffer.wrap(codec == null ? bytes : FileTransferCodecs.get(codec).decode(bytes, length));
+        long position = offset;
+        while (buffer.hasRemaining()) {
+          position += channel.write(buffer, position);
+        }
+        if (last && channel.size() > fileSize) {
+          // an older and bigger version of the file was there
+          channel.truncate(fileSize);
+        }
+      }
     } catch (IOException e) {
       throw new UncheckedIOException(e);
     }
   }
 
-  @SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
-  public static FileTransfer from(Path root, Path file) {
-    try {
-      if (Files.isRegularFile(root)) {
-        // if root is a file, then walk will have 1 entry where root == file
-        if (!Objects.equals(root, file)) {
-          throw new IllegalStateException(root + " vs " + file);
+  /**
+   * Reads the frame of a file part, as planned by {@link #plan(Map, int)}, or a batch frame made of several small files.
+   *
+   * @param codecs gives the codec of each file, or null to send it as it is
+   */
+  public static FileTransfer read(List<Part> parts, Function<Path, FileTransferCodec> codecs, int compressionLevel) throws IOException {
+    if (parts.size() != 1) {
+      List<FileTransfer> batch = new ArrayList<>(parts.size());
+      for (Part part : parts) {
+        batch.add(read(Collections.singletonList(part), codecs, compressionLevel));
+      }
+      return new FileTransfer(batch);
+    }
+    Part part = parts.get(0);
+    try (FileChannel channel = FileChannel.open(part.file, READ)) {
+      ByteBuffer buffer = ByteBuffer.allocate(part.length);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, part.offset + buffer.position()) < 0) {
+          break; // file shrunk while reading it
         }
-        return new FileTransfer(root.getFileName().toString(), Files.readAllBytes(file));
+      }
+      byte[] bytes = buffer.position() == part.length ? buffer.array() : Arrays.copyOf(buffer.array(), buffer.position());
+      return encode(codecs.apply(part.file), compressionLevel, part.relativePath, part.offset, part.fileSize, bytes, part.offset + part.length >= part.fileSize);
+    }
+  }
 
+  /**
+   * Cuts files into the parts to send as independent frames, so that several streams can send them at the same time:
+   * files bigger than a chunk are cut into chunks, and files smaller than a chunk are grouped so that each group
+   * roughly fills a chunk.
+   *
+   * @param files the files to send, keyed by the unix-like path where they must be received
+   * @return the frames to send, each frame being one part of a big file or a group of small files
+   */
+  public static List<List<Part>> plan(Map<String, Path> files, int chunkSize) throws IOException {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+    }
+    List<List<Part>> frames = new ArrayList<>();
+    List<Part> group = new ArrayList<>();
+    long groupSize = 0;
+    for (Map.Entry<String, Path> entry : files.entrySet()) {
+      long fileSize = Files.size(entry.getValue());
+      if (fileSize < chunkSize) {
+        if (groupSize + fileSize > chunkSize) {
+          frames.add(group);
+          group = new ArrayList<>();
+          groupSize = 0;
+        }
+        group.add(new Part(entry.getKey(), entry.getValue(), 0, (int) fileSize, fileSize));
+        groupSize += fileSize;
       } else {
-        // relative path which contains the root folder name as a base
-        Path relWithBase = root.getFileName().resolve(root.relativize(file));
-        List<String> parts = new ArrayList<>(relWithBase.getNameCount());
-        relWithBase.forEach(part -> parts.add(part.toString()));
-        return new FileTransfer(String.join("/", parts), Files.readAllBytes(file));
+        for (long offset = 0; offset < fileSize; offset += chunkSize) {
+          frames.add(Collections.singletonList(new Part(entry.getKey(), entry.getValue(), offset, (int) Math.min(chunkSize, fileSize - offset), fileSize)));
+        }
       }
-    } catch (IOException e) {
-      throw new UncheckedIOException(e);
+    }
+    if (!group.isEmpty()) {
+      frames.add(group);
+    }
+    return frames;
+  }
+
+  private static FileTransfer encode(FileTransferCodec codec, int compressionLevel, String relativePath, long offset, long fileSize, byte[] bytes, boolean last) {
+    byte[] encoded = codec == null ? null : codec.encode(bytes, compressionLevel);
+    return encoded == null ?
+        new FileTransfer(relativePath, offset, fileSize, bytes, bytes.length, null, last) :
+        new FileTransfer(relativePath, offset, fileSize, encoded, bytes.length, codec.getName(), last);
+  }
+
+  @SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
+  static String relativePath(Path root, Path file) {
+    if (Files.isRegularFile(root)) {
+      // if root is a file, then walk will have 1 entry where root == file
+      if (!Objects.equals(root, file)) {
+        throw new IllegalStateException(root + " vs " + file);
+      }
+      return root.getFileName().toString();
+
+    } else {
+      // relative path which contains the root folder name as a base
+      Path relWithBase = root.getFileName().resolve(root.relativize(file));
+      List<String> parts = new ArrayList<>(relWithBase.getNameCount());
+      relWithBase.forEach(part -> parts.add(part.toString()));
+      return String.join("/", parts);
+    }
+  }
+
+  public static class Part {
+    private final String relativePath;
+    private final Path file;
+    private final long offset;
+    private final int length;
+    private final long fileSize;
+
+    Part(String relativePath, Path file, long offset, int length, long fileSize) {
+      this.relativePath = relativePath;
+      this.file = file;
+      this.offset = offset;
+      this.length = length;
+      this.fileSize = fileSize;
+    }
+
+    @Override
+    public String toString() {
+      return relativePath + "[" + offset + "+" + length + "/" + fileSize + "]";
     }
   }
 }
@@ -0,0 +1,39 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.agent.com;
+
+import java.io.IOException;
+
+/**
+ * Compresses the frames of a file transfer. Codecs are looked up by name through {@link java.util.ServiceLoader}, the
+ * name being carried by each frame so that the receiver decodes it with the same codec as the sender.
+ */
+public interface FileTransferCodec {
+
+  String getName();
+
+  /**
+   * @param level the compression level requested for the transfer, which the codec may ignore
+   * @return the encoded bytes, or null if they would not be smaller
+   */
+  byte[] encode(byte[] bytes, int level);
+
+  /**
+   * @param length the length of the bytes once decoded
+   */
+  byte[] decode(byte[] bytes, int length) throws IOException;
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.agent.com;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static org.terracotta.angela.common.AngelaProperties.FILE_TRANSFER_CODEC;
+
+/**
+ * Looks up the {@link FileTransferCodec} services, and decides which files of a transfer are worth compressing.
+ */
+final class FileTransferCodecs {
+  private static final Map<String, FileTransferCodec> CODECS = load();
+
+  // already compressed: encoding them again only costs cpu
+  private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<>(Arrays.asList(
+      "jar", "war", "ear", "zip", "gz", "tgz", "bz2", "xz", "zst", "lz4", "7z", "rar",
+      "png", "jpg", "jpeg", "gif", "mp3", "mp4"));
+  // the first bytes of a file are encoded to tell whether the whole file compresses
+  private static final int SAMPLE_SIZE = 64 * 1024;
+  private static final double MAX_SAMPLE_RATIO = 0.9;
+
+  private FileTransferCodecs() {
+  }
+
+  static FileTransferCodec get(String name) {
+    FileTransferCodec codec = CODECS.get(name);
+    if (codec == null) {
+      throw new IllegalArgumentException("Unknown file transfer codec: " + name + ". Available: " + CODECS.keySet());
+    }
+    return codec;
+  }
+
+  static FileTransferCodec getDefault() {
+    return get(FILE_TRANSFER_CODEC.getValue());
+  }
+
+  /**
+   * @return a function giving the codec to apply to each file of a transfer, null for the files to send as they are.
+   * Each file is only checked once, whatever the number of frames it is cut into.
+   */
+  static Function<Path, FileTransferCodec> selector(int compressionLevel) {
+    if (compressionLevel == Deflater.NO_COMPRESSION) {
+      return file -> null;
+    }
+    FileTransferCodec codec = getDefault();
+    Map<Path, Optional<FileTransferCodec>> selected = new ConcurrentHashMap<>();
+    return file -> selected.computeIfAbsent(file, f -> isCompressible(codec, f) ? Optional.of(codec) : Optional.empty()).orElse(null);
+  }
+
+  static boolean isCompressible(FileTransferCodec codec, Path file) {
+    String name = file.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    if (dot >= 0 && COMPRESSED_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT))) {
+      return false;
+    }
+    try (FileChannel channel = FileChannel.open(file, READ)) {
+      if (channel.size() <= SAMPLE_SIZE) {
+        // the sample would be the whole file: encoding the frame tells the same
+        return true;
+      }
+      ByteBuffer sample = ByteBuffer.allocate(SAMPLE_SIZE);
+      while (sample.hasRemaining() && channel.read(sample) >= 0) {
+        // fill the sample
+      }
+      byte[] bytes = Arrays.copyOf(sample.array(), sample.position());
+      byte[] encoded = codec.encode(bytes, Deflater.BEST_SPEED);
+      return encoded != null && encoded.length <= bytes.length * MAX_SAMPLE_RATIO;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static Map<String, FileTransferCodec> load() {
+    Map<String, FileTransferCodec> codecs = new HashMap<>();
+    for (FileTransferCodec codec : ServiceLoader.load(FileTransferCodec.class, FileTransferCodec.class.getClassLoader())) {
+      codecs.put(codec.getName(), codec);
+    }
+    return codecs;
+  }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.agent.com;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terracotta.angela.common.util.FileUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static java.util.Collections.emptyMap;
+import static org.terracotta.angela.common.AngelaProperties.FILE_TRANSFER_CHUNK_SIZE;
+import static org.terracotta.angela.common.AngelaProperties.FILE_TRANSFER_STREAMS;
+import static org.terracotta.angela.common.AngelaProperties.FILE_TRANSFER_TIMEOUT_SECONDS;
+
+/**
+ * Sends and receives files through several queues at the same time. Each queue is a stream fed by its own thread on
+ * the sender side, which takes the next frame to send from a plan shared by all streams, and drained by its own
+ * thread on the receiver side. Big files are thus striped across the streams, and small files are batched.
+ */
+final class FileTransfers {
+  private static final Logger logger = LoggerFactory.getLogger(FileTransfers.class);
+  private static final long POLL_INTERVAL_MILLIS = 500;
+
+  private FileTransfers() {
+  }
+
+  static int streams() {
+    return Math.max(1, Integer.parseInt(FILE_TRANSFER_STREAMS.getValue()));
+  }
+
+  /**
+   * Sends the listed files, and the end of upload marker whatever happens so that the receiver does not hang.
+   */
+  static void send(List<BlockingQueue<FileTransfer>> queues, int compressionLevel, Listing listing) {
+    Map<String, Path> files;
+    try {
+      files = listing.list();
+    } catch (IOException | RuntimeException e) {
+      send(queues, emptyMap(), compressionLevel);
+      throw Exceptions.asRuntime(e);
+    }
+    send(queues, files, compressionLevel);
+  }
+
+  /**
+   * Sends the files, then the end of upload marker in every queue whatever happens so that the receiver does not hang.
+   *
+   * @param files the files to send, keyed by the unix-like path where they must be received
+   */
+  static void send(List<BlockingQueue<FileTransfer>> queues, Map<String, Path> files, int compressionLevel) {
+    Queue<List<FileTransfer.Part>> frames = new ConcurrentLinkedQueue<>();
+    Function<Path, FileTransferCodec> codecs = file -> null;
+    try {
+      codecs = FileTransferCodecs.selector(compressionLevel);
+      frames.addAll(FileTransfer.plan(files, Integer.parseInt(FILE_TRANSFER_CHUNK_SIZE.getValue())));
+      logger.debug("Uploading {} files in {} frames through {} streams", files.size(), frames.size(), queues.size());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      // if the files cannot be read, the streams only send the end of upload marker
+      runAll("file-transfer-sender", sender(queues, frames, codecs, compressionLevel));
+    }
+  }
+
+  private static List<Callable<Void>> sender(List<BlockingQueue<FileTransfer>> queues, Queue<List<FileTransfer.Part>> frames,
+                                             Function<Path, FileTransferCodec> codecs, int compressionLevel) {
+    List<Callable<Void>> streams = new ArrayList<>(queues.size());
+    for (BlockingQueue<FileTransfer> queue : queues) {
+      streams.add(() -> {
+        try {
+          // frames are put one by one: the queue capacity bounds the memory used by the transfer
+          for (List<FileTransfer.Part> frame = frames.poll(); frame != null; frame = frames.poll()) {
+            queue.put(FileTransfer.read(frame, codecs, compressionLevel));
+          }
+        } catch (IOException | RuntimeException e) {
+          frames.clear(); // stop the other streams
+          throw e;
+        } finally {
+          queue.put(FileTransfer.END); // end of upload marker
+        }
+        return null;
+      });
+    }
+    return streams;
+  }
+
+  /**
+   * Writes the frames to disk as they arrive, until the end of upload marker has been received from every queue.
+   * A stream which fails to write keeps on draining its queue so that the sender does not hang.
+   *
+   * @param sender the remote job sending the files if known, so that the transfer fails as soon as it does, null
+   *               otherwise. In any case, the transfer fails if no frame is received for too long
+   */
+  static void receive(List<BlockingQueue<FileTransfer>> queues, Path dest, Future<?> sender) {
+    try {
+      Files.createDirectories(dest);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    logger.debug("Downloading files to: {} through {} streams", dest, queues.size());
+    long timeoutMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(FILE_TRANSFER_TIMEOUT_SECONDS.getValue()));
+    List<Callable<Void>> streams = new ArrayList<>(queues.size());
+    for (BlockingQueue<FileTransfer> queue : queues) {
+      streams.add(() -> {
+        RuntimeException failure = null;
+        while (true) {
+          FileTransfer fileTransfer = next(queue, sender, timeoutMillis);
+          if (fileTransfer.isFinished()) {
+            break;
+          }
+          if (failure == null) {
+            try {
+              fileTransfer.writeTo(dest);
+              logger.trace("Downloaded: {}", fileTransfer);
+            } catch (RuntimeException e) {
+              failure = e;
+            }
+          }
+        }
+        if (failure != null) {
+          throw failure;
+        }
+        return null;
+      });
+    }
+    runAll("file-transfer-receiver", streams);
+    FileUtils.setCorrectPermissions(dest);
+  }
+
+  private static FileTransfer next(BlockingQueue<FileTransfer> queue, Future<?> sender, long timeoutMillis) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    while (true) {
+      FileTransfer fileTransfer = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+      if (fileTransfer != null) {
+        return fileTransfer;
+      }
+      if (sender != null && sender.isDone()) {
+        try {
+          sender.get();
+        } catch (ExecutionException e) {
+          throw new IllegalStateException("File transfer failed: the sender failed", e.getCause());
+        }
+        // the end of upload marker is put before the sender completes: it has to be there
+        fileTransfer = queue.poll();
+        if (fileTransfer == null) {
+          throw new IllegalStateException("File transfer failed: the sender completed without sending all the files");
+        }
+        return fileTransfer;
+      }
+      if (System.currentTimeMillis() >= deadline) {
+        throw new IllegalStateException("File transfer failed: nothing received for " + timeoutMillis + "ms");
+      }
+    }
+  }
+
+  private static void runAll(String name, List<Callable<Void>> tasks) {
+    AtomicInteger counter = new AtomicInteger();
+    ExecutorService pool = Executors.newFixedThreadPool(tasks.size(), r -> {
+      Thread thread = new Thread(r, name + "-" + counter.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      RuntimeException failure = null;
+      for (Future<Void> future : pool.invokeAll(tasks)) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          RuntimeException error = Exceptions.asRuntime(e);
+          if (failure == null) {
+            failure = error;
+          } else {
+            failure.addSuppressed(error);
+          }
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @FunctionalInterface
+  interface Listing {
+    /**
+     * @return the files to send, keyed by the unix-like path where they must be received
+     */
+    Map<String, Path> list() throws IOException;
+  }
+}
@@ -19,6 +19,7 @@ package org.terracotta.angela.agent.com;
 import org.apache.ignite.lang.IgniteCallable;
 import org.apache.ignite.lang.IgniteRunnable;
 import org.terracotta.angela.agent.Agent;
+import org.terracotta.angela.agent.client.ClientJarStore;
 import org.terracotta.angela.agent.client.RemoteClientManager;
 import org.terracotta.angela.agent.com.grid.RemoteCallable;
 import org.terracotta.angela.agent.com.grid.RemoteRunnable;
@@ -28,7 +29,13 @@ import org.terracotta.angela.common.cluster.Cluster;
 import org.terracotta.angela.common.distribution.Distribution;
 import org.terracotta.angela.common.topology.InstanceId;
 
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -36,10 +43,19 @@ import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Future;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
-import static java.util.Collections.singletonList;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.terracotta.angela.common.AngelaProperties.IGNITE_FREE_THREADS;
+import static org.terracotta.angela.common.AngelaProperties.REMOTE_CALL_STATS;
 
 /**
  * Executor which is not using Ignite and directly execute closures
@@ -47,6 +63,9 @@ import static java.util.Collections.singletonList;
 public class IgniteFreeExecutor implements Executor {
 
   private final transient Map<String, BlockingQueue<FileTransfer>> queues = new ConcurrentHashMap<>();
+  private final transient Map<String, List<Consumer<Serializable>>> eventListeners = new ConcurrentHashMap<>();
+  private final transient ExecutorService jobExecutor = newJobExecutor();
+  private final transient RemoteCallStats remoteCallStats = new RemoteCallStats(REMOTE_CALL_STATS.getBooleanValue());
   private final AgentGroup agentGroup;
 
   public IgniteFreeExecutor(Agent agent) {
@@ -68,30 +87,54 @@ public class IgniteFreeExecutor implements Executor {
   @Override
   public void close() {
     queues.clear();
+    eventListeners.clear();
+    jobExecutor.shutdown();
+  }
+
+  /**
+   * Runs the asynchronous jobs on their own threads, up to a bound after which they run in the calling thread,
+   * so that callers can compose them and nested jobs cannot starve.
+   */
+  private static ExecutorService newJobExecutor() {
+    AtomicInteger threadCount = new AtomicInteger();
+    return new ThreadPoolExecutor(0, Integer.parseInt(IGNITE_FREE_THREADS.getValue()), 60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+      Thread thread = new Thread(runnable, "angela-local-job-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }, new ThreadPoolExecutor.CallerRunsPolicy());
   }
 
   @Override
-  public synchronized void uploadClientJars(AgentID agentID, InstanceId instanceId, List<Path> locations) {
-    CompletableFuture<Void> finished = new CompletableFuture<>();
-    Thread thread = new Thread(() -> {
-      downloadFiles(instanceId, new RemoteClientManager(instanceId).getClientClasspathRoot());
-      finished.complete(null);
-    }, "downloader-" + instanceId);
-    thread.start();
-    uploadFiles(instanceId, locations, finished);
+  public void uploadClientJars(AgentID agentID, InstanceId instanceId, List<Path> locations) {
+    // everything is on the same host: files are copied by the file system instead of being streamed through a queue
+    Path classpathRoot = new RemoteClientManager(instanceId).getClientClasspathRoot();
+    new ClientJarStore().adoptLocal(locations, ClientJarStore.manifest(locations), classpathRoot);
   }
 
   @Override
   public void uploadKit(AgentID agentID, InstanceId instanceId, Distribution distribution, String kitInstallationName, Path kitInstallationPath) {
-    RemoteKitManager remoteKitManager = new RemoteKitManager(instanceId, distribution, kitInstallationName);
-    Path installDir = remoteKitManager.getKitInstallationPath().getParent();
-    CompletableFuture<Void> finished = new CompletableFuture<>();
-    Thread thread = new Thread(() -> {
-      downloadFiles(instanceId, installDir);
-      finished.complete(null);
-    }, "downloader-" + instanceId);
-    thread.start();
-    uploadFiles(instanceId, singletonList(kitInstallationPath), finished);
+    if (!new RemoteKitManager(instanceId, distribution, kitInstallationName).copyKit(kitInstallationPath)) {
+      throw new IllegalArgumentException("Kit not found: " + kitInstallationPath);
+    }
+  }
+
+  @Override
+  public void downloadFolder(AgentID agentID, String remoteFolder, Path localFolder, int compressionLevel) {
+    Path folder = Paths.get(remoteFolder);
+    try {
+      if (!Files.isDirectory(folder) || !Files.isReadable(folder)) {
+        throw new IOException("Folder does not exist or is not readable : " + folder);
+      }
+      try (Stream<Path> stream = Files.walk(folder).filter(Files::isRegularFile)) {
+        for (Path file : (Iterable<Path>) stream::iterator) {
+          Path dest = localFolder.resolve(folder.relativize(file).toString());
+          Files.createDirectories(dest.getParent());
+          Files.copy(file, dest, REPLACE_EXISTING);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
   }
 
   @Override
@@ -119,6 +162,22 @@ public class IgniteFreeExecutor implements Executor {
     return agentGroup;
   }
 
+  @Override
+  public void sendEvent(AgentID agentID, String topic, Serializable event) {
+    // everything runs in this JVM: deliver the event in the thread of the sender
+    eventListeners.getOrDefault(topic, Collections.emptyList()).forEach(listener -> listener.accept(event));
+  }
+
+  @Override
+  public void addEventListener(String topic, Consumer<Serializable> listener) {
+    eventListeners.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>()).add(listener);
+  }
+
+  @Override
+  public void removeEventListener(String topic, Consumer<Serializable> listener) {
+    eventListeners.getOrDefault(topic, Collections.emptyList()).remove(listener);
+  }
+
   @Override
   public Cluster getCluster() {
     throw new UnsupportedOperationException("Unsupported in local mode");
@@ -130,30 +189,84 @@ public class IgniteFreeExecutor implements Executor {
   }
 
   @Override
-  public Future<Void> executeAsync(AgentID agentID, RemoteRunnable job) {
-    CompletableFuture<Void> future = new CompletableFuture<>();
-    try {
+  public CompletableFuture<Void> executeAsync(AgentID agentID, RemoteRunnable job) {
+    return callAsync(job, () -> {
       job.run();
-      future.complete(null);
+      return null;
+    });
+  }
+
+  @Override
+  public <R> CompletableFuture<R> executeAsync(AgentID agentID, RemoteCallable<R> job) {
+    return callAsync(job, job);
+  }
+
+  private <R> CompletableFuture<R> callAsync(Object job, RemoteCallable<R> call) {
+    CompletableFuture<R> future = new CompletableFuture<>();
+    long start = System.nanoTime();
+    jobExecutor.execute(() -> {
+      try {
+        future.complete(call(job, call, start));
+      } catch (Exception e) {
+        future.completeExceptionally(e);
+      }
+    });
+    return future;
+  }
+
+  @Override
+  public void execute(AgentID agentID, RemoteRunnable job) {
+    // a synchronous job runs in the calling thread
+    try {
+      call(job, () -> {
+        job.run();
+        return null;
+      }, System.nanoTime());
     } catch (Exception e) {
-      future.completeExceptionally(e);
+      throw Exceptions.asRuntime(e);
     }
-    return future;
   }
 
   @Override
-  public <R> Future<R> executeAsync(AgentID agentID, RemoteCallable<R> job) {
-    CompletableFuture<R> future = new CompletableFuture<>();
+  public <R> R execute(AgentID agentID, RemoteCallable<R> job) {
     try {
-      future.complete(job.call());
+      return call(job, job, System.nanoTime());
     } catch (Exception e) {
-      future.completeExceptionally(e);
+      throw Exceptions.asRuntime(e);
     }
-    return future;
+  }
+
+  /**
+   * Calls a job, recording its latency: nothing is serialized, so there is no size to record.
+   */
+  private <R> R call(Object job, RemoteCallable<R> call, long submitted) throws Exception {
+    long start = System.nanoTime();
+    boolean failed = true;
+    try {
+      R result = call.call();
+      failed = false;
+      return result;
+    } finally {
+      long end = System.nanoTime();
+      remoteCallStats.record(job, end - submitted, end - start, -1, -1, failed);
+    }
+  }
+
+  @Override
+  public RemoteCallStats getRemoteCallStats() {
+    return remoteCallStats;
+  }
+
+  @Override
+  public List<BatchResult<?>> executeBatch(AgentID agentID, List<RemoteCallable<?>> calls) {
+    long start = System.nanoTime();
+    List<BatchResult<?>> results = BatchResult.callAll(calls);
+    remoteCallStats.recordBatch(calls, results, System.nanoTime() - start, false);
+    return results;
   }
 
   @Override
-  public BlockingQueue<FileTransfer> getFileTransferQueue(InstanceId instanceId) {
-    return queues.computeIfAbsent(instanceId + "@file-transfer-queue", s -> new LinkedBlockingQueue<>(500));
+  public BlockingQueue<FileTransfer> getFileTransferQueue(String name, int capacity) {
+    return queues.computeIfAbsent(name, s -> new LinkedBlockingQueue<>(capacity));
   }
 }
@@ -24,13 +24,24 @@ import org.apache.ignite.lang.IgniteFutureTimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class IgniteFutureAdapter<V> implements Future<V> {
   private static final Logger logger = LoggerFactory.getLogger(IgniteFutureAdapter.class);
+  private static final AtomicInteger completerCount = new AtomicInteger();
+  // completes the futures returned by toCompletableFuture() so that their dependent stages never run on Ignite threads
+  private static final ExecutorService completer = Executors.newCachedThreadPool(r -> {
+    Thread thread = new Thread(r, "angela-job-completer-" + completerCount.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  });
 
   private final AgentID agentID;
   private final IgniteFuture<V> igniteFuture;
@@ -44,6 +55,30 @@ public class IgniteFutureAdapter<V> implements Future<V> {
     return agentID;
   }
 
+  /**
+   * @return a future completed on an Angela thread when the job completes, with the same failures as {@link #get()},
+   * so that it can be composed without parking a thread to wait for it nor running its dependent stages on the Ignite
+   * threads. Cancelling it cancels the job.
+   */
+  public CompletableFuture<V> toCompletableFuture() {
+    CompletableFuture<V> future = new CompletableFuture<>();
+    igniteFuture.listenAsync(done -> {
+      try {
+        future.complete(get());
+      } catch (ExecutionException e) {
+        future.completeExceptionally(e.getCause());
+      } catch (InterruptedException | RuntimeException e) {
+        future.completeExceptionally(e);
+      }
+    }, completer);
+    future.whenComplete((result, failure) -> {
+      if (future.isCancelled()) {
+        igniteFuture.cancel();
+      }
+    });
+    return future;
+  }
+
   @Override
   public boolean cancel(boolean mayInterruptIfRunning) {
     return igniteFuture.cancel();
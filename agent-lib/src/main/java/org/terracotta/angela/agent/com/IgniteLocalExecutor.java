@@ -17,16 +17,21 @@
 package org.terracotta.angela.agent.com;
 
 import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteQueue;
+import org.apache.ignite.cluster.ClusterGroup;
 import org.apache.ignite.configuration.CollectionConfiguration;
+import org.apache.ignite.lang.IgniteBiPredicate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terracotta.angela.agent.Agent;
+import org.terracotta.angela.agent.client.ClientJarStore;
 import org.terracotta.angela.agent.client.RemoteClientManager;
 import org.terracotta.angela.agent.com.grid.GridRemoteCallableJob;
 import org.terracotta.angela.agent.com.grid.GridRemoteRunnableJob;
 import org.terracotta.angela.agent.com.grid.RemoteCallable;
 import org.terracotta.angela.agent.com.grid.RemoteRunnable;
 import org.terracotta.angela.agent.com.grid.ignite.IgniteGridCluster;
+import org.terracotta.angela.agent.kit.KitManifest;
 import org.terracotta.angela.agent.kit.RemoteKitManager;
 import org.terracotta.angela.common.clientconfig.ClientId;
 import org.terracotta.angela.common.cluster.Cluster;
@@ -34,32 +39,52 @@ import org.terracotta.angela.common.distribution.Distribution;
 import org.terracotta.angela.common.topology.InstanceId;
 import org.terracotta.angela.common.util.IpUtils;
 
+import java.io.Serializable;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Duration;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import static java.util.function.Predicate.isEqual;
+import static java.util.stream.Collectors.toList;
+import static org.terracotta.angela.common.AngelaProperties.KIT_BROADCAST;
+import static org.terracotta.angela.common.AngelaProperties.REMOTE_CALL_STATS;
 
 /**
  * Executor which is using only one local ignite instance, plus eventually one per client job
  */
 public class IgniteLocalExecutor implements Executor {
   private final static Logger logger = LoggerFactory.getLogger(IgniteLocalExecutor.class);
+  // maximum number of kit transfers a broadcast drives at the same time
+  private static final int KIT_BROADCAST_THREADS = 8;
 
   protected final UUID group;
   protected final Ignite ignite;
   protected final AgentID agentID;
   protected final IgniteAgentGroup agentGroup;
   private final IgniteGridCluster gridCluster;
+  private final transient Map<Consumer<Serializable>, IgniteBiPredicate<UUID, Object>> eventListeners = new ConcurrentHashMap<>();
+  // not sent along with the jobs capturing this executor: the copies of the agents do not record their calls
+  private final transient RemoteCallStats remoteCallStats = new RemoteCallStats(REMOTE_CALL_STATS.getBooleanValue());
 
   public IgniteLocalExecutor(Agent agent) {
     this(agent.getGroupId(), agent.getAgentID(), agent.getIgnite());
@@ -101,18 +126,196 @@ public class IgniteLocalExecutor implements Executor {
 
   @Override
   public void uploadClientJars(AgentID agentID, InstanceId instanceId, List<Path> locations) {
-    Future<Void> remoteDownloadFuture = executeAsync(agentID, () -> downloadFiles(instanceId, new RemoteClientManager(instanceId).getClientClasspathRoot()));
-    uploadFiles(instanceId, locations, remoteDownloadFuture);
+    Map<String, String> manifest = ClientJarStore.manifest(locations);
+    if (IpUtils.isLocal(agentID.getHostName())) {
+      // same host: the agent copies the files by itself if it can see them
+      List<String> sources = locations.stream().filter(Files::exists).map(Path::toString).collect(toList());
+      boolean copied = execute(agentID, () -> {
+        List<Path> paths = sources.stream().map(Paths::get).collect(toList());
+        if (!paths.stream().allMatch(Files::exists)) {
+          return false;
+        }
+        new ClientJarStore().adoptLocal(paths, manifest, new RemoteClientManager(instanceId).getClientClasspathRoot());
+        return true;
+      });
+      if (copied) {
+        logger.debug("Copied {} classpath entries to: {}", sources.size(), agentID);
+        return;
+      }
+    }
+    // only upload the classpath entries that the agent does not already have in its jar store
+    Set<String> missing = execute(agentID, () -> new ClientJarStore().missing(manifest.values()));
+    List<Path> uploads = ClientJarStore.uploads(locations, manifest, missing);
+    logger.debug("Uploading {} classpath entries out of {} to: {}", uploads.size(), locations.size(), agentID);
+    int streams = FileTransfers.streams();
+    List<BlockingQueue<FileTransfer>> queues = getFileTransferQueues(instanceId, agentID, streams);
+    try {
+      Future<Void> remoteDownloadFuture = executeAsync(agentID, () -> {
+        Path classpathRoot = new RemoteClientManager(instanceId).getClientClasspathRoot();
+        downloadFiles(getFileTransferQueues(instanceId, agentID, streams), classpathRoot);
+        new ClientJarStore().adopt(manifest, classpathRoot);
+      });
+      uploadFiles(queues, uploads, remoteDownloadFuture);
+    } finally {
+      close(queues);
+    }
   }
 
   @Override
   public void uploadKit(AgentID agentID, InstanceId instanceId, Distribution distribution, String kitInstallationName, Path kitInstallationPath) {
-    Future<Void> remoteDownloadFuture = executeAsync(agentID, () -> {
+    if (IpUtils.isLocal(agentID.getHostName())) {
+      // same host: the agent copies the kit by itself if it can see it
+      String source = kitInstallationPath.toString();
+      if (execute(agentID, () -> new RemoteKitManager(instanceId, distribution, kitInstallationName).copyKit(Paths.get(source)))) {
+        logger.info("Copied kit: {} to: {}", kitInstallationName, agentID);
+        return;
+      }
+    }
+    // rsync-like: the agent reports what it already has from a previous kit, and only the differing files are sent
+    KitManifest remoteManifest = execute(agentID, () -> new RemoteKitManager(instanceId, distribution, kitInstallationName).prepareKitSync());
+    if (remoteManifest == null) {
+      logger.info("Kit: {} already installed on: {}", kitInstallationName, agentID);
+      return;
+    }
+    KitManifest.Diff diff;
+    try {
+      diff = remoteManifest.diff(kitInstallationPath);
+    } catch (RuntimeException e) {
+      releaseKitSync(agentID, instanceId, distribution, kitInstallationName);
+      throw e;
+    }
+    logDiff(kitInstallationName, getLocalAgentID(), agentID, remoteManifest, diff);
+    int streams = FileTransfers.streams();
+    List<BlockingQueue<FileTransfer>> queues = getFileTransferQueues(instanceId, agentID, streams);
+    try {
+      Future<Void> remoteDownloadFuture = receiveKit(agentID, instanceId, distribution, kitInstallationName, diff.getFilesToDelete(), streams);
+      uploadFiles(queues, kitInstallationPath, diff.getFilesToSend(kitInstallationPath), remoteDownloadFuture);
+    } finally {
+      close(queues);
+    }
+  }
+
+  @Override
+  public void uploadKit(Collection<AgentID> agentIDs, InstanceId instanceId, Distribution distribution, String kitInstallationName, Path kitInstallationPath) {
+    List<AgentID> targets = new ArrayList<>(new LinkedHashSet<>(agentIDs));
+    if (targets.size() < 2 || !KIT_BROADCAST.getBooleanValue()) {
+      Executor.super.uploadKit(targets, instanceId, distribution, kitInstallationName, kitInstallationPath);
+      return;
+    }
+    logger.info("Broadcasting kit: {} to: {}", kitInstallationName, targets);
+    // binary tree laid out like a heap: the orchestrator is node 0 and the targets are nodes 1..N.
+    // Each node forwards the kit to nodes 2i+1 and 2i+2 once it has received it.
+    // If a node fails to receive the kit, the orchestrator sends it directly to its children.
+    AtomicInteger threadCount = new AtomicInteger();
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(targets.size(), KIT_BROADCAST_THREADS), r -> {
+      Thread thread = new Thread(r, "kit-broadcast-" + instanceId + "-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      List<CompletableFuture<Void>> received = new ArrayList<>(targets.size() + 1);
+      received.add(CompletableFuture.completedFuture(null));
+      for (int i = 1; i <= targets.size(); i++) {
+        int parent = (i - 1) / 2;
+        AgentID source = parent == 0 ? null : targets.get(parent - 1);
+        AgentID target = targets.get(i - 1);
+        received.add(received.get(parent).handleAsync((ignored, parentFailure) -> {
+          if (source == null || parentFailure != null) {
+            uploadKit(target, instanceId, distribution, kitInstallationName, kitInstallationPath);
+          } else {
+            forwardKit(source, target, instanceId, distribution, kitInstallationName);
+          }
+          return null;
+        }, pool));
+      }
+      CompletableFuture.allOf(received.toArray(new CompletableFuture<?>[0])).get();
+    } catch (InterruptedException | ExecutionException e) {
+      throw Exceptions.asRuntime(e);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Sends a kit from an agent that already has it to another agent: the files go directly from agent to agent
+   */
+  private void forwardKit(AgentID source, AgentID target, InstanceId instanceId, Distribution distribution, String kitInstallationName) {
+    KitManifest targetManifest = execute(target, () -> new RemoteKitManager(instanceId, distribution, kitInstallationName).prepareKitSync());
+    if (targetManifest == null) {
+      logger.info("Kit: {} already installed on: {}", kitInstallationName, target);
+      return;
+    }
+    KitManifest.Diff diff;
+    try {
+      diff = execute(source, () -> targetManifest.diff(new RemoteKitManager(instanceId, distribution, kitInstallationName).getKitInstallationPath()));
+    } catch (RuntimeException e) {
+      releaseKitSync(target, instanceId, distribution, kitInstallationName);
+      throw e;
+    }
+    logDiff(kitInstallationName, source, target, targetManifest, diff);
+    int streams = FileTransfers.streams();
+    List<BlockingQueue<FileTransfer>> queues = getFileTransferQueues(instanceId, target, streams);
+    try {
+      Future<Void> remoteDownloadFuture = receiveKit(target, instanceId, distribution, kitInstallationName, diff.getFilesToDelete(), streams);
+      execute(source, () -> {
+        Path kit = new RemoteKitManager(instanceId, distribution, kitInstallationName).getKitInstallationPath();
+        uploadFiles(getFileTransferQueues(instanceId, target, streams), kit, diff.getFilesToSend(kit), CompletableFuture.completedFuture(null));
+      });
+      remoteDownloadFuture.get();
+    } catch (InterruptedException | ExecutionException e) {
+      throw Exceptions.asRuntime(e);
+    } finally {
+      // the agents only use the queues: the orchestrator removes them from the grid once both ends are done
+      close(queues);
+    }
+  }
+
+  private Future<Void> receiveKit(AgentID agentID, InstanceId instanceId, Distribution distribution, String kitInstallationName, Collection<String> filesToDelete, int streams) {
+    return executeAsync(agentID, () -> {
       RemoteKitManager remoteKitManager = new RemoteKitManager(instanceId, distribution, kitInstallationName);
-      Path installDir = remoteKitManager.getKitInstallationPath().getParent();
-      downloadFiles(instanceId, installDir);
+      try {
+        remoteKitManager.deleteFromKitSync(filesToDelete);
+        downloadFiles(getFileTransferQueues(instanceId, agentID, streams), remoteKitManager.getKitSyncPath().getParent());
+        remoteKitManager.completeKitSync();
+      } finally {
+        remoteKitManager.releaseKitSync();
+      }
     });
-    uploadFiles(instanceId, Collections.singletonList(kitInstallationPath), remoteDownloadFuture);
+  }
+
+  /**
+   * Lets the other installs of the kit on the agent proceed when its transfer fails before being started
+   */
+  private void releaseKitSync(AgentID agentID, InstanceId instanceId, Distribution distribution, String kitInstallationName) {
+    execute(agentID, () -> new RemoteKitManager(instanceId, distribution, kitInstallationName).releaseKitSync());
+  }
+
+  private static void logDiff(String kitInstallationName, AgentID source, AgentID target, KitManifest targetManifest, KitManifest.Diff diff) {
+    int filesToDelete = diff.getFilesToDelete().size();
+    logger.info("Uploading kit: {} from: {} to: {}: sending {} files ({} bytes), {} files already there, deleting {} files",
+        kitInstallationName, source, target, diff.getFileCountToSend(), diff.getBytesToSend(), targetManifest.size() - filesToDelete, filesToDelete);
+  }
+
+  @Override
+  public void downloadFolder(AgentID agentID, String remoteFolder, Path localFolder, int compressionLevel) {
+    // the agent pushes the files through a queue dedicated to this download while they are written locally
+    InstanceId transferId = new InstanceId(UUID.randomUUID().toString(), "download");
+    AgentID receiver = getLocalAgentID();
+    int streams = FileTransfers.streams();
+    List<BlockingQueue<FileTransfer>> queues = getFileTransferQueues(transferId, receiver, streams);
+    try {
+      Future<Void> remoteUploadFuture = executeAsync(agentID, () -> uploadFolder(getFileTransferQueues(transferId, receiver, streams), Paths.get(remoteFolder), compressionLevel));
+      downloadFiles(queues, localFolder, remoteUploadFuture);
+      remoteUploadFuture.get();
+    } catch (InterruptedException | ExecutionException e) {
+      throw Exceptions.asRuntime(e);
+    } finally {
+      close(queues);
+    }
+  }
+
+  private static void close(List<BlockingQueue<FileTransfer>> queues) {
+    queues.forEach(queue -> ((IgniteQueue<FileTransfer>) queue).close());
   }
 
   @Override
@@ -156,24 +359,94 @@ public class IgniteLocalExecutor implements Executor {
   }
 
   @Override
-  public Future<Void> executeAsync(AgentID agentID, RemoteRunnable job) {
+  public CompletableFuture<Void> executeAsync(AgentID agentID, RemoteRunnable job) {
     logger.debug("Executing job on: {}", agentID);
-    return agentGroup.clusterGroup(agentID)
-        .map(clusterGroup -> new IgniteFutureAdapter<>(agentID, ignite.compute(clusterGroup).runAsync(new GridRemoteRunnableJob(job))))
-        .orElseThrow(() -> new IllegalArgumentException("No agent found matching: " + agentID + " in group " + group));
+    ClusterGroup clusterGroup = clusterGroup(agentID);
+    if (isRecording()) {
+      return remoteCallStats.time(job, () -> {
+        job.run();
+        return null;
+      }, timed -> callAsync(agentID, clusterGroup, timed));
+    }
+    return new IgniteFutureAdapter<>(agentID, ignite.compute(clusterGroup).runAsync(new GridRemoteRunnableJob(job))).toCompletableFuture();
   }
 
   @Override
-  public <R> Future<R> executeAsync(AgentID agentID, RemoteCallable<R> job) {
+  public <R> CompletableFuture<R> executeAsync(AgentID agentID, RemoteCallable<R> job) {
     logger.debug("Executing job on: {}", agentID);
+    ClusterGroup clusterGroup = clusterGroup(agentID);
+    if (isRecording()) {
+      return remoteCallStats.time(job, job, timed -> callAsync(agentID, clusterGroup, timed));
+    }
+    return callAsync(agentID, clusterGroup, job);
+  }
+
+  private <R> CompletableFuture<R> callAsync(AgentID agentID, ClusterGroup clusterGroup, RemoteCallable<R> job) {
+    return new IgniteFutureAdapter<>(agentID, ignite.compute(clusterGroup).callAsync(new GridRemoteCallableJob<>(job))).toCompletableFuture();
+  }
+
+  private ClusterGroup clusterGroup(AgentID agentID) {
     return agentGroup.clusterGroup(agentID)
-        .map(clusterGroup -> new IgniteFutureAdapter<>(agentID, ignite.compute(clusterGroup).callAsync(new GridRemoteCallableJob<>(job))))
         .orElseThrow(() -> new IllegalArgumentException("No agent found matching: " + agentID + " in group " + group));
   }
 
+  private boolean isRecording() {
+    return remoteCallStats != null && remoteCallStats.isEnabled();
+  }
+
+  @Override
+  public RemoteCallStats getRemoteCallStats() {
+    return remoteCallStats;
+  }
+
+  @Override
+  public List<BatchResult<?>> executeBatch(AgentID agentID, List<RemoteCallable<?>> calls) {
+    logger.debug("Executing batch of {} calls on: {}", calls.size(), agentID);
+    final List<RemoteCallable<?>> jobs = new ArrayList<>(calls);
+    if (!isRecording()) {
+      return execute(agentID, () -> BatchResult.callAll(jobs));
+    }
+    // not timed as a single job: each call is recorded at its own call site
+    long start = System.nanoTime();
+    try {
+      List<BatchResult<?>> results = callAsync(agentID, clusterGroup(agentID), () -> BatchResult.callAll(jobs)).get();
+      remoteCallStats.recordBatch(jobs, results, System.nanoTime() - start, true);
+      return results;
+    } catch (InterruptedException | ExecutionException e) {
+      remoteCallStats.recordBatch(jobs, null, System.nanoTime() - start, true);
+      throw Exceptions.asRuntime(e);
+    }
+  }
+
+  @Override
+  public void sendEvent(AgentID agentID, String topic, Serializable event) {
+    ClusterGroup clusterGroup = ignite.cluster()
+        .forAttribute("angela.group", group.toString())
+        .forAttribute("angela.nodeName", agentID.toString());
+    ignite.message(clusterGroup).sendOrdered(topic, event, 0);
+  }
+
+  @Override
+  public void addEventListener(String topic, Consumer<Serializable> listener) {
+    IgniteBiPredicate<UUID, Object> predicate = (nodeId, event) -> {
+      listener.accept((Serializable) event);
+      return true;
+    };
+    eventListeners.put(listener, predicate);
+    ignite.message().localListen(topic, predicate);
+  }
+
+  @Override
+  public void removeEventListener(String topic, Consumer<Serializable> listener) {
+    IgniteBiPredicate<UUID, Object> predicate = eventListeners.remove(listener);
+    if (predicate != null) {
+      ignite.message().stopLocalListen(topic, predicate);
+    }
+  }
+
   @Override
-  public BlockingQueue<FileTransfer> getFileTransferQueue(InstanceId instanceId) {
-    return ignite.queue(instanceId + "@file-transfer-queue", 500, new CollectionConfiguration().setGroupName(group.toString()));
+  public IgniteQueue<FileTransfer> getFileTransferQueue(String name, int capacity) {
+    return ignite.queue(name, capacity, new CollectionConfiguration().setGroupName(group.toString()));
   }
 
   @Override
@@ -24,13 +24,12 @@ import net.schmizz.sshj.connection.channel.direct.PTYMode;
 import net.schmizz.sshj.connection.channel.direct.Session;
 import net.schmizz.sshj.transport.TransportException;
 import net.schmizz.sshj.transport.verification.PromiscuousVerifier;
-import net.schmizz.sshj.xfer.InMemoryDestFile;
-import net.schmizz.sshj.xfer.scp.SCPRemoteException;
 import org.apache.commons.io.IOUtils;
 import org.apache.ignite.Ignite;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terracotta.angela.agent.Agent;
+import org.terracotta.angela.agent.client.ClassDataSharing;
 import org.terracotta.angela.common.AngelaProperties;
 import org.terracotta.angela.common.TerracottaCommandLineEnvironment;
 import org.terracotta.angela.common.util.AngelaVersions;
@@ -41,7 +40,6 @@ import org.terracotta.angela.common.util.JavaLocationResolver;
 import org.terracotta.angela.common.util.LogOutputStream;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -51,19 +49,27 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+import static org.terracotta.angela.common.AngelaProperties.CLASS_DATA_SHARING;
 import static org.terracotta.angela.common.AngelaProperties.ROOT_DIR;
 import static org.terracotta.angela.common.AngelaProperties.SSH_PORT;
 import static org.terracotta.angela.common.AngelaProperties.SSH_STRICT_HOST_CHECKING;
@@ -78,8 +84,12 @@ public class IgniteSshRemoteExecutor extends IgniteLocalExecutor {
 
   private final static Logger logger = LoggerFactory.getLogger(IgniteSshRemoteExecutor.class);
   private static final int MAX_LINE_LENGTH = 1024;
+  private static final String UPLOAD_MARKER = "angela.agentJar.upload";
+  private static final String TOOLCHAINS_MARKER = "angela.toolchains";
+  private static final String ARCHIVE_MARKER = "angela.classDataSharing.archive";
 
-  private transient final Map<String, RemoteAgentHolder> clients = new HashMap<>();
+  private transient final Map<String, RemoteAgentHolder> clients = new ConcurrentHashMap<>();
+  private transient final Map<String, Object> hostLocks = new ConcurrentHashMap<>();
   private transient String remoteUserName = SSH_USERNAME.getValue();
   private transient String remoteUserNameKeyPath = SSH_USERNAME_KEY_PATH.getValue();
   private transient TerracottaCommandLineEnvironment tcEnv = TerracottaCommandLineEnvironment.DEFAULT;
@@ -154,7 +164,7 @@ public class IgniteSshRemoteExecutor extends IgniteLocalExecutor {
     return this;
   }
 
-  private void initAgentJar() {
+  private synchronized void initAgentJar() {
     if (agentJarFile != null) {
       return;
     }
@@ -166,14 +176,60 @@ public class IgniteSshRemoteExecutor extends IgniteLocalExecutor {
     }
   }
 
-  @SuppressFBWarnings({"IS2_INCONSISTENT_SYNC", "NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE"})
+  /**
+   * Agents are started concurrently, one thread per hostname.
+   */
+  @Override
+  public List<AgentID> startRemoteAgents(Collection<String> hostnames) {
+    List<String> distinctHostnames = hostnames.stream().distinct().collect(toList());
+    if (distinctHostnames.size() < 2) {
+      return super.startRemoteAgents(distinctHostnames);
+    }
+    ExecutorService executorService = Executors.newFixedThreadPool(distinctHostnames.size(), r -> {
+      Thread thread = new Thread(r, "ssh-agent-start");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      List<CompletableFuture<Optional<AgentID>>> starts = distinctHostnames.stream()
+          .map(hostname -> CompletableFuture.supplyAsync(() -> startRemoteAgent(hostname), executorService))
+          .collect(toList());
+      List<AgentID> agentIDs = new ArrayList<>();
+      RuntimeException failure = null;
+      for (CompletableFuture<Optional<AgentID>> start : starts) {
+        try {
+          start.join().ifPresent(agentIDs::add);
+        } catch (CompletionException e) {
+          if (failure == null) {
+            failure = new RuntimeException("Failed to launch some Ignite agents (using SSH)");
+          }
+          failure.addSuppressed(e.getCause());
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+      return agentIDs;
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
   @Override
-  public synchronized Optional<AgentID> startRemoteAgent(String hostname) {
+  public Optional<AgentID> startRemoteAgent(String hostname) {
     if (IpUtils.isLocal(hostname)) {
       agentGroup.joined(getLocalAgentID(), hostname);
       return Optional.empty();
     }
 
+    // agents of different hosts can be started concurrently
+    synchronized (hostLocks.computeIfAbsent(hostname, key -> new Object())) {
+      return spawnRemoteAgent(hostname);
+    }
+  }
+
+  @SuppressFBWarnings({"IS2_INCONSISTENT_SYNC", "NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE"})
+  private Optional<AgentID> spawnRemoteAgent(String hostname) {
     if (clients.containsKey(hostname) || agentGroup.findRemoteAgentID(hostname).isPresent()) {
       // if we detect we need an agent for a local hostname, or an already spawned one, re-use the local one
       return Optional.empty();
@@ -202,22 +258,40 @@ public class IgniteSshRemoteExecutor extends IgniteLocalExecutor {
         ssh.authPublickey(remoteUserName, remoteUserNameKeyPath);
       }
 
-      // ensures correct perms are set (or reset if wrong) for each folder
       final String rootDir = getRemoteRootDir();
-      final String baseDir;
-      final String jarsDir;
-      for (String path : Arrays.asList(
-          rootDir,
-          rootDir + "/.angela",
-          baseDir = rootDir + "/.angela/" + hostname,
-          jarsDir = rootDir + "/.angela/" + hostname + "/jars")) {
-        exec(ssh, "mkdir -p " + path);
-        exec(ssh, "chmod a+w " + path);
-      }
+      final String baseDir = rootDir + "/.angela/" + hostname;
+      final String jarsDir = baseDir + "/jars";
+      final String dest = jarsDir + "/" + agentJarFile.getFileName();
+      final boolean readToolchains = tcEnv.isToolchainBased();
 
-      String dest = jarsDir + "/" + agentJarFile.getFileName();
-      if (agentJarFile.getFileName().toString().endsWith("-SNAPSHOT.jar") || !exec(ssh, "[ -e " + dest + " ]").isPresent()) {
-        // jar file is a snapshot or does not exist, upload it
+      // the host is prepared by a single script, to not pay for one SSH session per command:
+      // ensures correct perms are set (or reset if wrong) for each folder
+      StringBuilder script = new StringBuilder("for dir in");
+      for (String path : Arrays.asList(rootDir, rootDir + "/.angela", baseDir, jarsDir)) {
+        script.append(' ').append(quote(path));
+      }
+      script.append("; do mkdir -p \"$dir\"; chmod a+w \"$dir\"; done\n");
+      // upload the jar file if it is a snapshot or does not exist: the class data sharing archives of the previous jar
+      // cannot be used with the new one
+      script.append("if ").append(agentJarFile.getFileName().toString().endsWith("-SNAPSHOT.jar") ? "true" : "[ ! -e " + quote(dest) + " ]")
+          .append("; then rm -f ").append(quote(dest)).append(".*.jsa; echo ").append(UPLOAD_MARKER).append("; fi\n");
+      if (readToolchains) {
+        // read at each start, in the same session, so that a change of the remote JDKs is always seen
+        // the shell expands $HOME, which some ssh servers do not allow with scp
+        script.append("echo ").append(TOOLCHAINS_MARKER).append("; cat \"$HOME/.m2/toolchains.xml\"\n");
+      }
+      script.append("exit 0\n");
+      String output = exec(ssh, script.toString()).orElseThrow(() -> new IOException("Unable to prepare: " + hostname));
+
+      int toolchainsIndex = output.indexOf(TOOLCHAINS_MARKER);
+      String toolchains = null;
+      if (readToolchains) {
+        toolchains = toolchainsIndex < 0 ? "" : output.substring(toolchainsIndex + TOOLCHAINS_MARKER.length()).trim();
+        if (toolchains.isEmpty()) {
+          throw new IOException("Unable to read $HOME/.m2/toolchains.xml on: " + hostname);
+        }
+      }
+      if ((toolchainsIndex < 0 ? output : output.substring(0, toolchainsIndex)).contains(UPLOAD_MARKER)) {
         logger.debug("Uploading agent jar: {} to: {}...", agentJarFile, hostname);
         ssh.newSCPFileTransfer().upload(agentJarFile.toString(), dest);
       }
@@ -225,9 +299,10 @@ public class IgniteSshRemoteExecutor extends IgniteLocalExecutor {
       Session session = ssh.startSession();
       session.allocatePTY("vt100", 320, 96, 0, 0, Collections.<PTYMode, Integer>emptyMap());
 
-      String remoteJavaHome = findJavaHomeFromRemoteToolchains(ssh);
-      String command = remoteJavaHome + "/bin/java " +
+      Map.Entry<String, String> remoteJava = findRemoteJava(ssh, toolchains, dest);
+      String command = remoteJava.getKey() + "/bin/java " +
           String.join(" ", tcEnv.getJavaOpts()) + " " +
+          remoteJava.getValue() +
           // angela.java.resolver=user will ensure that any usage of TerracottaCommandLineEnvironment
           // will point to the exact same JVM as the one used to start the process by default
           "-Dangela.process=spawned " +
@@ -244,6 +319,7 @@ public class IgniteSshRemoteExecutor extends IgniteLocalExecutor {
         logger.info("Starting remote agent on: {}", hostname);
       }
 
+      long start = System.nanoTime();
       Session.Command cmd = session.exec(command);
 
       SshLogOutputStream sshLogOutputStream = new SshLogOutputStream(hostname, cmd);
@@ -254,7 +330,7 @@ public class IgniteSshRemoteExecutor extends IgniteLocalExecutor {
 
       AgentID agentID = sshLogOutputStream.waitForStartedState();
 
-      logger.info("Agent: {} started on: {}", agentID, hostname);
+      logger.info("Agent: {} started on: {} in {} ms", agentID, hostname, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
       clients.put(hostname, new RemoteAgentHolder(hostname, ssh, session, cmd));
 
       // "hostname" is the hostname used here in the angela test to reach the remote host
@@ -346,7 +422,18 @@ public class IgniteSshRemoteExecutor extends IgniteLocalExecutor {
     }
   }
 
-  private String findJavaHomeFromRemoteToolchains(SSHClient ssh) throws IOException {
+  private static String quote(String arg) {
+    return "'" + arg.replace("'", "'\\''") + "'";
+  }
+
+  /**
+   * Selects the JDK of the remote agent, checking all the candidate JDKs in one session.
+   *
+   * @return the java home of the remote agent, and its class data sharing options
+   */
+  private Map.Entry<String, String> findRemoteJava(SSHClient ssh, String toolchains, String agentJar) throws IOException {
+    List<JDK> jdks = Collections.emptyList();
+    List<String> javaHomes;
     if (!tcEnv.isToolchainBased()) {
       // The current env is not toolchain based: we are using the current java home.
       // Since we do not have any indication regarding the version and vendor, we
@@ -354,35 +441,11 @@ public class IgniteSshRemoteExecutor extends IgniteLocalExecutor {
       // on the same locations.
       final Path javaHome = tcEnv.getJavaHome();
       logger.warn("Toolchain not used: will re-use the same current JVM path remotely on: {}: {}", ssh.getRemoteHostname(), javaHome);
-      // This will only work if OS are the same.
-      return javaHome.toString();
+      javaHomes = Collections.singletonList(javaHome.toString());
 
     } else {
-      final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-      InMemoryDestFile localFile = new InMemoryDestFile() {
-        @Override
-        public OutputStream getOutputStream() {
-          return baos;
-        }
-      };
-      try {
-        logger.debug("Downloading toolchain.xml file from: {}", ssh.getRemoteHostname());
-        ssh.newSCPFileTransfer().download("$HOME/.m2/toolchains.xml", localFile);
-      } catch (SCPRemoteException sre) {
-        if (sre.getMessage().contains("No such file or directory")) {
-          // for some unknown reasons, ssj with some ssh servers do not allow variable expansion...
-          // so try back again by determining the home dir
-          String remoteHomeDir = Stream.of(exec(ssh, "env").get().split("\n"))
-              .filter(line -> line.startsWith("HOME="))
-              .map(line -> line.substring(5))
-              .findFirst()
-              .orElseThrow(() -> new UncheckedIOException(sre));
-          baos.reset();
-          ssh.newSCPFileTransfer().download(remoteHomeDir + "/.m2/toolchains.xml", localFile);
-        }
-      }
-      JavaLocationResolver javaLocationResolver = new JavaLocationResolver(new ByteArrayInputStream(baos.toByteArray()));
-      List<JDK> jdks = javaLocationResolver.resolveJavaLocations(tcEnv.getJavaVersion(), tcEnv.getJavaVendors(), false);
+      JavaLocationResolver javaLocationResolver = new JavaLocationResolver(new ByteArrayInputStream(toolchains.getBytes(StandardCharsets.UTF_8)));
+      jdks = javaLocationResolver.resolveJavaLocations(tcEnv.getJavaVersion(), tcEnv.getJavaVendors(), false);
       if (logger.isDebugEnabled()) {
         logger.debug("JDKs found on remote toolchain on: {} matching version: {} and vendors: {}\n - {}",
             ssh.getRemoteHostname(),
@@ -390,16 +453,61 @@ public class IgniteSshRemoteExecutor extends IgniteLocalExecutor {
             tcEnv.getJavaVendors(),
             jdks.stream().map(JDK::toString).collect(joining("\n - ")));
       }
-      // check JDK validity remotely
-      for (JDK jdk : jdks) {
-        String remoteHome = jdk.getHome();
-        if (exec(ssh, "[ -d \"" + remoteHome + "\" ]").isPresent()) {
-          logger.info("Selected remote JDK on: {}: {}", ssh.getRemoteHostname(), jdk);
-          return remoteHome;
-        }
+      javaHomes = jdks.stream().map(JDK::getHome).collect(toList());
+    }
+
+    // check JDK validity remotely: the first existing JDK is printed, followed by what class data sharing needs to know
+    boolean classDataSharing = CLASS_DATA_SHARING.getBooleanValue();
+    StringBuilder script = new StringBuilder();
+    for (String javaHome : javaHomes) {
+      script.append("if [ -d ").append(quote(javaHome)).append(" ]; then echo ").append(quote(javaHome)).append("; ");
+      if (classDataSharing) {
+        script.append("[ -f ").append(quote(classDataSharingArchive(javaHome, agentJar))).append(" ] && echo ").append(ARCHIVE_MARKER).append("; ")
+            .append("cat ").append(quote(javaHome + "/release")).append("; ");
       }
-      throw new RuntimeException("No JDK configured in remote toolchains.xml is valid; wanted : " + tcEnv + ", found : " + jdks);
+      script.append("exit 0; fi\n");
     }
+    script.append("exit 1\n");
+    Optional<String> output = exec(ssh, script.toString());
+
+    if (!output.isPresent()) {
+      if (tcEnv.isToolchainBased()) {
+        throw new RuntimeException("No JDK configured in remote toolchains.xml is valid; wanted : " + tcEnv + ", found : " + jdks);
+      }
+      // This will only work if OS are the same.
+      return new HashMap.SimpleEntry<>(javaHomes.get(0), "");
+    }
+    String[] lines = output.get().split("\n", 2);
+    String javaHome = lines[0].trim();
+    logger.info("Selected remote JDK on: {}: {}", ssh.getRemoteHostname(), javaHome);
+    String options = classDataSharing ? classDataSharingOptions(javaHome, agentJar, lines.length > 1 ? lines[1] : "") : "";
+    return new HashMap.SimpleEntry<>(javaHome, options);
+  }
+
+  /**
+   * The agent jar is the whole classpath of the remote agent, so its classes can be archived when it exits the first
+   * time it is started with a given JDK and JVM options, and the archive used for the next starts.
+   *
+   * @param output the output of the remote check: the archive marker if the archive exists, then the JDK release file
+   */
+  private String classDataSharingOptions(String javaHome, String agentJar, String output) {
+    boolean archived = output.startsWith(ARCHIVE_MARKER);
+    int javaVersion = ClassDataSharing.majorVersion(archived ? output.substring(ARCHIVE_MARKER.length()) : output);
+    if (javaVersion < ClassDataSharing.MIN_DYNAMIC_ARCHIVE_JAVA_VERSION) {
+      return "";
+    }
+    String archive = classDataSharingArchive(javaHome, agentJar);
+    if (archived) {
+      return "-XX:SharedArchiveFile=" + archive + " ";
+    }
+    return "-XX:ArchiveClassesAtExit=" + archive + " ";
+  }
+
+  private String classDataSharingArchive(String javaHome, String agentJar) {
+    List<String> keyParts = new ArrayList<>();
+    keyParts.add(javaHome);
+    keyParts.addAll(tcEnv.getJavaOpts());
+    return agentJar + "." + ClassDataSharing.hash(keyParts) + ".jsa";
   }
 
   @SuppressFBWarnings("RV_RETURN_VALUE_IGNORED_BAD_PRACTICE")
@@ -0,0 +1,391 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.agent.com;
+
+import org.terracotta.angela.agent.com.grid.RemoteCallable;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.invoke.SerializedLambda;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import static java.util.Collections.unmodifiableCollection;
+
+/**
+ * Records, per call site, the count, latency and serialized sizes of the jobs executed by an {@link Executor}, to tell
+ * the time spent in remote calls from the time spent in the tested product.
+ * <p>
+ * A call site is the method declaring the lambda of the job. The latency of a job goes from its submission to the
+ * reception of its result, the remote run time is measured on the agent, and the difference is the cost of the
+ * serialization and of the transport. The sizes are measured with the Java serialization on the first call of each call
+ * site and then once every {@value #SIZE_SAMPLING_INTERVAL} calls, to keep that extra serialization off most calls.
+ */
+public class RemoteCallStats {
+  static final int SIZE_SAMPLING_INTERVAL = 64;
+
+  private final boolean enabled;
+  private final Map<Class<?>, String> callSiteNames = new ConcurrentHashMap<>();
+  private final Map<String, CallSite> callSites = new ConcurrentHashMap<>();
+
+  public RemoteCallStats(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public Collection<CallSite> getCallSites() {
+    return unmodifiableCollection(callSites.values());
+  }
+
+  /**
+   * Records a call which has already been measured.
+   *
+   * @param closureBytes serialized size of the job, or -1 if it was not serialized
+   * @param resultBytes  serialized size of the result, or -1 if it was not serialized
+   */
+  public void record(Object job, long latencyNanos, long remoteRunNanos, long closureBytes, long resultBytes, boolean failed) {
+    if (enabled) {
+      callSite(job).record(latencyNanos, remoteRunNanos, closureBytes, resultBytes, failed);
+    }
+  }
+
+  /**
+   * Submits a job wrapped so that its remote run time is measured on the agent, and records the call when its result
+   * is received.
+   *
+   * @param job    the job as written at the call site
+   * @param call   the callable executing the job
+   * @param submit submits a callable to the agent
+   */
+  <R> CompletableFuture<R> time(Object job, RemoteCallable<R> call, Function<RemoteCallable<Timed<R>>, CompletableFuture<Timed<R>>> submit) {
+    CallSite callSite = callSite(job);
+    boolean sized = callSite.sampleSizes();
+    long closureBytes = sized ? serializedSize(job) : -1;
+    long start = System.nanoTime();
+    RemoteCallable<Timed<R>> timed = () -> {
+      long runStart = System.nanoTime();
+      R result = call.call();
+      return new Timed<>(result, System.nanoTime() - runStart);
+    };
+    CompletableFuture<Timed<R>> source = submit.apply(timed);
+    CompletableFuture<R> future = source.handle((result, failure) -> {
+      long latency = System.nanoTime() - start;
+      if (failure != null) {
+        callSite.record(latency, -1, closureBytes, -1, true);
+        throw failure instanceof CompletionException ? (CompletionException) failure : new CompletionException(failure);
+      }
+      callSite.record(latency, result.runNanos, closureBytes, sized ? serializedSize(result.result) : -1, false);
+      return result.result;
+    });
+    future.whenComplete((result, failure) -> {
+      if (future.isCancelled()) {
+        source.cancel(true);
+      }
+    });
+    return future;
+  }
+
+  /**
+   * Records each call of a batch at its own call site rather than at the one of the batch: the time the batch spent
+   * outside of its calls (serialization, transport) is split evenly between them.
+   *
+   * @param results the results of the calls, or null if the batch itself failed
+   */
+  void recordBatch(List<RemoteCallable<?>> calls, List<BatchResult<?>> results, long latencyNanos, boolean serialized) {
+    if (!enabled || calls.isEmpty()) {
+      return;
+    }
+    long runNanos = results == null ? 0 : results.stream().mapToLong(BatchResult::getRunNanos).sum();
+    long overheadNanos = Math.max(0, latencyNanos - runNanos) / calls.size();
+    for (int i = 0; i < calls.size(); i++) {
+      RemoteCallable<?> call = calls.get(i);
+      CallSite callSite = callSite(call);
+      boolean sized = serialized && callSite.sampleSizes();
+      long closureBytes = sized ? serializedSize(call) : -1;
+      if (results == null) {
+        callSite.record(overheadNanos, -1, closureBytes, -1, true);
+      } else {
+        BatchResult<?> result = results.get(i);
+        callSite.record(result.getRunNanos() + overheadNanos, result.getRunNanos(), closureBytes, sized ? serializedSize(result) : -1, result.isFailed());
+      }
+    }
+  }
+
+  /**
+   * @return a table of the call sites, the slowest first
+   */
+  public String report() {
+    List<CallSite> sites = new ArrayList<>(callSites.values());
+    sites.sort(Comparator.comparingLong((CallSite site) -> site.getLatency().getTotalNanos()).reversed());
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format(Locale.ROOT, "%-60s %8s %8s %10s %10s %10s %10s %12s %12s %12s%n",
+        "call site", "calls", "failed", "total ms", "mean ms", "p99 ms", "remote ms", "closure B", "max clos. B", "result B"));
+    for (CallSite site : sites) {
+      sb.append(String.format(Locale.ROOT, "%-60s %8d %8d %10.1f %10.2f %10.2f %10.2f %12d %12d %12d%n",
+          site.getName(), site.getLatency().getCount(), site.getFailures(),
+          millis(site.getLatency().getTotalNanos()), millis(site.getLatency().getMeanNanos()), millis(site.getLatency().getPercentileNanos(0.99)),
+          millis(site.getRemoteRun().getMeanNanos()), site.getMeanClosureBytes(), site.getMaxClosureBytes(), site.getMeanResultBytes()));
+    }
+    return sb.toString();
+  }
+
+  private static double millis(long nanos) {
+    return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  private CallSite callSite(Object job) {
+    if (job instanceof Batch.RunnableCall) {
+      // a runnable added to a batch is recorded where it was written, not in Batch
+      job = ((Batch.RunnableCall) job).getJob();
+    }
+    String name = callSiteNames.get(job.getClass());
+    if (name == null) {
+      name = callSiteName(job);
+      callSiteNames.put(job.getClass(), name);
+    }
+    CallSite callSite = callSites.get(name);
+    return callSite != null ? callSite : callSites.computeIfAbsent(name, CallSite::new);
+  }
+
+  /**
+   * @return "Class.method" for a lambda declared in a method, "Class::method" for a method reference
+   */
+  static String callSiteName(Object job) {
+    Class<?> type = job.getClass();
+    if (type.isSynthetic()) {
+      try {
+        Method writeReplace = type.getDeclaredMethod("writeReplace");
+        writeReplace.setAccessible(true);
+        SerializedLambda lambda = (SerializedLambda) writeReplace.invoke(job);
+        String method = lambda.getImplMethodName();
+        if (method.startsWith("lambda$")) {
+          // lambda$<method>$<hash>$<index> for serializable lambdas
+          int end = method.indexOf('$', "lambda$".length());
+          return simpleName(lambda.getCapturingClass()) + "." + method.substring("lambda$".length(), end < 0 ? method.length() : end);
+        }
+        return simpleName(lambda.getImplClass()) + "::" + method;
+      } catch (ReflectiveOperationException | RuntimeException e) {
+        // not a serializable lambda: fall back on its class
+      }
+    }
+    return simpleName(type.getName());
+  }
+
+  private static String simpleName(String className) {
+    String name = className.replace('/', '.');
+    name = name.substring(name.lastIndexOf('.') + 1);
+    int lambda = name.indexOf("$$Lambda");
+    return lambda < 0 ? name : name.substring(0, lambda);
+  }
+
+  private static long serializedSize(Object o) {
+    if (o == null) {
+      return 0;
+    }
+    CountingOutputStream count = new CountingOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(count)) {
+      oos.writeObject(o);
+    } catch (IOException | RuntimeException e) {
+      // not serializable by the JDK, only by Ignite
+      return -1;
+    }
+    return count.count;
+  }
+
+  private static final class CountingOutputStream extends OutputStream {
+    private long count;
+
+    @Override
+    public void write(int b) {
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      count += len;
+    }
+  }
+
+  static final class Timed<R> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final R result;
+    private final long runNanos;
+
+    Timed(R result, long runNanos) {
+      this.result = result;
+      this.runNanos = runNanos;
+    }
+  }
+
+  public static final class CallSite {
+    private final String name;
+    private final Histogram latency = new Histogram();
+    private final Histogram remoteRun = new Histogram();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder closureBytes = new LongAdder();
+    private final LongAdder closures = new LongAdder();
+    private final LongAccumulator maxClosureBytes = new LongAccumulator(Math::max, 0);
+    private final LongAdder resultBytes = new LongAdder();
+    private final LongAdder results = new LongAdder();
+    private final AtomicLong submitted = new AtomicLong();
+
+    CallSite(String name) {
+      this.name = name;
+    }
+
+    boolean sampleSizes() {
+      return submitted.getAndIncrement() % SIZE_SAMPLING_INTERVAL == 0;
+    }
+
+    void record(long latencyNanos, long remoteRunNanos, long closureBytes, long resultBytes, boolean failed) {
+      latency.record(latencyNanos);
+      if (remoteRunNanos >= 0) {
+        remoteRun.record(remoteRunNanos);
+      }
+      if (failed) {
+        failures.increment();
+      }
+      if (closureBytes >= 0) {
+        this.closureBytes.add(closureBytes);
+        closures.increment();
+        maxClosureBytes.accumulate(closureBytes);
+      }
+      if (resultBytes >= 0) {
+        this.resultBytes.add(resultBytes);
+        results.increment();
+      }
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return the time from the submission of the jobs to the reception of their result
+     */
+    public Histogram getLatency() {
+      return latency;
+    }
+
+    /**
+     * @return the time the jobs took to run on the agent
+     */
+    public Histogram getRemoteRun() {
+      return remoteRun;
+    }
+
+    public long getFailures() {
+      return failures.sum();
+    }
+
+    public long getMeanClosureBytes() {
+      long count = closures.sum();
+      return count == 0 ? 0 : closureBytes.sum() / count;
+    }
+
+    /**
+     * @return the number of calls of which the closure size was measured
+     */
+    public long getSizedCalls() {
+      return closures.sum();
+    }
+
+    public long getMaxClosureBytes() {
+      return maxClosureBytes.get();
+    }
+
+    public long getMeanResultBytes() {
+      long count = results.sum();
+      return count == 0 ? 0 : resultBytes.sum() / count;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  /**
+   * Histogram of durations in power-of-two nanosecond buckets.
+   */
+  public static final class Histogram {
+    private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    void record(long nanos) {
+      nanos = Math.max(0, nanos);
+      buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(nanos));
+      count.increment();
+      total.add(nanos);
+      max.accumulate(nanos);
+    }
+
+    public long getCount() {
+      return count.sum();
+    }
+
+    public long getTotalNanos() {
+      return total.sum();
+    }
+
+    public long getMeanNanos() {
+      long count = getCount();
+      return count == 0 ? 0 : getTotalNanos() / count;
+    }
+
+    public long getMaxNanos() {
+      return max.get();
+    }
+
+    /**
+     * @return an upper bound of the given percentile, at most twice the actual value
+     */
+    public long getPercentileNanos(double percentile) {
+      long rank = (long) Math.ceil(getCount() * percentile);
+      long seen = 0;
+      for (int i = 0; i < buckets.length(); i++) {
+        seen += buckets.get(i);
+        if (seen >= rank && seen > 0) {
+          return Math.min((1L << i) - 1, getMaxNanos());
+        }
+      }
+      return getMaxNanos();
+    }
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.agent.kit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarInputStream;
+import java.util.jar.Manifest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static org.terracotta.angela.agent.Agent.ROOT_DIR;
+
+/**
+ * Remembers the Bundle-SymbolicName of the jars, so that the manifest of a jar is only read again when the jar changes.
+ * The index is loaded once per JVM and persisted in the angela root dir, where it is shared by all the JVMs: an
+ * entry is keyed by the absolute path of the jar and only valid while the jar keeps the same size and modification
+ * time.
+ */
+class BundleSymbolicNameIndex {
+  private static final Logger logger = LoggerFactory.getLogger(BundleSymbolicNameIndex.class);
+  private static final BundleSymbolicNameIndex INSTANCE = new BundleSymbolicNameIndex(ROOT_DIR.resolve("kits").resolve("bundle-symbolic-names.idx"));
+
+  private final Path indexFile;
+  private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+  private volatile boolean dirty;
+
+  BundleSymbolicNameIndex(Path indexFile) {
+    this.indexFile = indexFile;
+    load();
+  }
+
+  static BundleSymbolicNameIndex getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * @return the Bundle-SymbolicName of the jar, or null if the file is not a jar or has none
+   */
+  String get(Path jar) {
+    if (!jar.getFileName().toString().endsWith(".jar")) {
+      return null;
+    }
+    Path key = jar.toAbsolutePath().normalize();
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+      long size = attributes.size();
+      long lastModified = attributes.lastModifiedTime().toMillis();
+      Entry entry = entries.get(key);
+      if (entry == null || entry.size != size || entry.lastModified != lastModified) {
+        entry = new Entry(size, lastModified, loadManifestBundleSymbolicName(key));
+        entries.put(key, entry);
+        dirty = true;
+      }
+      return entry.bundleSymbolicName;
+    } catch (IOException ioe) {
+      logger.error("Error loading the JAR manifest of " + jar, ioe);
+      return null;
+    }
+  }
+
+  /**
+   * Persists the entries added since the index was loaded or last saved. Several JVMs can save at the same time: the
+   * index is written to a temp file then renamed atomically, so that the last one wins.
+   */
+  synchronized void save() {
+    if (!dirty) {
+      return;
+    }
+    dirty = false;
+    Path tmp = null;
+    try {
+      Files.createDirectories(indexFile.getParent());
+      tmp = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+      try (BufferedWriter writer = Files.newBufferedWriter(tmp, UTF_8)) {
+        for (Map.Entry<Path, Entry> e : entries.entrySet()) {
+          Entry entry = e.getValue();
+          writer.write(e.getKey() + "\t" + entry.size + "\t" + entry.lastModified + "\t" + (entry.bundleSymbolicName == null ? "" : entry.bundleSymbolicName));
+          writer.newLine();
+        }
+      }
+      Files.move(tmp, indexFile, ATOMIC_MOVE);
+    } catch (IOException e) {
+      // only a cache: the manifests will be read again
+      logger.warn("Unable to save the Bundle-SymbolicName index: {}", indexFile, e);
+      if (tmp != null) {
+        try {
+          Files.deleteIfExists(tmp);
+        } catch (IOException ignored) {
+        }
+      }
+    }
+  }
+
+  private void load() {
+    List<String> lines;
+    try {
+      lines = Files.readAllLines(indexFile, UTF_8);
+    } catch (NoSuchFileException e) {
+      return;
+    } catch (IOException e) {
+      logger.warn("Unable to load the Bundle-SymbolicName index: {}", indexFile, e);
+      return;
+    }
+    for (String line : lines) {
+      String[] fields = line.split("\t", -1);
+      if (fields.length != 4) {
+        continue; // corrupted line
+      }
+      try {
+        entries.put(Paths.get(fields[0]), new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3].isEmpty() ? null : fields[3]));
+      } catch (RuntimeException e) {
+        // corrupted line
+      }
+    }
+  }
+
+  private static String loadManifestBundleSymbolicName(Path jar) throws IOException {
+    try (JarInputStream jarInputStream = new JarInputStream(Files.newInputStream(jar))) {
+      Manifest manifest = jarInputStream.getManifest();
+      return manifest == null ? null : manifest.getMainAttributes().getValue("Bundle-SymbolicName");
+    }
+  }
+
+  private static class Entry {
+    private final long size;
+    private final long lastModified;
+    private final String bundleSymbolicName;
+
+    Entry(long size, long lastModified, String bundleSymbolicName) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.bundleSymbolicName = bundleSymbolicName;
+    }
+  }
+}
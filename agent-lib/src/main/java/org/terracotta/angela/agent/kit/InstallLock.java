@@ -0,0 +1,229 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.agent.kit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.terracotta.angela.common.AngelaProperties.KIT_INSTALL_LOCK_TIMEOUT_SECONDS;
+
+/**
+ * Coordinates the JVMs installing kits in the same directory through an OS-level lock on a lock file: the kit is
+ * read under a shared lock, and installed under an exclusive one. A waiter polls the lock until it is released or
+ * the timeout expires, and the OS releases the lock of a JVM which dies, so there is no stale lock to break.
+ * <p>
+ * The OS lock is held by the JVM, not by a thread: the threads of a JVM are coordinated by counting the holders of
+ * the lock, and share the OS lock when they read. A lock can thus be released by another thread than the one which
+ * acquired it.
+ * <p>
+ * The wait times are recorded in {@link InstallLockStats}.
+ */
+class InstallLock implements AutoCloseable {
+  private static final Logger logger = LoggerFactory.getLogger(InstallLock.class);
+  private static final Map<Path, LockFile> LOCK_FILES = new ConcurrentHashMap<>();
+  private static final long OS_LOCK_POLL_MILLIS = 100;
+
+  private final LockFile lockFile;
+  private final boolean shared;
+
+  private InstallLock(LockFile lockFile, boolean shared) {
+    this.lockFile = lockFile;
+    this.shared = shared;
+  }
+
+  /**
+   * Waits until no other thread or JVM installs in the given directory.
+   *
+   * @throws IllegalStateException if the lock could not be acquired within the configured timeout
+   */
+  static InstallLock shared(Path lockFile) {
+    return shared(lockFile, defaultTimeoutMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  static InstallLock shared(Path lockFile, long timeout, TimeUnit unit) {
+    return acquire(lockFile, true, unit.toMillis(timeout));
+  }
+
+  /**
+   * Waits until no other thread or JVM reads or installs in the given directory.
+   *
+   * @throws IllegalStateException if the lock could not be acquired within the configured timeout
+   */
+  static InstallLock exclusive(Path lockFile) {
+    return exclusive(lockFile, defaultTimeoutMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  static InstallLock exclusive(Path lockFile, long timeout, TimeUnit unit) {
+    return acquire(lockFile, false, unit.toMillis(timeout));
+  }
+
+  /**
+   * @return the exclusive lock, or null if another thread or JVM reads or installs in the given directory
+   */
+  static InstallLock tryExclusive(Path lockFile) {
+    LockFile file = LOCK_FILES.computeIfAbsent(lockFile.toAbsolutePath().normalize(), LockFile::new);
+    return file.tryLock() ? new InstallLock(file, false) : null;
+  }
+
+  private static long defaultTimeoutMillis() {
+    return TimeUnit.SECONDS.toMillis(Long.parseLong(KIT_INSTALL_LOCK_TIMEOUT_SECONDS.getValue()));
+  }
+
+  private static InstallLock acquire(Path path, boolean shared, long timeoutMillis) {
+    Path key = path.toAbsolutePath().normalize();
+    LockFile lockFile = LOCK_FILES.computeIfAbsent(key, LockFile::new);
+    long start = System.nanoTime();
+    lockFile.lock(shared, timeoutMillis);
+    long waited = System.nanoTime() - start;
+    InstallLockStats.record(waited);
+    logger.debug("Acquired {} install lock {} after {}ms", shared ? "shared" : "exclusive", key, TimeUnit.NANOSECONDS.toMillis(waited));
+    return new InstallLock(lockFile, shared);
+  }
+
+  @Override
+  public void close() {
+    lockFile.unlock(shared);
+  }
+
+  private static class LockFile {
+    private final Path path;
+    private FileChannel channel;
+    private FileLock fileLock;
+    private int readers;
+    private boolean writer;
+    // a thread of this JVM is polling for the OS lock, with the monitor released
+    private boolean acquiring;
+
+    LockFile(Path path) {
+      this.path = path;
+    }
+
+    synchronized void lock(boolean shared, long timeoutMillis) {
+      long deadline = System.currentTimeMillis() + timeoutMillis;
+      boolean interrupted = false;
+      try {
+        while (writer || acquiring || (!shared && readers > 0)) {
+          try {
+            wait(remaining(deadline, shared, "another thread of this JVM"));
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+        if (readers == 0) {
+          // first holder in this JVM: wait for the other JVMs, releasing the monitor so that the other threads can
+          // give up on their own deadline
+          acquiring = true;
+          try {
+            while (!lockFile(shared, false)) {
+              try {
+                wait(Math.min(OS_LOCK_POLL_MILLIS, remaining(deadline, shared, "another JVM")));
+              } catch (InterruptedException e) {
+                interrupted = true;
+              }
+            }
+          } finally {
+            acquiring = false;
+            notifyAll();
+          }
+        }
+        if (shared) {
+          readers++;
+        } else {
+          writer = true;
+        }
+      } finally {
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    private long remaining(long deadline, boolean shared, String holder) {
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0) {
+        throw new IllegalStateException("Timed out waiting for the " + (shared ? "shared" : "exclusive") + " install lock: " + path
+            + ", held by " + holder + ". Is another install stuck? The timeout can be changed with " + KIT_INSTALL_LOCK_TIMEOUT_SECONDS.getPropertyName());
+      }
+      return remaining;
+    }
+
+    synchronized boolean tryLock() {
+      if (writer || acquiring || readers > 0 || !lockFile(false, false)) {
+        return false;
+      }
+      writer = true;
+      return true;
+    }
+
+    synchronized void unlock(boolean shared) {
+      if (shared) {
+        readers--;
+      } else {
+        writer = false;
+      }
+      if (readers == 0 && !writer) {
+        unlockFile();
+      }
+      notifyAll();
+    }
+
+    private boolean lockFile(boolean shared, boolean wait) {
+      try {
+        Files.createDirectories(path.getParent());
+        channel = FileChannel.open(path, CREATE, READ, WRITE);
+        fileLock = wait ? channel.lock(0, Long.MAX_VALUE, shared) : channel.tryLock(0, Long.MAX_VALUE, shared);
+        if (fileLock == null) {
+          unlockFile();
+          return false;
+        }
+        return true;
+      } catch (IOException e) {
+        unlockFile();
+        throw new UncheckedIOException("Unable to lock " + path, e);
+      }
+    }
+
+    private void unlockFile() {
+      try {
+        if (fileLock != null) {
+          fileLock.release();
+        }
+        if (channel != null) {
+          channel.close();
+        }
+      } catch (IOException e) {
+        logger.error("Install lock file {} could not be released", path, e);
+      } finally {
+        fileLock = null;
+        channel = null;
+      }
+    }
+  }
+}
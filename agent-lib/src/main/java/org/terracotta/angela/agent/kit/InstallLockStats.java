@@ -0,0 +1,80 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.agent.kit;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records how long this JVM waited for the install locks of the kits, to tell how much concurrent installs slow each
+ * other down.
+ */
+public final class InstallLockStats {
+  private static final LongAdder ACQUISITIONS = new LongAdder();
+  private static final LongAdder CONTENDED = new LongAdder();
+  private static final LongAdder WAIT_NANOS = new LongAdder();
+  private static final LongAccumulator MAX_WAIT_NANOS = new LongAccumulator(Math::max, 0);
+  // a lock acquired within this delay is considered as not contended
+  private static final long CONTENDED_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private InstallLockStats() {
+  }
+
+  static void record(long waitNanos) {
+    ACQUISITIONS.increment();
+    if (waitNanos >= CONTENDED_NANOS) {
+      CONTENDED.increment();
+    }
+    WAIT_NANOS.add(waitNanos);
+    MAX_WAIT_NANOS.accumulate(waitNanos);
+  }
+
+  /**
+   * @return the number of install locks acquired by this JVM
+   */
+  public static long getAcquisitionCount() {
+    return ACQUISITIONS.sum();
+  }
+
+  /**
+   * @return the number of install locks this JVM had to wait for
+   */
+  public static long getContendedCount() {
+    return CONTENDED.sum();
+  }
+
+  /**
+   * @return the total time spent by this JVM waiting for install locks
+   */
+  public static long getWaitTime(TimeUnit unit) {
+    return unit.convert(WAIT_NANOS.sum(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @return the longest time this JVM waited for an install lock
+   */
+  public static long getMaxWaitTime(TimeUnit unit) {
+    return unit.convert(MAX_WAIT_NANOS.get(), TimeUnit.NANOSECONDS);
+  }
+
+  public static String report() {
+    return String.format(Locale.ROOT, "%d install locks acquired, %d after waiting, %d ms waiting in total, %d ms at most",
+        getAcquisitionCount(), getContendedCount(), getWaitTime(TimeUnit.MILLISECONDS), getMaxWaitTime(TimeUnit.MILLISECONDS));
+  }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.agent.kit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terracotta.angela.common.util.FileUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static org.terracotta.angela.agent.Agent.ROOT_DIR;
+import static org.terracotta.angela.agent.kit.LocalKitManager.installLockFileOf;
+import static org.terracotta.angela.common.AngelaProperties.KIT_CACHE_MAX_SIZE_MB;
+
+/**
+ * Bounds the disk space used by the versions cached in the kits and sag directories of the root dir. The last use of
+ * each version is recorded in an index, and the least recently used versions are evicted first. A version is only
+ * evicted if its install lock can be taken exclusively, so that a version being installed is never evicted, and if
+ * none of its kits is recorded as used by a live JVM (e.g. by its running servers).
+ * The lock file, which is next to the version directory, is kept so that the JVMs waiting for it keep on locking the
+ * same file.
+ */
+public class KitCache {
+  private static final Logger logger = LoggerFactory.getLogger(KitCache.class);
+  private static final KitCache INSTANCE = new KitCache(ROOT_DIR);
+
+  private static final long PID = ProcessHandle.current().pid();
+
+  private final List<Path> cacheDirs;
+  private final Path indexFile;
+  private final Path inUseFile;
+  private final Path inUseLockFile;
+  private final Map<Path, Integer> usages = new HashMap<>(); // number of users of each kit in this JVM
+
+  KitCache(Path rootDir) {
+    this.cacheDirs = Arrays.asList(rootDir.resolve("kits"), rootDir.resolve("sag"));
+    this.indexFile = rootDir.resolve("kit-cache.idx");
+    this.inUseFile = rootDir.resolve("kit-cache.inuse");
+    this.inUseLockFile = rootDir.resolve("kit-cache.inuse.lock");
+  }
+
+  public static KitCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Evicts the least recently used versions in a background thread if the cache is bigger than configured.
+   */
+  public void evictInBackground() {
+    String maxSizeMB = KIT_CACHE_MAX_SIZE_MB.getValue();
+    if (maxSizeMB == null) {
+      return;
+    }
+    long maxSize = Long.parseLong(maxSizeMB) * 1024 * 1024;
+    Thread thread = new Thread(() -> {
+      try {
+        evict(maxSize);
+      } catch (RuntimeException e) {
+        logger.warn("Kit cache eviction failed", e);
+      }
+    }, "kit-cache-eviction");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Records that the version containing the given path (a kit, an installer...) has just been used.
+   */
+  synchronized void touch(Path path) {
+    Optional<Path> version = versionOf(path);
+    if (version.isPresent()) {
+      Map<Path, Long> lastUses = readIndex();
+      lastUses.put(version.get(), System.currentTimeMillis());
+      writeIndex(lastUses);
+    }
+  }
+
+  /**
+   * Records that the given kit is used by this JVM, so that its version is not evicted until {@link #release(Path)}
+   * is called or this JVM dies. Nothing stays locked while the kit is used.
+   */
+  synchronized void use(Path kit) {
+    Path normalized = kit.toAbsolutePath().normalize();
+    Optional<Path> version = versionOf(normalized);
+    if (!version.isPresent() || usages.merge(normalized, 1, Integer::sum) > 1) {
+      return;
+    }
+    // under the install lock, so that the version cannot be evicted while its use is being recorded
+    try (InstallLock versionLock = InstallLock.shared(installLockFileOf(version.get()));
+         InstallLock lock = InstallLock.exclusive(inUseLockFile)) {
+      List<String> lines = readLiveUses();
+      lines.add(PID + "\t" + normalized);
+      writeLines(inUseFile, lines);
+    }
+  }
+
+  synchronized void release(Path kit) {
+    Path normalized = kit.toAbsolutePath().normalize();
+    Integer users = usages.get(normalized);
+    if (users == null) {
+      return;
+    }
+    if (users > 1) {
+      usages.put(normalized, users - 1);
+      return;
+    }
+    usages.remove(normalized);
+    try (InstallLock lock = InstallLock.exclusive(inUseLockFile)) {
+      List<String> lines = readLiveUses();
+      lines.remove(PID + "\t" + normalized);
+      writeLines(inUseFile, lines);
+    }
+  }
+
+  /**
+   * @return the lines of the kits used by the JVMs which are still alive, as pid and kit path separated by a tab
+   */
+  private List<String> readLiveUses() {
+    List<String> lines = new ArrayList<>();
+    try {
+      for (String line : Files.readAllLines(inUseFile, UTF_8)) {
+        int tab = line.indexOf('\t');
+        try {
+          if (ProcessHandle.of(Long.parseLong(line.substring(0, tab))).map(ProcessHandle::isAlive).orElse(false)) {
+            lines.add(line);
+          }
+        } catch (RuntimeException e) {
+          // corrupted line
+        }
+      }
+    } catch (NoSuchFileException e) {
+      // nothing recorded yet
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to read the kits in use: " + inUseFile, e);
+    }
+    return lines;
+  }
+
+  private boolean isInUse(Path versionDir) {
+    try (InstallLock lock = InstallLock.shared(inUseLockFile)) {
+      return readLiveUses().stream().anyMatch(line -> Paths.get(line.substring(line.indexOf('\t') + 1)).startsWith(versionDir));
+    }
+  }
+
+  void evict(long maxSize) {
+    Map<Path, Long> lastUses = readIndex();
+    List<Version> versions = new ArrayList<>();
+    for (Path cacheDir : cacheDirs) {
+      if (!Files.isDirectory(cacheDir)) {
+        continue;
+      }
+      try (Stream<Path> stream = Files.list(cacheDir)) {
+        stream.filter(Files::isDirectory)
+            .map(dir -> dir.toAbsolutePath().normalize())
+            .forEach(dir -> versions.add(new Version(dir, sizeOf(dir), lastUses.getOrDefault(dir, lastModified(dir)))));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    long size = versions.stream().mapToLong(version -> version.size).sum();
+    logger.debug("Kit cache: {} versions using {}MB (max: {}MB)", versions.size(), size / 1024 / 1024, maxSize / 1024 / 1024);
+    versions.sort(Comparator.comparingLong(version -> version.lastUse));
+    List<Path> evicted = new ArrayList<>();
+    for (Version version : versions) {
+      if (size <= maxSize) {
+        break;
+      }
+      InstallLock lock = InstallLock.tryExclusive(installLockFileOf(version.dir));
+      if (lock == null) {
+        logger.debug("Not evicting: {}: being installed", version.dir);
+        continue;
+      }
+      try {
+        if (isInUse(version.dir)) {
+          logger.debug("Not evicting: {}: in use", version.dir);
+          continue;
+        }
+        logger.info("Evicting from kit cache: {} ({}MB)", version.dir, version.size / 1024 / 1024);
+        FileUtils.deleteTree(version.dir);
+        size -= version.size;
+        evicted.add(version.dir);
+      } finally {
+        lock.close();
+      }
+    }
+    if (!evicted.isEmpty()) {
+      synchronized (this) {
+        Map<Path, Long> current = readIndex();
+        evicted.forEach(current::remove);
+        writeIndex(current);
+      }
+    }
+  }
+
+  private Optional<Path> versionOf(Path path) {
+    Path normalized = path.toAbsolutePath().normalize();
+    return cacheDirs.stream()
+        .map(cacheDir -> cacheDir.toAbsolutePath().normalize())
+        .filter(cacheDir -> normalized.startsWith(cacheDir) && !normalized.equals(cacheDir))
+        .map(cacheDir -> cacheDir.resolve(cacheDir.relativize(normalized).getName(0)))
+        .findFirst();
+  }
+
+  private Map<Path, Long> readIndex() {
+    Map<Path, Long> lastUses = new HashMap<>();
+    try {
+      for (String line : Files.readAllLines(indexFile, UTF_8)) {
+        int tab = line.indexOf('\t');
+        try {
+          lastUses.put(Paths.get(line.substring(tab + 1)), Long.parseLong(line.substring(0, tab)));
+        } catch (RuntimeException e) {
+          // corrupted line
+        }
+      }
+    } catch (NoSuchFileException e) {
+      // nothing recorded yet
+    } catch (IOException e) {
+      logger.warn("Unable to read the kit cache index: {}", indexFile, e);
+    }
+    return lastUses;
+  }
+
+  /**
+   * Several JVMs can write the index at the same time: it is written to a temp file then renamed atomically, so that
+   * the last one wins. A lost update only makes a version look less recently used than it is.
+   */
+  private void writeIndex(Map<Path, Long> lastUses) {
+    List<String> lines = new ArrayList<>(lastUses.size());
+    lastUses.forEach((version, lastUse) -> lines.add(lastUse + "\t" + version));
+    writeLines(indexFile, lines);
+  }
+
+  private static void writeLines(Path file, List<String> lines) {
+    Path tmp = null;
+    try {
+      Files.createDirectories(file.getParent());
+      tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+      try (BufferedWriter writer = Files.newBufferedWriter(tmp, UTF_8)) {
+        for (String line : lines) {
+          writer.write(line);
+          writer.newLine();
+        }
+      }
+      Files.move(tmp, file, ATOMIC_MOVE);
+    } catch (IOException e) {
+      logger.warn("Unable to write the kit cache file: {}", file, e);
+      if (tmp != null) {
+        FileUtils.deleteQuietly(tmp);
+      }
+    }
+  }
+
+  private static long sizeOf(Path dir) {
+    try (Stream<Path> stream = Files.walk(dir)) {
+      return stream.filter(Files::isRegularFile).mapToLong(file -> {
+        try {
+          return Files.size(file);
+        } catch (IOException e) {
+          return 0; // deleted meanwhile
+        }
+      }).sum();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static long lastModified(Path dir) {
+    try {
+      return Files.getLastModifiedTime(dir).toMillis();
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+
+  private static class Version {
+    private final Path dir;
+    private final long size;
+    private final long lastUse;
+
+    Version(Path dir, long size, long lastUse) {
+      this.dir = dir;
+      this.size = size;
+      this.lastUse = lastUse;
+    }
+  }
+}
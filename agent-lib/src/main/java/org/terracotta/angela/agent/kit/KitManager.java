@@ -78,15 +78,7 @@ public abstract class KitManager {
       return false;
     }
 
-    long timeSinceLastModified;
-    try {
-      // Use the archive to check the modified time, because the timestamp on the inflated directory corresponds to the creation of the archive, and not to its download
-      timeSinceLastModified = System.currentTimeMillis() - Files.getLastModifiedTime(localInstallerFile).toMillis();
-    } catch (IOException e) {
-      throw new UncheckedIOException(e);
-    }
-
-    if (!offline && distribution.getVersion().isSnapshot() && timeSinceLastModified > STALE_SNAPSHOT_LIMIT_HOURS * 60 * 60 * 1000) {
+    if (isStaleSnapshot(offline, localInstallerFile)) {
       logger.debug("Mode is online, distribution is snapshot, and {} is older than {} hours", localInstallerFile.getFileName(), STALE_SNAPSHOT_LIMIT_HOURS);
       FileUtils.deleteQuietly(localInstallerFile.getParent());
       return false;
@@ -111,6 +103,10 @@ public abstract class KitManager {
       throw new RuntimeException("Error reading " + md5File, ioe);
     }
 
+    if (VerifiedChecksum.isRecorded(localInstallerFile, md5FileHash)) {
+      return true;
+    }
+
     try (InputStream fis = Files.newInputStream(localInstallerFile)) {
       if (!IgniteUtils.calculateMD5(fis).equalsIgnoreCase(md5FileHash)) {
         // MD5 does not match? let's consider the archive corrupt
@@ -124,9 +120,27 @@ public abstract class KitManager {
       throw new IllegalStateException(e);
     }
 
+    VerifiedChecksum.record(localInstallerFile, md5FileHash);
     return true;
   }
 
+  /**
+   * @return true if the installer is a snapshot which must be downloaded again
+   */
+  boolean isStaleSnapshot(boolean offline, Path localInstallerFile) {
+    if (offline || !distribution.getVersion().isSnapshot()) {
+      return false;
+    }
+    long timeSinceLastModified;
+    try {
+      // Use the archive to check the modified time, because the timestamp on the inflated directory corresponds to the creation of the archive, and not to its download
+      timeSinceLastModified = System.currentTimeMillis() - Files.getLastModifiedTime(localInstallerFile).toMillis();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return timeSinceLastModified > STALE_SNAPSHOT_LIMIT_HOURS * 60 * 60 * 1000;
+  }
+
   public Distribution getDistribution() {
     return distribution;
   }
@@ -0,0 +1,160 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.agent.kit;
+
+import org.terracotta.angela.common.util.FileUtils;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Size and hash of every file of an extracted kit, keyed by their unix-like path relative to the kit root.
+ * Used to only send to an agent the kit files that differ from what it already has.
+ */
+public class KitManifest implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private final Map<String, Entry> files;
+
+  private KitManifest(Map<String, Entry> files) {
+    this.files = files;
+  }
+
+  public Map<String, Entry> getFiles() {
+    return files;
+  }
+
+  public int size() {
+    return files.size();
+  }
+
+  /**
+   * Compares a local kit with this manifest, which describes the remote one.
+   * Local files are only hashed when the remote has a file with the same path and size.
+   */
+  public Diff diff(Path localKit) {
+    List<String> toSend = new ArrayList<>();
+    Set<String> toDelete = new HashSet<>(files.keySet());
+    long bytesToSend = 0;
+    for (Path file : list(localKit)) {
+      String relativePath = relativePath(localKit, file);
+      Entry remote = files.get(relativePath);
+      try {
+        long size = Files.size(file);
+        if (remote != null && remote.size == size && remote.sha256.equals(FileUtils.sha256(file))) {
+          toDelete.remove(relativePath); // identical: keep it remotely
+        } else {
+          // a different remote file must be deleted before being re-written since it can be a link
+          toSend.add(relativePath);
+          bytesToSend += size;
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return new Diff(toSend, toDelete, bytesToSend);
+  }
+
+  public static KitManifest of(Path kit) {
+    Map<String, Entry> files = new TreeMap<>();
+    if (Files.isDirectory(kit)) {
+      for (Path file : list(kit)) {
+        try {
+          files.put(relativePath(kit, file), new Entry(Files.size(file), FileUtils.sha256(file)));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+    return new KitManifest(files);
+  }
+
+  private static List<Path> list(Path dir) {
+    try (Stream<Path> stream = Files.walk(dir)) {
+      return stream.filter(Files::isRegularFile).collect(toList());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static String relativePath(Path root, Path file) {
+    List<String> parts = new ArrayList<>();
+    root.relativize(file).forEach(part -> parts.add(part.toString()));
+    return String.join("/", parts);
+  }
+
+  public static class Entry implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final long size;
+    final String sha256;
+
+    Entry(long size, String sha256) {
+      this.size = size;
+      this.sha256 = sha256;
+    }
+  }
+
+  public static class Diff implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> filesToSend;
+    private final Set<String> filesToDelete;
+    private final long bytesToSend;
+
+    Diff(List<String> filesToSend, Set<String> filesToDelete, long bytesToSend) {
+      this.filesToSend = filesToSend;
+      this.filesToDelete = filesToDelete;
+      this.bytesToSend = bytesToSend;
+    }
+
+    /**
+     * @return the files of the local kit that are missing or different remotely
+     */
+    public List<Path> getFilesToSend(Path localKit) {
+      return filesToSend.stream().map(localKit::resolve).collect(toList());
+    }
+
+    /**
+     * @return the remote relative paths of the files that are stale or that will be re-sent
+     */
+    public Collection<String> getFilesToDelete() {
+      return filesToDelete;
+    }
+
+    public int getFileCountToSend() {
+      return filesToSend.size();
+    }
+
+    public long getBytesToSend() {
+      return bytesToSend;
+    }
+  }
+}
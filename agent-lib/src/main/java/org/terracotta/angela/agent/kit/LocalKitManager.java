@@ -26,19 +26,14 @@ import org.terracotta.angela.common.net.PortAllocator;
 import org.terracotta.angela.common.tcconfig.License;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
-import java.util.concurrent.TimeUnit;
-import java.util.jar.JarInputStream;
-import java.util.jar.Manifest;
 import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toList;
@@ -49,8 +44,9 @@ import static java.util.stream.Collectors.toList;
 public class LocalKitManager extends KitManager {
   private static final Logger logger = LoggerFactory.getLogger(LocalKitManager.class);
   private final Map<String, File> clientJars = new HashMap<>();
+  private final BundleSymbolicNameIndex bundleSymbolicNames = BundleSymbolicNameIndex.getInstance();
   private final KitResolver kitResolver;
-  static final String INSTALLATION_LOCK_FILE_NAME = "angela-install.lock";
+  static final String INSTALLATION_LOCK_FILE_EXTENSION = ".lock";
 
   public LocalKitManager(PortAllocator portAllocator, Distribution distribution) {
     super(distribution);
@@ -93,26 +89,39 @@ public class LocalKitManager extends KitManager {
           kitResolver.resolveLocalInstallerPath(distribution.getVersion(), distribution.getLicenseType(), distribution.getPackageType()));
       logger.debug("Checking if local kit is available at: {}", localInstallerPath);
 
-      try {
-        lockConcurrentInstall(localInstallerPath);
-        if (!isValidLocalInstallerFilePath(offline, localInstallerPath)) {
-          logger.debug("Local kit at: {} invalid or absent. Downloading a fresh installer", localInstallerPath);
-          kitResolver.downloadLocalInstaller(distribution.getVersion(), distribution.getLicenseType(), distribution.getPackageType(), localInstallerPath);
+      Path lockFile = installLockFile(localInstallerPath);
+      Path installed = null;
+      try (InstallLock lock = InstallLock.shared(lockFile)) {
+        // the kit was extracted from a verified installer by whoever held the exclusive lock
+        if (Files.isRegularFile(localInstallerPath) && !isStaleSnapshot(offline, localInstallerPath)) {
+          Path path = kitResolver.resolveKitInstallationPath(distribution.getVersion(), distribution.getPackageType(), localInstallerPath, rootInstallationPath);
+          if (Files.isDirectory(path)) {
+            installed = path;
+          }
         }
+      }
+      if (installed != null) {
+        this.kitInstallationPath = installed;
+      } else {
+        try (InstallLock lock = InstallLock.exclusive(lockFile)) {
+          if (!isValidLocalInstallerFilePath(offline, localInstallerPath)) {
+            logger.debug("Local kit at: {} invalid or absent. Downloading a fresh installer", localInstallerPath);
+            kitResolver.downloadLocalInstaller(distribution.getVersion(), distribution.getLicenseType(), distribution.getPackageType(), localInstallerPath);
+          }
 
-        this.kitInstallationPath = kitResolver.resolveKitInstallationPath(distribution.getVersion(), distribution.getPackageType(), localInstallerPath, rootInstallationPath);
+          this.kitInstallationPath = kitResolver.resolveKitInstallationPath(distribution.getVersion(), distribution.getPackageType(), localInstallerPath, rootInstallationPath);
 
-        if (!Files.isDirectory(this.kitInstallationPath)) {
-          logger.debug("Local install not available at: {}", this.kitInstallationPath);
-          if (offline) {
-            throw new IllegalArgumentException("Can not install the kit version " + distribution + " in offline mode because" +
-                " the kit compressed package is not available. Please run in online mode with an internet connection.");
+          if (!Files.isDirectory(this.kitInstallationPath)) {
+            logger.debug("Local install not available at: {}", this.kitInstallationPath);
+            if (offline) {
+              throw new IllegalArgumentException("Can not install the kit version " + distribution + " in offline mode because" +
+                  " the kit compressed package is not available. Please run in online mode with an internet connection.");
+            }
+            kitResolver.createLocalInstallFromInstaller(distribution.getVersion(), distribution.getPackageType(), license, localInstallerPath, rootInstallationPath, env);
           }
-          kitResolver.createLocalInstallFromInstaller(distribution.getVersion(), distribution.getPackageType(), license, localInstallerPath, rootInstallationPath, env);
         }
-      } finally {
-        unlockConcurrentInstall(localInstallerPath);
       }
+      KitCache.getInstance().touch(this.kitInstallationPath);
     }
     if (this.kitInstallationPath != null) {
       initClientJarsMap();
@@ -120,57 +129,23 @@ public class LocalKitManager extends KitManager {
     }
   }
 
+  /**
+   * @return the file locked by the JVMs installing kits next to the given installer
+   */
   @SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
-  void unlockConcurrentInstall(Path localInstallerPath) {
-    logger.debug("Thread {} unlock", Thread.currentThread().getId());
-    File parent = localInstallerPath.toFile().getAbsoluteFile().getParentFile();
-    File file = new File(parent, INSTALLATION_LOCK_FILE_NAME);
-    try {
-      org.terracotta.utilities.io.Files.delete(file.toPath());
-      logger.debug("Deleted installer lock file {}", file);
-    } catch (IOException e) {
-      logger.error("Installer lock file {} could not be deleted", file.getAbsolutePath(), e);
-    }
+  static Path installLockFile(Path localInstallerPath) {
+    return installLockFileOf(localInstallerPath.toAbsolutePath().getParent());
   }
 
-  @SuppressWarnings("ResultOfMethodCallIgnored")
-  @SuppressFBWarnings({"RV_RETURN_VALUE_IGNORED_BAD_PRACTICE", "NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE"})
-  void lockConcurrentInstall(Path localInstallerPath) {
-    logger.debug("Thread {} lock", Thread.currentThread().getId());
-
-    File parent = localInstallerPath.toFile().getAbsoluteFile().getParentFile();
-    parent.mkdirs();
-    File file = new File(parent, INSTALLATION_LOCK_FILE_NAME);
-    logger.debug("Creating Installer lock file at: {}", file);
-    try {
-      if (!file.createNewFile()) {
-        long diff = new Date().getTime() - file.lastModified();
-        if (diff > TimeUnit.MINUTES.toMillis(5)) {
-          try {
-            org.terracotta.utilities.io.Files.delete(file.toPath());
-          } catch (IOException e) {
-            logger.error("Angela Installer lock file can not be deleted when locking at {}", file.getAbsolutePath(), e);
-          }
-          final boolean created = file.createNewFile();
-          if (!created) {
-            logger.error("Angela Installer lock file can not be created at {}", file.getAbsolutePath());
-          }
-        }
-        logger.debug("Thread {} wait", Thread.currentThread().getId());
-        for (int i = 0; i < 20; i++) {
-          Thread.sleep(1000);
-          if (file.createNewFile()) {
-            logger.debug("Thread {} pass", Thread.currentThread().getId());
-            break;
-          }
-        }
-      }
-    } catch (IOException | InterruptedException e) {
-      e.printStackTrace();
-      logger.error("Angela Installer lock file issue at {}", file.getAbsolutePath());
-    }
-    logger.debug("Thread {} pass", Thread.currentThread().getId());
-
+  /**
+   * The lock file of a version is kept next to its directory rather than in it, so that the directory can be deleted
+   * (stale or corrupted installer, eviction) while the lock is held.
+   *
+   * @return the file locked by the JVMs installing kits in the given version directory
+   */
+  @SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
+  static Path installLockFileOf(Path versionDir) {
+    return versionDir.resolveSibling(versionDir.getFileName() + INSTALLATION_LOCK_FILE_EXTENSION);
   }
 
   private void initClientJarsMap() {
@@ -203,11 +178,12 @@ public class LocalKitManager extends KitManager {
          * are providing the same thing, barring any version differences.
          * Only include jars that have their Bundle-SymbolicName start with "com.terracotta".
          */
-        String bundleSymbolicName = loadManifestBundleSymbolicName(clientJar);
+        String bundleSymbolicName = bundleSymbolicNames.get(clientJar.toPath());
         if (bundleSymbolicName != null && bundleSymbolicName.startsWith("com.terracotta")) {
           this.clientJars.put(bundleSymbolicName, clientJar);
         }
       }
+      bundleSymbolicNames.save();
       logger.debug("Kit client jars : {}", this.clientJars);
     } catch (IOException ioe) {
       throw new RuntimeException("Error listing client jars in " + kitInstallationPath, ioe);
@@ -221,23 +197,15 @@ public class LocalKitManager extends KitManager {
 
 
   public File equivalentClientJar(File file) {
-    String sourceBundleSymbolicName = loadManifestBundleSymbolicName(file);
-    return clientJars.get(sourceBundleSymbolicName);
+    String sourceBundleSymbolicName = bundleSymbolicNames.get(file.toPath());
+    return sourceBundleSymbolicName == null ? null : clientJars.get(sourceBundleSymbolicName);
   }
 
-  private String loadManifestBundleSymbolicName(File file) {
-    try {
-      if (file.getName().endsWith(".jar")) {
-        try (JarInputStream jarInputStream = new JarInputStream(new FileInputStream(file))) {
-          Manifest manifest = jarInputStream.getManifest();
-          return manifest == null ? null : manifest.getMainAttributes().getValue("Bundle-SymbolicName");
-        }
-      } else {
-        return null;
-      }
-    } catch (IOException ioe) {
-      logger.error("Error loading the JAR manifest of " + file, ioe);
-      return null;
-    }
+  /**
+   * Persists the Bundle-SymbolicNames read by {@link #equivalentClientJar(File)}, so that the next JVMs do not have
+   * to read the manifests of the same jars again.
+   */
+  public void saveBundleSymbolicNames() {
+    bundleSymbolicNames.save();
   }
 }
@@ -16,6 +16,7 @@
  */
 package org.terracotta.angela.agent.kit;
 
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terracotta.angela.agent.Agent;
@@ -26,12 +27,25 @@ import org.terracotta.angela.common.util.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.stream.Collectors.toList;
 import static org.terracotta.angela.common.AngelaProperties.KIT_COPY;
+import static org.terracotta.angela.agent.kit.LocalKitManager.installLockFileOf;
+import static org.terracotta.angela.common.AngelaProperties.KIT_COPY_LINKS;
 import static org.terracotta.angela.common.util.IpUtils.areAllLocal;
 import static org.terracotta.utilities.io.Files.ExtendedOption.RECURSIVE;
 
@@ -43,6 +57,10 @@ import static org.terracotta.utilities.io.Files.ExtendedOption.RECURSIVE;
 public class RemoteKitManager extends KitManager {
   private static final Logger logger = LoggerFactory.getLogger(RemoteKitManager.class);
 
+  private static final Set<String> IMMUTABLE_EXTENSIONS = new HashSet<>(Arrays.asList("jar", "war", "zip", "so", "dll", "dylib", "jnilib", "exe"));
+  // exclusive install locks of the kit syncs in progress, held from prepareKitSync() to completeKitSync()
+  private static final Map<Path, InstallLock> SYNC_LOCKS = new ConcurrentHashMap<>();
+
   private final Path kitPath; // The location containing server logs
 
   public RemoteKitManager(InstanceId instanceId, Distribution distribution, String kitInstallationName) {
@@ -58,6 +76,7 @@ public class RemoteKitManager extends KitManager {
   public File installKit(License license, Collection<String> serversHostnames) {
     try {
       Files.createDirectories(kitPath);
+      KitCache.getInstance().touch(kitInstallationPath);
 
       logger.debug("should copy a separate kit install ? {}", KIT_COPY.getBooleanValue());
       if (areAllLocal(serversHostnames) && !KIT_COPY.getBooleanValue()) {
@@ -67,8 +86,13 @@ public class RemoteKitManager extends KitManager {
         }
         return kitInstallationPath.toFile();
       } else {
-        logger.debug("Copying {} to {}", kitInstallationPath.toAbsolutePath(), kitPath);
-        FileUtils.copy(kitInstallationPath, kitPath, REPLACE_EXISTING, RECURSIVE);
+        if (KIT_COPY_LINKS.getBooleanValue()) {
+          logger.debug("Linking {} to {}", kitInstallationPath.toAbsolutePath(), kitPath);
+          FileUtils.hardLinkOrCopyTree(kitInstallationPath, kitPath, RemoteKitManager::isImmutable);
+        } else {
+          logger.debug("Copying {} to {}", kitInstallationPath.toAbsolutePath(), kitPath);
+          FileUtils.copy(kitInstallationPath, kitPath, REPLACE_EXISTING, RECURSIVE);
+        }
         if (license != null) {
           license.writeToFile(kitPath.toFile());
         }
@@ -79,6 +103,15 @@ public class RemoteKitManager extends KitManager {
     }
   }
 
+  /**
+   * @return true for the files of a kit which are never modified, and can thus be shared by several installs
+   */
+  static boolean isImmutable(Path file) {
+    String name = file.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    return dot >= 0 && IMMUTABLE_EXTENSIONS.contains(name.substring(dot + 1));
+  }
+
   public boolean isKitAvailable() {
     logger.debug("verifying if the extracted kit is already available locally to setup an install");
     if (!Files.isDirectory(kitInstallationPath)) {
@@ -88,6 +121,185 @@ public class RemoteKitManager extends KitManager {
     return true;
   }
 
+  /**
+   * Where a kit is assembled on this agent before being moved to its final location once all its files are there.
+   */
+  @SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
+  public Path getKitSyncPath() {
+    return rootInstallationPath.resolve(".sync").resolve(kitInstallationPath.getFileName());
+  }
+
+  /**
+   * Prepares the reception of a kit by seeding the sync location with hard links to the files of the most recent kit
+   * extracted for the same version (i.e. the previous build of a snapshot), or else for another version. A sync
+   * location left over by an interrupted transfer is re-used as-is.
+   * <p>
+   * The exclusive install lock of the version is held until {@link #completeKitSync()} or {@link #releaseKitSync()},
+   * so that concurrent installs of the same kit on this agent are done one after the other.
+   *
+   * @return the manifest of what is already there, so that only the missing or different files get sent, or null if
+   * the kit has been installed in the meantime
+   */
+  @SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
+  public KitManifest prepareKitSync() {
+    Path syncPath = getKitSyncPath();
+    InstallLock lock = InstallLock.exclusive(installLockFileOf(rootInstallationPath));
+    if (isKitAvailable()) {
+      lock.close();
+      logger.debug("Kit: {} has been installed by another sync", kitInstallationPath);
+      return null;
+    }
+    SYNC_LOCKS.put(syncPath, lock);
+    try {
+      if (!Files.isDirectory(syncPath)) {
+        Optional<Path> seed = findSyncSeed();
+        Files.createDirectories(syncPath);
+        if (seed.isPresent()) {
+          logger.debug("Seeding kit sync: {} from: {}", syncPath, seed.get());
+          try (Stream<Path> stream = Files.walk(seed.get())) {
+            for (Path file : (Iterable<Path>) stream.filter(Files::isRegularFile)::iterator) {
+              Path dest = syncPath.resolve(seed.get().relativize(file).toString());
+              Files.createDirectories(dest.getParent());
+              // never a symbolic link: the seed may be evicted or replaced once the kit is complete
+              FileUtils.hardLinkOrCopy(file, dest);
+            }
+          }
+        }
+      }
+      KitManifest manifest = KitManifest.of(syncPath);
+      logger.debug("Kit sync: {} already contains {} files", syncPath, manifest.size());
+      return manifest;
+    } catch (IOException e) {
+      releaseKitSync();
+      throw new UncheckedIOException(e);
+    } catch (RuntimeException e) {
+      releaseKitSync();
+      throw e;
+    }
+  }
+
+  /**
+   * Removes stale files and the files about to be re-sent: they have to be deleted first because they might be links
+   * to the files of another kit.
+   */
+  public void deleteFromKitSync(Collection<String> relativePaths) {
+    Path syncPath = getKitSyncPath();
+    try {
+      for (String relativePath : relativePaths) {
+        Files.deleteIfExists(syncPath.resolve(relativePath));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Moves the kit sync to its final location, and releases the install lock taken by {@link #prepareKitSync()}.
+   */
+  public void completeKitSync() {
+    try {
+      moveKitSync();
+    } finally {
+      releaseKitSync();
+    }
+  }
+
+  /**
+   * Releases the install lock taken by {@link #prepareKitSync()}, if still held, without completing the kit.
+   */
+  public void releaseKitSync() {
+    InstallLock lock = SYNC_LOCKS.remove(getKitSyncPath());
+    if (lock != null) {
+      lock.close();
+    }
+  }
+
+  private void moveKitSync() {
+    Path syncPath = getKitSyncPath();
+    if (isKitAvailable()) {
+      logger.debug("Kit: {} is already installed, discarding: {}", kitInstallationPath, syncPath);
+      FileUtils.deleteTree(syncPath);
+      return;
+    }
+    try {
+      Files.move(syncPath, kitInstallationPath, ATOMIC_MOVE);
+      logger.debug("Kit sync: {} completed to: {}", syncPath, kitInstallationPath);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to move " + syncPath + " to " + kitInstallationPath, e);
+    }
+  }
+
+  /**
+   * Installs a kit from a folder of this host: the files are copied by the file system instead of being streamed
+   * from the orchestrator.
+   *
+   * @return false if the folder cannot be seen from this agent, in which case the kit has to be uploaded
+   */
+  public boolean copyKit(Path source) {
+    if (!Files.isDirectory(source)) {
+      return false;
+    }
+    if (source.toAbsolutePath().normalize().equals(kitInstallationPath.toAbsolutePath().normalize())) {
+      return true;
+    }
+    Path syncPath = getKitSyncPath();
+    try (InstallLock lock = InstallLock.exclusive(installLockFileOf(rootInstallationPath))) {
+      if (isKitAvailable()) {
+        logger.debug("Kit: {} has been installed by another sync", kitInstallationPath);
+        return true;
+      }
+      logger.debug("Copying kit: {} to: {}", source, kitInstallationPath);
+      if (Files.exists(syncPath)) {
+        FileUtils.deleteTree(syncPath);
+      }
+      FileUtils.copy(source, syncPath, RECURSIVE);
+      FileUtils.setCorrectPermissions(syncPath);
+      moveKitSync();
+    }
+    return true;
+  }
+
+  /**
+   * The best seed is the most recent kit of the same version. When the version has never been installed on this
+   * agent, the most recent kit of any other version cached here is used instead: most of the libraries of a kit do
+   * not change from one version to the next.
+   */
+  @SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
+  private Optional<Path> findSyncSeed() {
+    Optional<Path> sameVersion = mostRecentKit(rootInstallationPath);
+    if (sameVersion.isPresent()) {
+      return sameVersion;
+    }
+    Path cacheDir = rootInstallationPath.getParent();
+    return listKitDirs(cacheDir)
+        .filter(versionDir -> !versionDir.equals(rootInstallationPath))
+        .map(this::mostRecentKit)
+        .filter(Optional::isPresent)
+        .map(Optional::get)
+        .max(Comparator.comparingLong(path -> path.toFile().lastModified()));
+  }
+
+  private Optional<Path> mostRecentKit(Path versionDir) {
+    return listKitDirs(versionDir)
+        .filter(path -> !path.equals(kitInstallationPath))
+        .max(Comparator.comparingLong(path -> path.toFile().lastModified()));
+  }
+
+  private static Stream<Path> listKitDirs(Path dir) {
+    if (!Files.isDirectory(dir)) {
+      return Stream.empty();
+    }
+    try (Stream<Path> stream = Files.list(dir)) {
+      return stream
+          .filter(Files::isDirectory)
+          .filter(path -> !path.getFileName().toString().startsWith("."))
+          .collect(toList())
+          .stream();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
   public void deleteInstall(File installLocation) {
     logger.debug("Deleting installation in {}", installLocation.getAbsolutePath());
     FileUtils.deleteQuietly(installLocation.toPath());
@@ -24,8 +24,11 @@ import org.terracotta.angela.common.tcconfig.TerracottaServer;
 import org.terracotta.angela.common.topology.Topology;
 
 import java.io.File;
+import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 
@@ -36,6 +39,8 @@ public class TerracottaInstall {
 
   private final PortAllocator portAllocator;
   private final Map<UUID, TerracottaServerInstance> terracottaServerInstances = new HashMap<>();
+  // prevent the cached kits used by the servers from being evicted
+  private final Set<Path> kitsInUse = new HashSet<>();
 
   public TerracottaInstall(PortAllocator portAllocator) {
     this.portAllocator = portAllocator;
@@ -69,6 +74,10 @@ public class TerracottaInstall {
     synchronized (terracottaServerInstances) {
       TerracottaServerInstance serverInstance = new TerracottaServerInstance(terracottaServer, kitLocation, installLocation, license, distribution, topology, portAllocator);
       terracottaServerInstances.put(terracottaServer.getId(), serverInstance);
+      Path kit = kitLocation.toPath().toAbsolutePath().normalize();
+      if (kitsInUse.add(kit)) {
+        KitCache.getInstance().use(kit);
+      }
     }
   }
 
@@ -77,6 +86,11 @@ public class TerracottaInstall {
       TerracottaServerInstance instance = terracottaServerInstances.remove(terracottaServer.getId());
       if (instance != null) {
         instance.close();
+        Path kit = instance.getKitDir().toPath().toAbsolutePath().normalize();
+        boolean kitInUse = terracottaServerInstances.values().stream().anyMatch(tsi -> tsi.getKitDir().toPath().toAbsolutePath().normalize().equals(kit));
+        if (!kitInUse && kitsInUse.remove(kit)) {
+          KitCache.getInstance().release(kit);
+        }
       }
       return terracottaServerInstances.size();
     }
@@ -0,0 +1,65 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.agent.kit;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Remembers that an installer matched its MD5, so that it does not have to be read again to be validated as long as
+ * it keeps the same size and modification time.
+ */
+public final class VerifiedChecksum {
+
+  private VerifiedChecksum() {
+  }
+
+  public static void record(Path installer, String md5) {
+    try {
+      Files.write(markerFile(installer), (md5 + " " + fingerprint(installer)).getBytes(US_ASCII));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public static boolean isRecorded(Path installer, String md5) {
+    try {
+      String recorded = new String(Files.readAllBytes(markerFile(installer)), US_ASCII);
+      return recorded.equalsIgnoreCase(md5 + " " + fingerprint(installer));
+    } catch (NoSuchFileException e) {
+      return false;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static String fingerprint(Path installer) throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(installer, BasicFileAttributes.class);
+    return attributes.size() + " " + attributes.lastModifiedTime().toMillis();
+  }
+
+  private static Path markerFile(Path installer) {
+    return Paths.get(installer + ".md5.verified");
+  }
+}
@@ -21,6 +21,8 @@ import org.terracotta.angela.agent.com.grid.GridCluster;
 import org.terracotta.angela.common.clientconfig.ClientId;
 
 import java.io.Serializable;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import static java.util.Objects.requireNonNull;
 
@@ -30,11 +32,24 @@ public class Cluster implements Serializable {
   private final GridCluster gridCluster;
   private final AgentID from;
   private final ClientId clientId;
+  private final String workingDirectory;
 
   public Cluster(GridCluster gridCluster, AgentID from, ClientId clientId) {
+    this(gridCluster, from, clientId, null);
+  }
+
+  private Cluster(GridCluster gridCluster, AgentID from, ClientId clientId, String workingDirectory) {
     this.gridCluster = requireNonNull(gridCluster);
     this.from = requireNonNull(from);
     this.clientId = clientId;
+    this.workingDirectory = workingDirectory;
+  }
+
+  /**
+   * @return a copy of this cluster for a client which has its own working directory in a JVM shared with other clients
+   */
+  public Cluster withWorkingDirectory(Path workingDirectory) {
+    return new Cluster(gridCluster, from, clientId, workingDirectory.toString());
   }
 
   public Barrier barrier(String name, int count) {
@@ -61,6 +76,14 @@ public class Cluster implements Serializable {
     return clientId;
   }
 
+  /**
+   * @return the working directory of the client running the job. Several clients can share the same JVM, in which
+   * case they do not have the working directory of the JVM, but their own one.
+   */
+  public Path getWorkingDirectory() {
+    return Paths.get(workingDirectory == null ? "" : workingDirectory).toAbsolutePath();
+  }
+
   /**
    * The agent from which the Ignite closure was executed
    */
@@ -0,0 +1,166 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.terracotta.angela.common.util.FileUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+public class KitDownloaderTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final byte[] content = new byte[KitDownloader.CHUNK_SIZE * 3 + 1234];
+  private final AtomicInteger rangeRequests = new AtomicInteger();
+  private final AtomicBoolean failLastChunk = new AtomicBoolean();
+  private final AtomicInteger fullGets = new AtomicInteger();
+  private boolean acceptRanges = true;
+  private boolean rejectHead;
+  private HttpServer server;
+
+  @Before
+  public void setUp() throws IOException {
+    new Random(0).nextBytes(content);
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/kit.zip", this::serve);
+    server.start();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testDownloadWithRangesIsHashedAndResumed() throws Exception {
+    Path dest = temporaryFolder.getRoot().toPath().resolve("kits").resolve("kit.zip");
+    failLastChunk.set(true);
+    try {
+      new KitDownloader(url(), dest, 2).download();
+      fail("Expected IOException");
+    } catch (IOException e) {
+      // expected
+    }
+    assertThat(Files.exists(dest), equalTo(false));
+
+    failLastChunk.set(false);
+    rangeRequests.set(0);
+    String md5 = new KitDownloader(url(), dest, 2).download();
+
+    assertThat(rangeRequests.get(), equalTo(1)); // only the failed chunk was downloaded again
+    assertThat(fullGets.get(), equalTo(0)); // probed with HEAD requests
+    assertArrayEquals(content, Files.readAllBytes(dest));
+    assertThat(md5, equalTo(FileUtils.toHex(MessageDigest.getInstance("MD5").digest(content))));
+  }
+
+  @Test
+  public void testDownloadWithoutRanges() throws Exception {
+    acceptRanges = false;
+    Path dest = temporaryFolder.getRoot().toPath().resolve("kit.zip");
+
+    String md5 = new KitDownloader(url(), dest, 4).download();
+
+    assertThat(rangeRequests.get(), equalTo(0));
+    assertArrayEquals(content, Files.readAllBytes(dest));
+    assertThat(md5, equalTo(FileUtils.toHex(MessageDigest.getInstance("MD5").digest(content))));
+  }
+
+  @Test
+  public void testDownloadWithRangesWhenHeadIsRejected() throws Exception {
+    rejectHead = true;
+    Path dest = temporaryFolder.getRoot().toPath().resolve("kit.zip");
+
+    String md5 = new KitDownloader(url(), dest, 4).download();
+
+    assertThat(fullGets.get(), equalTo(1)); // the GET probe
+    assertThat(rangeRequests.get(), equalTo(4));
+    assertArrayEquals(content, Files.readAllBytes(dest));
+    assertThat(md5, equalTo(FileUtils.toHex(MessageDigest.getInstance("MD5").digest(content))));
+  }
+
+  private URL url() throws IOException {
+    return new URL("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/kit.zip");
+  }
+
+  private void serve(HttpExchange exchange) throws IOException {
+    boolean head = "HEAD".equals(exchange.getRequestMethod());
+    if (head && rejectHead) {
+      exchange.sendResponseHeaders(405, -1);
+      exchange.close();
+      return;
+    }
+    String range = exchange.getRequestHeaders().getFirst("Range");
+    int start = 0;
+    int end = content.length;
+    int status = 200;
+    if (acceptRanges) {
+      exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+      exchange.getResponseHeaders().add("ETag", "\"v1\"");
+    }
+    if (range != null && acceptRanges) {
+      String[] bounds = range.substring("bytes=".length()).split("-");
+      start = Integer.parseInt(bounds[0]);
+      end = Integer.parseInt(bounds[1]) + 1;
+      status = 206;
+      rangeRequests.incrementAndGet();
+      if (failLastChunk.get() && end == content.length) {
+        exchange.sendResponseHeaders(500, -1);
+        exchange.close();
+        return;
+      }
+    }
+    if (head) {
+      exchange.getResponseHeaders().add("Content-Length", String.valueOf(content.length));
+      exchange.sendResponseHeaders(status, -1);
+      exchange.close();
+      return;
+    }
+    if (range == null) {
+      fullGets.incrementAndGet();
+    }
+    exchange.sendResponseHeaders(status, end - start);
+    try (OutputStream os = exchange.getResponseBody()) {
+      os.write(content, start, end - start);
+    } catch (IOException e) {
+      // the client did not read the whole body
+    }
+    exchange.close();
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.agent.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.StringStartsWith.startsWith;
+import static org.terracotta.angela.common.AngelaProperties.CLASS_DATA_SHARING;
+
+public class ClassDataSharingTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Before
+  public void setUp() {
+    System.setProperty(CLASS_DATA_SHARING.getPropertyName(), "true");
+  }
+
+  @After
+  public void tearDown() {
+    System.clearProperty(CLASS_DATA_SHARING.getPropertyName());
+  }
+
+  @Test
+  public void testMajorVersion() {
+    assertThat(ClassDataSharing.majorVersion("IMPLEMENTOR=\"Eclipse Adoptium\"\nJAVA_VERSION=\"17.0.9\"\n"), equalTo(17));
+    assertThat(ClassDataSharing.majorVersion("JAVA_VERSION=\"1.8.0_392\""), equalTo(8));
+    assertThat(ClassDataSharing.majorVersion("JAVA_VERSION=\"21\""), equalTo(21));
+    assertThat(ClassDataSharing.majorVersion(""), equalTo(-1));
+  }
+
+  @Test
+  public void testOnlyOneSpawnRecordsTheClassesToArchive() throws Exception {
+    Path root = temporaryFolder.newFolder().toPath();
+    Path javaHome = javaHome("17.0.9");
+    Path workDir = temporaryFolder.newFolder().toPath();
+    Files.createDirectories(workDir.resolve("lib").resolve("classes"));
+    Files.write(workDir.resolve("lib").resolve("a.jar"), new byte[10]);
+    List<String> classpath = Arrays.asList("lib/a.jar", "lib/classes");
+    ClassDataSharing cds = new ClassDataSharing(root);
+
+    ClassDataSharing.Spawn first = cds.prepare(javaHome, Collections.emptySet(), workDir, classpath);
+    assertThat(first.getJvmOptions().size(), equalTo(1));
+    assertThat(first.getJvmOptions().get(0), startsWith("-XX:DumpLoadedClassList=" + root));
+    assertThat(cds.prepare(javaHome, Collections.emptySet(), workDir, classpath).getJvmOptions().isEmpty(), equalTo(true));
+
+    // a failed spawn lets the next one record the classes
+    first.spawned(false);
+    ClassDataSharing.Spawn second = cds.prepare(javaHome, Collections.emptySet(), workDir, classpath);
+    assertThat(second.getJvmOptions().get(0), startsWith("-XX:DumpLoadedClassList="));
+    assertThat(second.isShared(), equalTo(false));
+    second.spawned(false);
+
+    // the archive only depends on the leading jars of the classpath
+    String classList = second.getJvmOptions().get(0).substring("-XX:DumpLoadedClassList=".length());
+    String key = root.relativize(Path.of(classList)).toString().split("\\.")[0];
+    Files.write(root.resolve(key + ".jsa"), new byte[10]);
+    ClassDataSharing.Spawn shared = cds.prepare(javaHome, Collections.emptySet(), workDir, Arrays.asList("lib/a.jar", "lib/other"));
+    assertThat(shared.getJvmOptions(), equalTo(Collections.singletonList("-XX:SharedArchiveFile=" + root.resolve(key + ".jsa"))));
+    assertThat(shared.isShared(), equalTo(true));
+  }
+
+  @Test
+  public void testDisabledByDefault() throws Exception {
+    System.clearProperty(CLASS_DATA_SHARING.getPropertyName());
+    Path workDir = temporaryFolder.newFolder().toPath();
+    Files.write(workDir.resolve("a.jar"), new byte[10]);
+    ClassDataSharing cds = new ClassDataSharing(temporaryFolder.newFolder().toPath());
+
+    ClassDataSharing.Spawn spawn = cds.prepare(javaHome("17.0.9"), Collections.emptySet(), workDir, Collections.singletonList("a.jar"));
+
+    assertThat(spawn.getJvmOptions().isEmpty(), equalTo(true));
+  }
+
+  @Test
+  public void testOldJdksAreNotUsed() throws Exception {
+    Path workDir = temporaryFolder.newFolder().toPath();
+    Files.write(workDir.resolve("a.jar"), new byte[10]);
+    ClassDataSharing cds = new ClassDataSharing(temporaryFolder.newFolder().toPath());
+
+    ClassDataSharing.Spawn spawn = cds.prepare(javaHome("11.0.21"), Collections.emptySet(), workDir, Collections.singletonList("a.jar"));
+
+    assertThat(spawn.getJvmOptions().isEmpty(), equalTo(true));
+  }
+
+  private Path javaHome(String version) throws Exception {
+    Path javaHome = temporaryFolder.newFolder().toPath();
+    Files.write(javaHome.resolve("release"), ("JAVA_VERSION=\"" + version + "\"\n").getBytes(UTF_8));
+    return javaHome;
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.agent.client;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class ClientJarStoreTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testMissAndHit() throws Exception {
+    Path jar = jar("a.jar", "content of a");
+    Path classes = temporaryFolder.newFolder("classes").toPath();
+    List<Path> locations = Arrays.asList(jar, classes);
+    Map<String, String> manifest = ClientJarStore.manifest(locations);
+    ClientJarStore store = new ClientJarStore(temporaryFolder.newFolder("store").toPath());
+
+    // miss: the jar has to be uploaded
+    assertThat(store.missing(manifest.values()), equalTo(Collections.singleton(manifest.get("a.jar"))));
+    assertThat(ClientJarStore.uploads(locations, manifest, store.missing(manifest.values())), equalTo(locations));
+
+    Path classpathRoot = temporaryFolder.newFolder("client-1").toPath();
+    Files.copy(jar, classpathRoot.resolve("a.jar"));
+    store.adopt(manifest, classpathRoot);
+
+    // hit: only the classes directory is uploaded, and the jar is linked from the store
+    assertThat(store.missing(manifest.values()).isEmpty(), equalTo(true));
+    assertThat(ClientJarStore.uploads(locations, manifest, store.missing(manifest.values())), equalTo(Collections.singletonList(classes)));
+    Path otherRoot = temporaryFolder.newFolder("client-2").toPath();
+    store.adopt(manifest, otherRoot);
+    assertThat(new String(Files.readAllBytes(otherRoot.resolve("a.jar")), UTF_8), equalTo("content of a"));
+  }
+
+  @Test
+  public void testUploadNotMatchingItsHashIsNotStored() throws Exception {
+    Path jar = jar("a.jar", "content of a");
+    Map<String, String> manifest = ClientJarStore.manifest(Collections.singletonList(jar));
+    ClientJarStore store = new ClientJarStore(temporaryFolder.newFolder("store").toPath());
+
+    Path classpathRoot = temporaryFolder.newFolder("client").toPath();
+    Files.write(classpathRoot.resolve("a.jar"), "another a".getBytes(UTF_8));
+    store.adopt(manifest, classpathRoot);
+
+    assertThat(store.missing(manifest.values()), equalTo(Collections.singleton(manifest.get("a.jar"))));
+    assertThat(new String(Files.readAllBytes(classpathRoot.resolve("a.jar")), UTF_8), equalTo("another a"));
+  }
+
+  @Test
+  public void testConcurrentStore() throws Exception {
+    Path jar = jar("a.jar", "content of a");
+    Map<String, String> manifest = ClientJarStore.manifest(Collections.singletonList(jar));
+    Path storeRoot = temporaryFolder.newFolder("store").toPath();
+    int clients = 8;
+    CyclicBarrier barrier = new CyclicBarrier(clients);
+    ExecutorService executorService = Executors.newFixedThreadPool(clients);
+    try {
+      List<Future<Path>> futures = new ArrayList<>();
+      for (int i = 0; i < clients; i++) {
+        Path classpathRoot = temporaryFolder.newFolder("client-" + i).toPath();
+        Files.copy(jar, classpathRoot.resolve("a.jar"));
+        futures.add(executorService.submit(() -> {
+          barrier.await();
+          new ClientJarStore(storeRoot).adopt(manifest, classpathRoot);
+          return classpathRoot;
+        }));
+      }
+      for (Future<Path> future : futures) {
+        assertThat(new String(Files.readAllBytes(future.get().resolve("a.jar")), UTF_8), equalTo("content of a"));
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    // one stored file, and no temporary file left behind
+    try (Stream<Path> stored = Files.list(storeRoot)) {
+      assertThat(stored.map(path -> String.valueOf(path.getFileName())).collect(toList()), equalTo(Collections.singletonList(manifest.get("a.jar"))));
+    }
+  }
+
+  private Path jar(String name, String content) throws Exception {
+    Path jar = temporaryFolder.newFolder().toPath().resolve(name);
+    Files.write(jar, content.getBytes(UTF_8));
+    return jar;
+  }
+}
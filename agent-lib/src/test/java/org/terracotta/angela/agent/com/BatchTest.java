@@ -0,0 +1,61 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.agent.com;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.fail;
+
+public class BatchTest {
+
+  @Test
+  public void testFailedCallDoesNotPreventTheNextOnes() {
+    try (Executor executor = new IgniteFreeExecutor(UUID.randomUUID(), AgentID.local())) {
+      Batch batch = executor.batch(AgentID.local());
+      CompletableFuture<String> first = batch.add(() -> "first");
+      CompletableFuture<Void> failed = batch.add(() -> {
+        throw new IllegalStateException("failed");
+      });
+      CompletableFuture<Integer> last = batch.add(() -> 42);
+
+      List<BatchResult<?>> results = batch.flush();
+
+      assertThat(results.size(), equalTo(3));
+      assertThat(results.get(1).isFailed(), equalTo(true));
+      assertThat(first.join(), equalTo("first"));
+      assertThat(failed.isCompletedExceptionally(), equalTo(true));
+      assertThat(last.join(), equalTo(42));
+      assertThat(batch.isEmpty(), equalTo(true));
+
+      batch.add(() -> {
+        throw new IllegalStateException("failed again");
+      });
+      try {
+        batch.execute();
+        fail();
+      } catch (IllegalStateException e) {
+        assertThat(e.getMessage(), equalTo("failed again"));
+      }
+    }
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.agent.com;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertArrayEquals;
+
+public class FileTransferTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testMultiChunkFile() throws IOException {
+    Path src = temporaryFolder.newFolder("kit").toPath();
+    Path dest = temporaryFolder.newFolder("dest").toPath();
+    byte[] content = new byte[10 * 1024 + 17];
+    new Random(0).nextBytes(content);
+    Path file = Files.createDirectories(src.resolve("lib")).resolve("a.jar");
+    Files.write(file, content);
+
+    List<FileTransfer> chunks = transfer(Collections.singletonMap("kit/lib/a.jar", file), 1024, path -> null, Deflater.NO_COMPRESSION);
+
+    assertThat(chunks.size(), equalTo(11));
+    assertThat(chunks.get(0).getRelativePath(), equalTo("kit/lib/a.jar"));
+    assertThat(chunks.get(10).getOffset(), equalTo(10 * 1024L));
+    assertThat(chunks.get(10).getLength(), equalTo(17));
+    for (int i = 0; i < chunks.size(); i++) {
+      assertThat(chunks.get(i).isLast(), equalTo(i == chunks.size() - 1));
+      assertThat(chunks.get(i).getFileSize(), equalTo((long) content.length));
+    }
+
+    chunks.forEach(chunk -> chunk.writeTo(dest));
+    assertArrayEquals(content, Files.readAllBytes(dest.resolve("kit/lib/a.jar")));
+  }
+
+  @Test
+  public void testEmptyFile() throws IOException {
+    Path file = temporaryFolder.newFile("empty.txt").toPath();
+    Path dest = temporaryFolder.newFolder("dest").toPath();
+
+    List<FileTransfer> chunks = transfer(Collections.singletonMap("empty.txt", file), 1024, path -> null, Deflater.NO_COMPRESSION);
+
+    assertThat(chunks.size(), equalTo(1));
+    assertThat(chunks.get(0).isLast(), equalTo(true));
+    assertThat(chunks.get(0).getLength(), equalTo(0));
+    chunks.get(0).writeTo(dest);
+    assertThat(Files.size(dest.resolve("empty.txt")), equalTo(0L));
+  }
+
+  @Test
+  public void testOverwriteBiggerFile() throws IOException {
+    Path file = temporaryFolder.newFile("file.txt").toPath();
+    Path dest = temporaryFolder.newFolder("dest").toPath();
+    Files.write(file, new byte[]{1, 2, 3});
+    Files.write(dest.resolve("file.txt"), new byte[]{9, 9, 9, 9, 9, 9});
+
+    transfer(Collections.singletonMap("file.txt", file), 2, path -> null, Deflater.NO_COMPRESSION).forEach(chunk -> chunk.writeTo(dest));
+
+    assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(dest.resolve("file.txt")));
+  }
+
+  @Test
+  public void testDeflatedChunks() throws IOException {
+    Path src = temporaryFolder.newFolder("logs").toPath();
+    Path dest = temporaryFolder.newFolder("dest").toPath();
+    byte[] text = String.join("\n", Collections.nCopies(1000, "INFO - server is running")).getBytes(StandardCharsets.UTF_8);
+    byte[] random = new byte[4096];
+    new Random(0).nextBytes(random);
+    Map<String, Path> files = new LinkedHashMap<>();
+    files.put("server.log", Files.write(src.resolve("server.log"), text));
+    files.put("data.bin", Files.write(src.resolve("data.bin"), random));
+
+    List<FileTransfer> chunks = transfer(files, 1024, path -> FileTransferCodecs.getDefault(), Deflater.BEST_COMPRESSION);
+
+    assertThat(chunks.get(0).getCodec(), equalTo(DeflateCodec.NAME));
+    assertThat(chunks.get(chunks.size() - 1).getCodec(), nullValue()); // random bytes do not compress
+    chunks.forEach(chunk -> chunk.writeTo(dest));
+    assertArrayEquals(text, Files.readAllBytes(dest.resolve("server.log")));
+    assertArrayEquals(random, Files.readAllBytes(dest.resolve("data.bin")));
+  }
+
+  @Test
+  public void testPlanStripesBigFilesAndBatchesSmallFiles() throws IOException {
+    Path src = temporaryFolder.newFolder("kit").toPath();
+    Path dest = temporaryFolder.newFolder("dest").toPath();
+    Map<String, Path> files = new LinkedHashMap<>();
+    Random random = new Random(0);
+    for (int size : new int[]{300, 400, 500, 2500, 0}) {
+      byte[] content = new byte[size];
+      random.nextBytes(content);
+      files.put("kit/" + size, Files.write(src.resolve(String.valueOf(size)), content));
+    }
+
+    List<List<FileTransfer.Part>> frames = FileTransfer.plan(files, 1000);
+
+    // [300, 400], [500, 0] are batched, and 2500 is striped into 3 frames
+    assertThat(frames.size(), equalTo(5));
+    assertThat(frames.get(0).size(), equalTo(2));
+    assertThat(frames.get(4).size(), equalTo(2));
+    // frames can be received in any order
+    Collections.reverse(frames);
+    for (List<FileTransfer.Part> frame : frames) {
+      FileTransfer.read(frame, file -> null, Deflater.NO_COMPRESSION).writeTo(dest);
+    }
+    for (Map.Entry<String, Path> entry : files.entrySet()) {
+      assertArrayEquals(Files.readAllBytes(entry.getValue()), Files.readAllBytes(dest.resolve(entry.getKey())));
+    }
+  }
+
+  @Test
+  public void testOnlyCompressibleFilesAreEncoded() throws IOException {
+    Path src = temporaryFolder.newFolder("data").toPath();
+    byte[] text = String.join("\n", Collections.nCopies(10_000, "INFO - server is running")).getBytes(StandardCharsets.UTF_8);
+    byte[] random = new byte[text.length];
+    new Random(0).nextBytes(random);
+    Path log = Files.write(src.resolve("server.log"), text);
+    Path data = Files.write(src.resolve("data.frs"), random);
+    Path jar = Files.write(src.resolve("lib.jar"), text);
+
+    Function<Path, FileTransferCodec> codecs = FileTransferCodecs.selector(Deflater.DEFAULT_COMPRESSION);
+
+    assertThat(codecs.apply(log).getName(), equalTo(DeflateCodec.NAME));
+    assertThat(codecs.apply(data), nullValue()); // the sample does not compress
+    assertThat(codecs.apply(jar), nullValue()); // known compressed extension
+    assertThat(FileTransferCodecs.selector(Deflater.NO_COMPRESSION).apply(log), nullValue());
+  }
+
+  private static List<FileTransfer> transfer(Map<String, Path> files, int chunkSize, Function<Path, FileTransferCodec> codecs, int compressionLevel) throws IOException {
+    List<FileTransfer> chunks = new ArrayList<>();
+    for (List<FileTransfer.Part> frame : FileTransfer.plan(files, chunkSize)) {
+      chunks.add(FileTransfer.read(frame, codecs, compressionLevel));
+    }
+    return chunks;
+  }
+}
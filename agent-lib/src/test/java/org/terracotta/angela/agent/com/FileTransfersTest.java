@@ -0,0 +1,80 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.agent.com;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.fail;
+
+public class FileTransfersTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testSendAndReceive() throws Exception {
+    Path file = temporaryFolder.newFile("a.txt").toPath();
+    Files.write(file, "hello".getBytes(StandardCharsets.UTF_8));
+    Path dest = temporaryFolder.newFolder("dest").toPath();
+    List<BlockingQueue<FileTransfer>> queues = Arrays.asList(new ArrayBlockingQueue<>(4), new ArrayBlockingQueue<>(4));
+
+    CompletableFuture<Void> sender = CompletableFuture.runAsync(() -> FileTransfers.send(queues, Collections.singletonMap("dir/a.txt", file), 0));
+    FileTransfers.receive(queues, dest, sender);
+    sender.get();
+
+    assertThat(new String(Files.readAllBytes(dest.resolve("dir").resolve("a.txt")), StandardCharsets.UTF_8), equalTo("hello"));
+  }
+
+  @Test
+  public void testReceiveFailsWhenTheSenderFails() throws Exception {
+    Path dest = temporaryFolder.newFolder("dest").toPath();
+    CompletableFuture<Void> sender = new CompletableFuture<>();
+    sender.completeExceptionally(new IllegalStateException("sender died"));
+
+    try {
+      FileTransfers.receive(Collections.singletonList(new ArrayBlockingQueue<>(4)), dest, sender);
+      fail("expected IllegalStateException");
+    } catch (IllegalStateException e) {
+      assertThat(e.getCause().getMessage(), equalTo("sender died"));
+    }
+  }
+
+  @Test
+  public void testReceiveFailsWhenTheSenderCompletesWithoutEndMarker() throws Exception {
+    Path dest = temporaryFolder.newFolder("dest").toPath();
+    try {
+      FileTransfers.receive(Collections.singletonList(new ArrayBlockingQueue<>(4)), dest, CompletableFuture.completedFuture(null));
+      fail("expected IllegalStateException");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+}
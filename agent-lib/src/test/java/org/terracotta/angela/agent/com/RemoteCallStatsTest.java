@@ -0,0 +1,130 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.agent.com;
+
+import org.junit.Test;
+import org.terracotta.angela.agent.com.grid.RemoteCallable;
+import org.terracotta.angela.agent.com.grid.RemoteRunnable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.number.OrderingComparison.greaterThan;
+import static org.hamcrest.number.OrderingComparison.lessThanOrEqualTo;
+import static org.terracotta.angela.common.AngelaProperties.REMOTE_CALL_STATS;
+
+public class RemoteCallStatsTest {
+
+  @Test
+  public void testRecordsPerCallSite() throws Exception {
+    RemoteCallStats stats = new RemoteCallStats(true);
+    byte[] captured = new byte[10_000];
+    RemoteCallable<Integer> job = () -> captured.length;
+
+    for (int i = 0; i < 3; i++) {
+      assertThat(call(stats, job), equalTo(10_000));
+    }
+
+    assertThat(stats.getCallSites().size(), equalTo(1));
+    RemoteCallStats.CallSite callSite = stats.getCallSites().iterator().next();
+    assertThat(callSite.getName(), equalTo("RemoteCallStatsTest.testRecordsPerCallSite"));
+    assertThat(callSite.getLatency().getCount(), equalTo(3L));
+    assertThat(callSite.getRemoteRun().getCount(), equalTo(3L));
+    assertThat(callSite.getFailures(), equalTo(0L));
+    assertThat(callSite.getMaxClosureBytes(), greaterThan(10_000L));
+    assertThat(callSite.getMeanResultBytes(), greaterThan(0L));
+  }
+
+  @Test
+  public void testSizesAreSampled() throws Exception {
+    RemoteCallStats stats = new RemoteCallStats(true);
+    RemoteCallable<String> job = () -> "result";
+
+    for (int i = 0; i < RemoteCallStats.SIZE_SAMPLING_INTERVAL * 2 + 1; i++) {
+      call(stats, job);
+    }
+
+    RemoteCallStats.CallSite callSite = stats.getCallSites().iterator().next();
+    assertThat(callSite.getLatency().getCount(), equalTo(RemoteCallStats.SIZE_SAMPLING_INTERVAL * 2 + 1L));
+    assertThat(callSite.getSizedCalls(), equalTo(3L));
+    assertThat(callSite.getMeanResultBytes(), greaterThan(0L));
+  }
+
+  @Test
+  public void testAsyncRunnableIsRecordedAtItsCallSite() throws Exception {
+    System.setProperty(REMOTE_CALL_STATS.getPropertyName(), "true");
+    try (IgniteFreeExecutor executor = new IgniteFreeExecutor(UUID.randomUUID(), AgentID.local())) {
+      RemoteRunnable job = () -> {
+      };
+      executor.executeAsync(executor.getLocalAgentID(), job).get();
+
+      RemoteCallStats.CallSite callSite = executor.getRemoteCallStats().getCallSites().iterator().next();
+      assertThat(callSite.getName(), equalTo("RemoteCallStatsTest.testAsyncRunnableIsRecordedAtItsCallSite"));
+    } finally {
+      System.clearProperty(REMOTE_CALL_STATS.getPropertyName());
+    }
+  }
+
+  @Test
+  public void testBatchedCallsAreRecordedAtTheirCallSite() {
+    System.setProperty(REMOTE_CALL_STATS.getPropertyName(), "true");
+    try (IgniteFreeExecutor executor = new IgniteFreeExecutor(UUID.randomUUID(), AgentID.local())) {
+      Batch batch = executor.batch(AgentID.local());
+      batch.add(() -> "callable");
+      batch.add(runnable());
+      batch.execute();
+
+      List<String> names = executor.getRemoteCallStats().getCallSites().stream().map(RemoteCallStats.CallSite::getName).sorted().collect(toList());
+      assertThat(names, equalTo(Arrays.asList("RemoteCallStatsTest.runnable", "RemoteCallStatsTest.testBatchedCallsAreRecordedAtTheirCallSite")));
+    } finally {
+      System.clearProperty(REMOTE_CALL_STATS.getPropertyName());
+    }
+  }
+
+  private static RemoteRunnable runnable() {
+    return () -> {
+    };
+  }
+
+  private static <R> R call(RemoteCallStats stats, RemoteCallable<R> job) throws Exception {
+    return stats.time(job, job, timed -> {
+      try {
+        return CompletableFuture.completedFuture(timed.call());
+      } catch (Exception e) {
+        throw new AssertionError(e);
+      }
+    }).get();
+  }
+
+  @Test
+  public void testHistogramPercentileIsAnUpperBound() {
+    RemoteCallStats.Histogram histogram = new RemoteCallStats.Histogram();
+    for (long nanos = 1; nanos <= 1000; nanos++) {
+      histogram.record(nanos);
+    }
+    assertThat(histogram.getMaxNanos(), equalTo(1000L));
+    assertThat(histogram.getMeanNanos(), equalTo(500L));
+    assertThat(histogram.getPercentileNanos(0.5), greaterThan(499L));
+    assertThat(histogram.getPercentileNanos(0.5), lessThanOrEqualTo(1000L));
+    assertThat(histogram.getPercentileNanos(1), equalTo(1000L));
+  }
+}
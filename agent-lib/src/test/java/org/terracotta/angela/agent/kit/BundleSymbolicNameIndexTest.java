@@ -0,0 +1,72 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.agent.kit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+
+public class BundleSymbolicNameIndexTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testIndexIsPersistedAndInvalidatedWhenJarChanges() throws IOException {
+    Path root = temporaryFolder.newFolder().toPath();
+    Path indexFile = root.resolve("index");
+    Path jar = writeJar(root.resolve("client.jar"), "com.terracotta.client");
+    Files.write(root.resolve("notes.txt"), new byte[0]);
+
+    BundleSymbolicNameIndex index = new BundleSymbolicNameIndex(indexFile);
+    assertThat(index.get(jar), equalTo("com.terracotta.client"));
+    assertThat(index.get(root.resolve("notes.txt")), nullValue());
+    index.save();
+
+    // the manifest is not read again while the jar keeps the same size and modification time
+    FileTime lastModified = Files.getLastModifiedTime(jar);
+    writeJar(jar, "com.terracotta.server");
+    Files.setLastModifiedTime(jar, lastModified);
+    BundleSymbolicNameIndex reloaded = new BundleSymbolicNameIndex(indexFile);
+    assertThat(reloaded.get(jar), equalTo("com.terracotta.client"));
+
+    Files.setLastModifiedTime(jar, FileTime.fromMillis(lastModified.toMillis() + 10_000));
+    assertThat(reloaded.get(jar), equalTo("com.terracotta.server"));
+  }
+
+  private static Path writeJar(Path jar, String bundleSymbolicName) throws IOException {
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    manifest.getMainAttributes().putValue("Bundle-SymbolicName", bundleSymbolicName);
+    try (OutputStream os = Files.newOutputStream(jar); JarOutputStream ignored = new JarOutputStream(os, manifest)) {
+      return jar;
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.agent.kit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.notNullValue;
+
+public class KitCacheTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testLeastRecentlyUsedVersionsNotInUseAreEvicted() throws Exception {
+    Path root = temporaryFolder.newFolder().toPath();
+    KitCache kitCache = new KitCache(root);
+    Path v1 = kit(root, "1.0", 1000);
+    Path v2 = kit(root, "2.0", 1000);
+    Path v3 = kit(root, "3.0", 1000);
+    kitCache.touch(v1);
+    Thread.sleep(5);
+    kitCache.touch(v2.resolve("installer.zip"));
+    Thread.sleep(5);
+    kitCache.touch(v3);
+
+    kitCache.use(v1);
+    kitCache.evict(2000);
+    kitCache.release(v1);
+
+    assertThat(Files.exists(v1), equalTo(true)); // in use
+    assertThat(Files.exists(v2), equalTo(false));
+    assertThat(Files.exists(v3), equalTo(true)); // most recently used
+    assertThat(Files.exists(root.resolve("kits").resolve("2.0")), equalTo(false));
+    assertThat(Files.exists(root.resolve("kits").resolve("2.0.lock")), equalTo(true));
+
+    kitCache.evict(1000);
+    assertThat(Files.exists(v1), equalTo(false));
+    assertThat(Files.exists(v3), equalTo(true));
+  }
+
+  @Test
+  public void testKitInUseIsNotLocked() throws Exception {
+    Path root = temporaryFolder.newFolder().toPath();
+    KitCache kitCache = new KitCache(root);
+    Path v1 = kit(root, "1.0", 1000);
+    kitCache.use(v1);
+    kitCache.use(v1);
+
+    // a fresh install of the version can still be done while a server uses the kit
+    try (InstallLock lock = InstallLock.exclusive(LocalKitManager.installLockFileOf(v1.getParent()), 10, TimeUnit.SECONDS)) {
+      assertThat(lock, notNullValue());
+    }
+
+    kitCache.release(v1);
+    kitCache.evict(0);
+    assertThat(Files.exists(v1), equalTo(true)); // still used once
+
+    kitCache.release(v1);
+    kitCache.evict(0);
+    assertThat(Files.exists(v1), equalTo(false));
+  }
+
+  @Test
+  public void testKitUsedByDeadJvmIsEvicted() throws Exception {
+    Path root = temporaryFolder.newFolder().toPath();
+    KitCache kitCache = new KitCache(root);
+    Path v1 = kit(root, "1.0", 1000);
+    Process process = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(), "-version").start();
+    process.waitFor();
+    Files.write(root.resolve("kit-cache.inuse"), (process.pid() + "\t" + v1.toAbsolutePath().normalize() + "\n").getBytes(UTF_8));
+
+    kitCache.evict(0);
+
+    assertThat(Files.exists(v1), equalTo(false));
+  }
+
+  private static Path kit(Path root, String version, int size) throws IOException {
+    Path versionDir = Files.createDirectories(root.resolve("kits").resolve(version));
+    Files.write(versionDir.resolve("installer.zip"), new byte[size]);
+    return Files.createDirectories(versionDir.resolve("kit-" + version));
+  }
+}
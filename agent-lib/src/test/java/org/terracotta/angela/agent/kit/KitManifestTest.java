@@ -0,0 +1,117 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.agent.kit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class KitManifestTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testManifestOfKit() throws Exception {
+    Path kit = temporaryFolder.newFolder().toPath();
+    write(kit, "lib/a.jar", "aaa");
+    write(kit, "bin/start.sh", "start");
+    Files.createDirectories(kit.resolve("logs"));
+
+    KitManifest manifest = KitManifest.of(kit);
+
+    assertThat(manifest.size(), equalTo(2));
+    assertThat(manifest.getFiles().keySet(), equalTo(new HashSet<>(Arrays.asList("lib/a.jar", "bin/start.sh"))));
+    assertThat(manifest.getFiles().get("lib/a.jar").size, equalTo(3L));
+    // sha-256 of "aaa"
+    assertThat(manifest.getFiles().get("lib/a.jar").sha256, equalTo("9834876dcfb05cb167a5c24953eba58c4ac89b1adf57f28f2f9d09af107ee8f0"));
+  }
+
+  @Test
+  public void testManifestOfMissingKitIsEmpty() throws Exception {
+    Path kit = temporaryFolder.getRoot().toPath().resolve("missing");
+    assertThat(KitManifest.of(kit).size(), equalTo(0));
+  }
+
+  @Test
+  public void testIdenticalKitsHaveNothingToSend() throws Exception {
+    Path local = temporaryFolder.newFolder().toPath();
+    Path remote = temporaryFolder.newFolder().toPath();
+    for (Path kit : Arrays.asList(local, remote)) {
+      write(kit, "lib/a.jar", "aaa");
+      write(kit, "bin/start.sh", "start");
+    }
+
+    KitManifest.Diff diff = KitManifest.of(remote).diff(local);
+
+    assertThat(diff.getFileCountToSend(), equalTo(0));
+    assertThat(diff.getBytesToSend(), equalTo(0L));
+    assertThat(diff.getFilesToDelete().isEmpty(), equalTo(true));
+  }
+
+  @Test
+  public void testDiff() throws Exception {
+    Path local = temporaryFolder.newFolder().toPath();
+    Path remote = temporaryFolder.newFolder().toPath();
+    write(local, "lib/same.jar", "same");
+    write(remote, "lib/same.jar", "same");
+    write(local, "lib/same-size.jar", "1234");
+    write(remote, "lib/same-size.jar", "abcd");
+    write(local, "lib/other-size.jar", "12345");
+    write(remote, "lib/other-size.jar", "abc");
+    write(local, "lib/new.jar", "new");
+    write(remote, "lib/stale.jar", "stale");
+
+    KitManifest.Diff diff = KitManifest.of(remote).diff(local);
+
+    assertThat(new HashSet<>(diff.getFilesToSend(local)), equalTo(new HashSet<>(Arrays.asList(
+        local.resolve("lib/same-size.jar"), local.resolve("lib/other-size.jar"), local.resolve("lib/new.jar")))));
+    assertThat(diff.getFileCountToSend(), equalTo(3));
+    assertThat(diff.getBytesToSend(), equalTo(12L));
+    // different remote files are deleted before being re-sent
+    assertThat(new HashSet<>(diff.getFilesToDelete()), equalTo(new HashSet<>(Arrays.asList(
+        "lib/same-size.jar", "lib/other-size.jar", "lib/stale.jar"))));
+  }
+
+  @Test
+  public void testDiffWithEmptyRemote() throws Exception {
+    Path local = temporaryFolder.newFolder().toPath();
+    write(local, "lib/a.jar", "aaa");
+
+    KitManifest.Diff diff = KitManifest.of(temporaryFolder.newFolder().toPath()).diff(local);
+
+    assertThat(diff.getFilesToSend(local), equalTo(Collections.singletonList(local.resolve("lib/a.jar"))));
+    assertThat(diff.getFilesToDelete().isEmpty(), equalTo(true));
+  }
+
+  private static void write(Path kit, String relativePath, String content) throws IOException {
+    Path file = kit.resolve(relativePath);
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(UTF_8));
+  }
+}
@@ -16,19 +16,29 @@
  */
 package org.terracotta.angela.agent.kit;
 
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import org.junit.Rule;
 import org.junit.Test;
-import org.terracotta.utilities.io.Files;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.IsEqual.equalTo;
-import static org.terracotta.angela.agent.kit.LocalKitManager.INSTALLATION_LOCK_FILE_NAME;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Aurelien Broszniowski
@@ -36,21 +46,26 @@ import static org.terracotta.angela.agent.kit.LocalKitManager.INSTALLATION_LOCK_
 
 public class LocalKitManagerTest {
 
-  @SuppressFBWarnings("RV_RETURN_VALUE_IGNORED_BAD_PRACTICE")
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   @Test
   public void testLock() throws InterruptedException, IOException {
-    final File file = Paths.get(".").resolve(INSTALLATION_LOCK_FILE_NAME).toFile();
-
-    System.out.println(file.getAbsolutePath());
-    Files.deleteIfExists(file.toPath());
-
-    final LocalKitManager localKitManager = new LocalKitManager(null, null);
+    Path versionDir = temporaryFolder.newFolder("1.0").toPath();
+    Path lockFile = LocalKitManager.installLockFile(versionDir.resolve("installer.zip"));
+    AtomicInteger installing = new AtomicInteger();
+    AtomicInteger maxInstalling = new AtomicInteger();
 
     List<Thread> threads = new ArrayList<>();
     for (int i = 0; i < 5; i++) {
       final Thread thread = new Thread(() -> {
-        localKitManager.lockConcurrentInstall(Paths.get("."));
-        localKitManager.unlockConcurrentInstall(Paths.get("."));
+        try (InstallLock lock = InstallLock.exclusive(lockFile)) {
+          maxInstalling.accumulateAndGet(installing.incrementAndGet(), Math::max);
+          Thread.sleep(50);
+          installing.decrementAndGet();
+        } catch (InterruptedException e) {
+          throw new AssertionError(e);
+        }
       });
       thread.start();
       threads.add(thread);
@@ -60,8 +75,151 @@ public class LocalKitManagerTest {
       thread.join();
     }
 
-    assertThat(file.exists(), equalTo(false));
+    assertThat(maxInstalling.get(), equalTo(1));
+    assertThat(lockFile, equalTo(versionDir.resolveSibling("1.0.lock")));
   }
 
+  @Test
+  public void testLockTimeout() throws Exception {
+    Path lockFile = LocalKitManager.installLockFile(temporaryFolder.newFolder().toPath().resolve("installer.zip"));
+    try (InstallLock lock = InstallLock.shared(lockFile)) {
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try {
+        executor.submit(() -> InstallLock.exclusive(lockFile, 100, TimeUnit.MILLISECONDS).close()).get(10, TimeUnit.SECONDS);
+        fail("expected IllegalStateException");
+      } catch (ExecutionException e) {
+        assertThat(e.getCause().getMessage().startsWith("Timed out waiting for the exclusive install lock"), equalTo(true));
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+    // a timed out waiter does not leave the lock in a broken state
+    InstallLock.exclusive(lockFile, 100, TimeUnit.MILLISECONDS).close();
+  }
 
+  @Test
+  public void testSharedLocksDoNotWaitForEachOther() throws Exception {
+    Path lockFile = LocalKitManager.installLockFile(temporaryFolder.newFolder().toPath().resolve("installer.zip"));
+    try (InstallLock lock = InstallLock.shared(lockFile)) {
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try {
+        executor.submit(() -> InstallLock.shared(lockFile).close()).get(10, TimeUnit.SECONDS);
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Another JVM deletes the version directory of a stale installer while it holds the install lock: this JVM must
+   * still see the lock as held, and not lock a new file in a re-created directory.
+   */
+  @Test
+  public void testStaleInstallerDeletedUnderLock() throws Exception {
+    Path versionDir = temporaryFolder.newFolder("1.0-SNAPSHOT").toPath();
+    Path installer = Files.write(versionDir.resolve("installer.zip"), new byte[]{1});
+    Path lockFile = LocalKitManager.installLockFile(installer);
+    Path deleted = temporaryFolder.getRoot().toPath().resolve("deleted");
+    Path release = temporaryFolder.getRoot().toPath().resolve("release");
+
+    Process process = lockInAnotherJvm(installer, deleted, release);
+    try {
+      assertThat(Files.exists(versionDir), equalTo(false));
+
+      // the version directory is re-created, e.g. by the download of a fresh installer
+      Files.createDirectories(versionDir);
+      assertThat(InstallLock.tryExclusive(lockFile), nullValue());
+      try {
+        InstallLock.exclusive(lockFile, 200, TimeUnit.MILLISECONDS);
+        fail("expected IllegalStateException");
+      } catch (IllegalStateException e) {
+        assertThat(e.getMessage().startsWith("Timed out waiting for the exclusive install lock"), equalTo(true));
+      }
+
+      Files.createFile(release);
+      assertThat(process.waitFor(30, TimeUnit.SECONDS), equalTo(true));
+      assertThat(process.exitValue(), equalTo(0));
+      try (InstallLock lock = InstallLock.tryExclusive(lockFile)) {
+        assertThat(lock, notNullValue());
+      }
+    } finally {
+      process.destroyForcibly();
+    }
+  }
+
+  /**
+   * A thread waiting for another JVM to release the lock must not prevent the other threads of this JVM from giving up
+   * on their own deadline.
+   */
+  @Test
+  public void testWaitingForAnotherJvmDoesNotBlockTheOtherThreads() throws Exception {
+    Path installer = Files.write(temporaryFolder.newFolder("2.0").toPath().resolve("installer.zip"), new byte[]{1});
+    Path lockFile = LocalKitManager.installLockFile(installer);
+    Path locked = temporaryFolder.getRoot().toPath().resolve("locked");
+    Path release = temporaryFolder.getRoot().toPath().resolve("release");
+    long acquisitions = InstallLockStats.getAcquisitionCount();
+
+    Process process = lockInAnotherJvm(installer, locked, release);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> waiter = executor.submit(() -> InstallLock.exclusive(lockFile, 30, TimeUnit.SECONDS).close());
+      Thread.sleep(200);
+
+      long start = System.nanoTime();
+      assertThat(InstallLock.tryExclusive(lockFile), nullValue());
+      try {
+        InstallLock.shared(lockFile, 200, TimeUnit.MILLISECONDS);
+        fail("expected IllegalStateException");
+      } catch (IllegalStateException e) {
+        assertThat(e.getMessage().startsWith("Timed out waiting for the shared install lock"), equalTo(true));
+      }
+      assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5, equalTo(true));
+
+      Files.createFile(release);
+      waiter.get(30, TimeUnit.SECONDS);
+      assertThat(InstallLockStats.getAcquisitionCount(), equalTo(acquisitions + 1));
+      assertThat(InstallLockStats.getMaxWaitTime(TimeUnit.MILLISECONDS) >= 200, equalTo(true));
+    } finally {
+      executor.shutdownNow();
+      process.destroyForcibly();
+    }
+  }
+
+  /**
+   * @return a JVM holding the install lock of the given installer, after having deleted its version directory and
+   * created the locked file, until the release file is created
+   */
+  private static Process lockInAnotherJvm(Path installer, Path locked, Path release) throws Exception {
+    Process process = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+        "-cp", System.getProperty("java.class.path"), StaleInstallerDeleter.class.getName(),
+        installer.toString(), locked.toString(), release.toString())
+        .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+        .redirectError(ProcessBuilder.Redirect.INHERIT)
+        .start();
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+    while (!Files.exists(locked) && process.isAlive() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+    }
+    assertThat(Files.exists(locked), equalTo(true));
+    return process;
+  }
+
+  /**
+   * Deletes the version directory of a stale installer under the install lock, like
+   * {@link KitManager#isValidLocalInstallerFilePath(boolean, Path)} does, then holds the lock until told to release it.
+   */
+  public static class StaleInstallerDeleter {
+    public static void main(String[] args) throws Exception {
+      Path installer = Paths.get(args[0]);
+      try (InstallLock lock = InstallLock.exclusive(LocalKitManager.installLockFile(installer))) {
+        org.terracotta.angela.common.util.FileUtils.deleteQuietly(installer.getParent());
+        Files.createFile(Paths.get(args[1]));
+        File release = new File(args[2]);
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while (!release.exists() && System.currentTimeMillis() < deadline) {
+          Thread.sleep(50);
+        }
+      }
+    }
+  }
 }
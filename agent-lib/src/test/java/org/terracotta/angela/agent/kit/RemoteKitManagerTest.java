@@ -0,0 +1,42 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.agent.kit;
+
+import org.junit.Test;
+
+import java.nio.file.Paths;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class RemoteKitManagerTest {
+
+  @Test
+  public void testIsImmutable() {
+    assertThat(RemoteKitManager.isImmutable(Paths.get("kit", "lib", "terracotta.jar")), equalTo(true));
+    assertThat(RemoteKitManager.isImmutable(Paths.get("kit", "tools", "management.war")), equalTo(true));
+    assertThat(RemoteKitManager.isImmutable(Paths.get("kit", "native", "libsigar.so")), equalTo(true));
+    assertThat(RemoteKitManager.isImmutable(Paths.get("kit", "native", "sigar.dll")), equalTo(true));
+
+    // can be modified by Angela or the servers
+    assertThat(RemoteKitManager.isImmutable(Paths.get("kit", "conf", "tc-config.xml")), equalTo(false));
+    assertThat(RemoteKitManager.isImmutable(Paths.get("kit", "bin", "start-tc-server.sh")), equalTo(false));
+    assertThat(RemoteKitManager.isImmutable(Paths.get("kit", "tools", "tmc.properties")), equalTo(false));
+    assertThat(RemoteKitManager.isImmutable(Paths.get("kit", "README")), equalTo(false));
+    assertThat(RemoteKitManager.isImmutable(Paths.get("kit", "lib", "jar")), equalTo(false));
+  }
+}
@@ -24,19 +24,28 @@ import org.terracotta.angela.agent.com.Executor;
 import org.terracotta.angela.agent.com.IgniteFreeExecutor;
 import org.terracotta.angela.agent.com.IgniteLocalExecutor;
 import org.terracotta.angela.agent.com.IgniteSshRemoteExecutor;
+import org.terracotta.angela.agent.com.RemoteCallStats;
+import org.terracotta.angela.agent.kit.InstallLockStats;
+import org.terracotta.angela.agent.kit.KitCache;
 import org.terracotta.angela.client.config.ConfigurationContext;
 import org.terracotta.angela.client.config.ConfigurationContextVisitor;
 import org.terracotta.angela.client.config.TsaConfigurationContext;
 import org.terracotta.angela.client.config.VoterConfigurationContext;
 import org.terracotta.angela.common.TerracottaVoter;
+import org.terracotta.angela.common.distribution.Distribution;
 import org.terracotta.angela.common.net.DefaultPortAllocator;
 import org.terracotta.angela.common.net.PortAllocator;
+import org.terracotta.angela.common.tcconfig.License;
 import org.terracotta.angela.common.topology.Topology;
 
 import java.io.Closeable;
 import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -53,12 +62,14 @@ public class AngelaOrchestrator implements Closeable {
   private final AgentController agentController;
   private final Executor executor;
   private final PortAllocator portAllocator;
+  private final KitPrefetcher kitPrefetcher;
 
   private AngelaOrchestrator(Agent mainAgent, Executor executor, PortAllocator portAllocator) {
     this.mainAgent = mainAgent;
     this.executor = executor;
     this.portAllocator = portAllocator;
     this.agentController = new AgentController(mainAgent.getAgentID(), portAllocator);
+    this.kitPrefetcher = new KitPrefetcher(executor, portAllocator);
 
     // because we need to be able to access statically the controller from ignite closure
     // when they are executed on our local ignite node, or locally by the overriding layer
@@ -70,6 +81,13 @@ public class AngelaOrchestrator implements Closeable {
     return executor;
   }
 
+  /**
+   * @return the count, latency and serialized sizes of the remote calls made so far, per call site
+   */
+  public RemoteCallStats getRemoteCallStats() {
+    return executor.getRemoteCallStats();
+  }
+
   public PortAllocator getPortAllocator() {
     return portAllocator;
   }
@@ -136,12 +154,47 @@ public class AngelaOrchestrator implements Closeable {
       }
     });
 
-    return new ClusterFactory(executor, portAllocator, idPrefix, configurationContext);
+    return new ClusterFactory(executor, portAllocator, kitPrefetcher, idPrefix, configurationContext);
+  }
+
+  /**
+   * Downloads and extracts the kits of the distributions in the background, so that the first install does not have
+   * to. Installs of these distributions wait for their prefetch to complete.
+   */
+  public CompletableFuture<Void> prefetch(Distribution... distributions) {
+    return prefetch(Collections.emptyList(), distributions);
+  }
+
+  /**
+   * Downloads and extracts the kits of the distributions in the background, and pushes them to the agents of the given
+   * hosts (spawning them if needed), so that the first install does not have to. Installs of these distributions wait
+   * for their prefetch to complete.
+   */
+  public CompletableFuture<Void> prefetch(Collection<String> hostnames, Distribution... distributions) {
+    return prefetch(null, hostnames, distributions);
+  }
+
+  /**
+   * Same as {@link #prefetch(Collection, Distribution...)}, with the license the kits are installed with. The
+   * distributions whose install needs a license (SAG installers) are only prefetched when one is given.
+   */
+  public CompletableFuture<Void> prefetch(License license, Collection<String> hostnames, Distribution... distributions) {
+    return CompletableFuture.allOf(Arrays.stream(distributions)
+        .map(distribution -> kitPrefetcher.prefetch(hostnames, distribution, license))
+        .toArray(CompletableFuture[]::new));
   }
 
   @Override
   public void close() {
     try {
+      kitPrefetcher.close();
+      RemoteCallStats remoteCallStats = executor.getRemoteCallStats();
+      if (!remoteCallStats.getCallSites().isEmpty()) {
+        logger.info("Remote calls:{}{}", System.lineSeparator(), remoteCallStats.report());
+      }
+      if (InstallLockStats.getAcquisitionCount() > 0) {
+        logger.info("Kit installs: {}", InstallLockStats.report());
+      }
       executor.close();
     } finally {
       try {
@@ -241,6 +294,7 @@ public class AngelaOrchestrator implements Closeable {
     }
 
     public AngelaOrchestrator build() {
+      KitCache.getInstance().evictInBackground();
       final Agent agent = agentBuilder.get();
       final Executor executor = executorBuilder.apply(agent);
       return new AngelaOrchestrator(agent, executor, portAllocator);
@@ -38,11 +38,14 @@ import java.io.File;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.stream.Collectors.toList;
+import static org.terracotta.angela.common.AngelaProperties.CLIENT_POOL_SIZE;
 import static org.terracotta.angela.common.AngelaProperties.KIT_INSTALLATION_DIR;
 import static org.terracotta.angela.common.AngelaProperties.KIT_INSTALLATION_PATH;
 import static org.terracotta.angela.common.AngelaProperties.OFFLINE;
@@ -63,15 +66,21 @@ public class Client implements Closeable {
   private final InstanceId instanceId;
   private final ClientId clientId;
   private final transient Executor executor;
+  private final boolean pooled;
+  private final boolean jvmOwner;
+  private final String workDir;
   private boolean stopped = false;
   private boolean closed = false;
 
-  private Client(Executor executor, InstanceId instanceId, ClientId clientId, AgentID clientAgentID, AgentID parentAgentID) {
+  private Client(Executor executor, InstanceId instanceId, ClientId clientId, AgentID clientAgentID, AgentID parentAgentID, boolean pooled, boolean jvmOwner, String workDir) {
     this.instanceId = instanceId;
     this.clientId = clientId;
     this.executor = executor;
     this.clientAgentID = clientAgentID;
     this.parentAgentID = parentAgentID;
+    this.pooled = pooled;
+    this.jvmOwner = jvmOwner;
+    this.workDir = workDir;
   }
 
   public AgentID getClientAgentID() {
@@ -86,30 +95,134 @@ public class Client implements Closeable {
     return getClientAgentID().getPid();
   }
 
+  /**
+   * @return true if this client shares its JVM with other clients
+   */
+  boolean isHosted() {
+    return workDir != null;
+  }
+
+  /**
+   * @return false if this client is hosted in the JVM of another client
+   */
+  boolean isJvmOwner() {
+    return jvmOwner;
+  }
+
+  /**
+   * @return the resources consumed so far by the jobs of this client
+   */
+  public ClientResourceUsage getResourceUsage() {
+    return executor.execute(clientAgentID, () -> ClientJobs.usage(instanceId));
+  }
+
   public static Client spawn(Executor executor, InstanceId instanceId, ClientId clientId, ClientArrayConfigurationContext clientArrayConfigurationContext, LocalKitManager localKitManager, TerracottaCommandLineEnvironment tcEnv) {
     final AgentID parentAgentID = executor.getAgentID(clientId.getHostName());
-    logger.info("Spawning client: {} instance: {} through agent: {}; using environment: {}", clientId, instanceId, parentAgentID, tcEnv);
-  
+    List<Path> jars = prepareClasspath(clientArrayConfigurationContext, localKitManager, tcEnv);
+    try {
+      uploadClasspath(executor, parentAgentID, instanceId, jars);
+    } catch (Exception e) {
+      logger.error("Cannot create client: {} through: {}: {}", instanceId, parentAgentID, e.getMessage(), e);
+      throw new RuntimeException(e);
+    }
+    return start(executor, instanceId, clientId, tcEnv);
+  }
+
+  /**
+   * @return the classpath files of the clients to upload to their agents
+   */
+  static List<Path> prepareClasspath(ClientArrayConfigurationContext clientArrayConfigurationContext, LocalKitManager localKitManager, TerracottaCommandLineEnvironment tcEnv) {
     String kitInstallationPath = getEitherOf(KIT_INSTALLATION_DIR, KIT_INSTALLATION_PATH);
     localKitManager.setupLocalInstall(clientArrayConfigurationContext.getLicense(), kitInstallationPath, OFFLINE.getBooleanValue(), tcEnv);
+    return listClasspathFiles(localKitManager);
+  }
+
+  static void uploadClasspath(Executor executor, AgentID parentAgentID, InstanceId instanceId, List<Path> jars) {
+    for (Path jar : jars) {
+      logger.debug("Uploading classpath file : {}", jar.getFileName());
+    }
+    executor.uploadClientJars(parentAgentID, instanceId, jars);
+  }
+
+  /**
+   * Gives a client the classpath already uploaded for another client of the same agent.
+   */
+  static void copyClasspath(Executor executor, AgentID parentAgentID, InstanceId source, InstanceId instanceId) {
+    executor.execute(parentAgentID, (RemoteRunnable) () -> AgentController.getInstance().copyClientClasspath(source, instanceId));
+  }
+
+  /**
+   * Starts a client whose classpath has been uploaded.
+   */
+  static Client start(Executor executor, InstanceId instanceId, ClientId clientId, TerracottaCommandLineEnvironment tcEnv) {
+    return start(executor, instanceId, clientId, tcEnv, false);
+  }
+
+  /**
+   * Starts a client whose classpath has been uploaded.
+   *
+   * @param hosted true if the client must leave room in its JVM for other clients, see {@link #startIn(Client, InstanceId, ClientId)}
+   */
+  static Client start(Executor executor, InstanceId instanceId, ClientId clientId, TerracottaCommandLineEnvironment tcEnv, boolean hosted) {
+    final AgentID parentAgentID = executor.getAgentID(clientId.getHostName());
+    logger.info("Spawning client: {} instance: {} through agent: {}; using environment: {}", clientId, instanceId, parentAgentID, tcEnv);
 
     try {
-      final List<Path> jars = listClasspathFiles(localKitManager);
-      for (Path jar : jars) {
-        logger.debug("Uploading classpath file : {}", jar.getFileName());
-      }
-      executor.uploadClientJars(parentAgentID, instanceId, jars);
       AgentGroup group = executor.getGroup();
-      AgentID clientAgentID = executor.execute(parentAgentID, () -> AgentController.getInstance().spawnClient(instanceId, tcEnv, group));
-      logger.info("Started client: {} instance: {} through agent: {} on agent: {}", clientId, instanceId, parentAgentID, clientAgentID);
+      long start = System.nanoTime();
+      String workDir = hosted ? executor.execute(parentAgentID, () -> AgentController.getInstance().instanceWorkDir(instanceId)) : null;
+      int poolSize = Integer.parseInt(CLIENT_POOL_SIZE.getValue());
+      AgentID clientAgentID = poolSize > 0 ?
+          executor.execute(parentAgentID, () -> AgentController.getInstance().leaseClient(instanceId, tcEnv, group, poolSize)) :
+          executor.execute(parentAgentID, () -> AgentController.getInstance().spawnClient(instanceId, tcEnv, group));
+      boolean pooled = poolSize > 0 && !clientAgentID.isLocal();
+      if (pooled) {
+        try {
+          executor.execute(clientAgentID, (RemoteRunnable) () -> ClientLease.begin(Paths.get("").toAbsolutePath()));
+        } catch (RuntimeException e) {
+          executor.execute(parentAgentID, () -> AgentController.getInstance().releaseClient(instanceId, false));
+          throw e;
+        }
+      }
+      Client client = new Client(executor, instanceId, clientId, clientAgentID, parentAgentID, pooled, true, workDir);
+      if (hosted) {
+        try {
+          executor.execute(clientAgentID, (RemoteRunnable) () -> HostedClient.start(instanceId, Paths.get(workDir)));
+        } catch (RuntimeException e) {
+          client.stop();
+          throw e;
+        }
+      }
+      logger.info("Started client: {} instance: {} through agent: {} on agent: {} in {} ms", clientId, instanceId, parentAgentID, clientAgentID,
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
 
-      return new Client(executor, instanceId, clientId, clientAgentID, parentAgentID);
+      return client;
     } catch (Exception e) {
       logger.error("Cannot create client: {} through: {}: {}", instanceId, parentAgentID, e.getMessage(), e);
       throw new RuntimeException(e);
     }
   }
 
+  /**
+   * Starts a client in the JVM of another client, with its own class loader and working directory.
+   */
+  static Client startIn(Client host, InstanceId instanceId, ClientId clientId) {
+    if (!host.isHosted()) {
+      throw new IllegalArgumentException("Client " + host.getClientId() + " cannot host other clients");
+    }
+    Executor executor = host.executor;
+    AgentID parentAgentID = executor.getAgentID(clientId.getHostName());
+    logger.info("Starting client: {} instance: {} in the JVM of client: {} on agent: {}", clientId, instanceId, host.getClientId(), host.clientAgentID);
+    try {
+      String workDir = executor.execute(parentAgentID, () -> AgentController.getInstance().instanceWorkDir(instanceId));
+      executor.execute(host.clientAgentID, (RemoteRunnable) () -> HostedClient.start(instanceId, Paths.get(workDir)));
+      return new Client(executor, instanceId, clientId, host.clientAgentID, parentAgentID, false, false, workDir);
+    } catch (Exception e) {
+      logger.error("Cannot create client: {} in: {}: {}", instanceId, host.clientAgentID, e.getMessage(), e);
+      throw new RuntimeException(e);
+    }
+  }
+
   private static List<Path> listClasspathFiles(LocalKitManager localKitManager) {
     List<File> files = new ArrayList<>();
 
@@ -127,8 +240,8 @@ public class Client implements Closeable {
       }
       File classpathFile = new File(classpathJarName);
 
-      File equivalentClientJar = localKitManager.equivalentClientJar(classpathFile);
-      if (substituteClientJars && equivalentClientJar != null) {
+      File equivalentClientJar = substituteClientJars ? localKitManager.equivalentClientJar(classpathFile) : null;
+      if (equivalentClientJar != null) {
         logger.debug("Skipping upload of classpath file as kit contains equivalent jar in client libs : {}", classpathFile.getName());
         libs.add(equivalentClientJar);
         continue;
@@ -138,6 +251,7 @@ public class Client implements Closeable {
     }
 
     if (substituteClientJars) {
+      localKitManager.saveBundleSymbolicNames();
       logger.debug("Enhancing client classpath with client jars of {}", localKitManager.getDistribution());
       files.addAll(libs);
       logger.debug("Adding clients jars : {}", libs);
@@ -146,11 +260,30 @@ public class Client implements Closeable {
     return files.stream().map(File::toPath).collect(toList());
   }
 
-  Future<Void> submit(ClientId clientId, ClientJob clientJob) {
+  CompletableFuture<Void> submit(ClientId clientId, ClientJob clientJob) {
     Cluster cluster = executor.getCluster(clientId);
+    InstanceId instanceId = this.instanceId;
+    String workDir = this.workDir;
+    boolean hosted = isHosted();
+    byte[] isolatedJob = pooled || hosted ? ClientJobs.serialize(clientJob) : null;
+    if (isolatedJob != null) {
+      return executor.executeAsync(clientAgentID, () -> {
+        try {
+          if (hosted) {
+            HostedClient.run(instanceId, isolatedJob, cluster);
+          } else {
+            ClientLease.run(instanceId, isolatedJob, cluster);
+          }
+          return null;
+        } catch (Throwable t) {
+          logger.error("clientJob failed", t);
+          throw new IgniteFutureAdapter.RemoteExecutionException("Remote ClientJob failed", exceptionToString(t));
+        }
+      });
+    }
     RemoteCallable<Void> call = () -> {
       try {
-        clientJob.run(cluster);
+        ClientJobs.run(instanceId, clientJob, workDir == null ? cluster : cluster.withWorkingDirectory(Paths.get(workDir)));
         return null;
       } catch (Throwable t) {
         logger.error("clientJob failed", t);
@@ -169,7 +302,7 @@ public class Client implements Closeable {
   }
 
   public RemoteFolder browse(String root) {
-    return new RemoteFolder(executor.forAgent(clientAgentID), null, root);
+    return new RemoteFolder(executor.forAgent(clientAgentID), isHosted() && !Paths.get(root).isAbsolute() ? workDir : null, root);
   }
 
   public InstanceId getInstanceId() {
@@ -211,6 +344,23 @@ public class Client implements Closeable {
     }
     stopped = true;
 
+    if (isHosted()) {
+      logger.info("Stopping client: {} instance: {} hosted on agent: {}", clientId, instanceId, clientAgentID);
+      try {
+        executor.execute(clientAgentID, (RemoteRunnable) () -> HostedClient.stop(instanceId));
+      } catch (Throwable e) {
+        logger.warn("Error stopping client {} hosted on agent {}", clientId, clientAgentID, e);
+      }
+      if (!jvmOwner) {
+        return;
+      }
+    }
+
+    if (pooled) {
+      release();
+      return;
+    }
+
     logger.info("Killing agent: {} for client:{} instance: {} started from: {}", clientAgentID, clientId, instanceId, parentAgentID);
     final int pid = clientAgentID.getPid();
     try {
@@ -221,4 +371,20 @@ public class Client implements Closeable {
       throw e;
     }
   }
+
+  private void release() {
+    logger.info("Releasing agent: {} for client:{} instance: {} started from: {}", clientAgentID, clientId, instanceId, parentAgentID);
+    boolean recycle = true;
+    try {
+      executor.execute(clientAgentID, (RemoteRunnable) ClientLease::end);
+    } catch (Throwable e) {
+      logger.warn("Error cleaning agent {} for client {}: it will not be recycled", clientAgentID, clientId, e);
+      recycle = false;
+    }
+    boolean recycled = recycle;
+    boolean kept = executor.execute(parentAgentID, () -> AgentController.getInstance().releaseClient(instanceId, recycled));
+    if (!kept) {
+      executor.getGroup().getAllAgents().remove(clientAgentID);   // Dead agent -- remove
+    }
+  }
 }
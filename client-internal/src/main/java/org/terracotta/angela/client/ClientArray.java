@@ -16,6 +16,8 @@
  */
 package org.terracotta.angela.client;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.terracotta.angela.agent.AgentController;
 import org.terracotta.angela.agent.com.AgentExecutor;
 import org.terracotta.angela.agent.com.AgentID;
@@ -35,17 +37,30 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+import static org.terracotta.angela.common.AngelaProperties.CLIENTS_PER_JVM;
+import static org.terracotta.angela.common.AngelaProperties.CLIENT_ARRAY_PARALLELISM_PER_HOST;
 import static org.terracotta.angela.common.AngelaProperties.SKIP_UNINSTALL;
 
 /**
  * @author Aurelien Broszniowski
  */
 public class ClientArray implements AutoCloseable {
+  private static final Logger logger = LoggerFactory.getLogger(ClientArray.class);
 
   private final transient Executor executor;
   private final transient Supplier<InstanceId> clientInstanceIdSupplier;
@@ -62,22 +77,109 @@ public class ClientArray implements AutoCloseable {
     installAll();
   }
 
+  /**
+   * Clients are spawned concurrently, by a pool of {@code angela.clientArray.parallelismPerHost} threads per host, so
+   * that at most that many clients are spawned at the same time on each host. The classpath is only uploaded once per host, for the first client, and the other
+   * clients of the host get a copy of it.
+   * <p>
+   * With {@code angela.clientArray.clientsPerJvm} greater than 1, the clients of a host are grouped so that one spawned
+   * JVM hosts several clients, each with its own class loader and working directory.
+   */
   private void installAll() {
-    clientArrayConfigurationContext.getClientArrayTopology().getClientIds().forEach(this::install);
-  }
+    long start = System.nanoTime();
+    Collection<ClientId> clientIds = clientArrayConfigurationContext.getClientArrayTopology().getClientIds();
+    TerracottaCommandLineEnvironment environment = clientArrayConfigurationContext.getTerracottaCommandLineEnvironment();
+    List<Path> classpath = Client.prepareClasspath(clientArrayConfigurationContext, localKitManager, environment);
+    int parallelism = Integer.parseInt(CLIENT_ARRAY_PARALLELISM_PER_HOST.getValue());
+    int clientsPerJvm = Integer.parseInt(CLIENTS_PER_JVM.getValue());
+    if (clientsPerJvm < 1) {
+      throw new IllegalArgumentException(CLIENTS_PER_JVM.getPropertyName() + " must be at least 1, was: " + clientsPerJvm);
+    }
+
+    Map<String, List<ClientId>> clientIdsByHost = clientIds.stream().collect(groupingBy(ClientId::getHostName, LinkedHashMap::new, toList()));
+    List<ExecutorService> pools = new ArrayList<>();
+    List<CompletableFuture<Void>> installs = new ArrayList<>();
+    try {
+      for (List<ClientId> hostClientIds : clientIdsByHost.values()) {
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, r -> {
+          Thread thread = new Thread(r, "client-array-install-" + hostClientIds.get(0).getHostName());
+          thread.setDaemon(true);
+          return thread;
+        });
+        pools.add(pool);
+        List<InstanceId> instanceIds = hostClientIds.stream().map(clientId -> clientInstanceIdSupplier.get()).collect(toList());
+        AgentID parentAgentID = executor.getAgentID(hostClientIds.get(0).getHostName());
+        CompletableFuture<Void> upload = CompletableFuture.runAsync(() -> Client.uploadClasspath(executor, parentAgentID, instanceIds.get(0), classpath), pool);
+        for (int i = 0; i < hostClientIds.size(); i += clientsPerJvm) {
+          ClientId clientId = hostClientIds.get(i);
+          InstanceId instanceId = instanceIds.get(i);
+          CompletableFuture<Client> owner = upload.thenApplyAsync(v -> {
+            if (!instanceId.equals(instanceIds.get(0))) {
+              Client.copyClasspath(executor, parentAgentID, instanceIds.get(0), instanceId);
+            }
+            Client client = Client.start(executor, instanceId, clientId, environment, clientsPerJvm > 1);
+            synchronized (clients) {
+              clients.put(clientId, client);
+            }
+            return client;
+          }, pool);
+          installs.add(owner.thenApply(client -> null));
 
-  private Client install(ClientId clientId) {
-    final InstanceId clientInstanceId = clientInstanceIdSupplier.get();
-    final TerracottaCommandLineEnvironment environment = clientArrayConfigurationContext.getTerracottaCommandLineEnvironment();
-    Client client = Client.spawn(executor, clientInstanceId, clientId, clientArrayConfigurationContext, localKitManager, environment);
-    clients.put(clientId, client);
-    return client;
+          for (int j = i + 1; j < Math.min(i + clientsPerJvm, hostClientIds.size()); j++) {
+            ClientId hostedClientId = hostClientIds.get(j);
+            InstanceId hostedInstanceId = instanceIds.get(j);
+            installs.add(owner.thenAcceptAsync(host -> {
+              Client client = Client.startIn(host, hostedInstanceId, hostedClientId);
+              synchronized (clients) {
+                clients.put(hostedClientId, client);
+              }
+            }, pool));
+          }
+        }
+      }
+
+      // the failure of an upload fails all the clients of its host: only report it once
+      Set<Throwable> exceptions = Collections.newSetFromMap(new IdentityHashMap<>());
+      for (CompletableFuture<Void> install : installs) {
+        try {
+          install.get();
+        } catch (ExecutionException e) {
+          exceptions.add(e.getCause());
+        } catch (InterruptedException e) {
+          // the queued installs are dropped and the running ones interrupted, then the clients already spawned are
+          // uninstalled before the interruption is propagated
+          installs.forEach(future -> future.cancel(true));
+          pools.forEach(ExecutorService::shutdownNow);
+          RuntimeException ex = new RuntimeException("Interrupted while installing the clients", e);
+          try {
+            uninstallAll();
+          } catch (RuntimeException ue) {
+            ex.addSuppressed(ue);
+          }
+          Thread.currentThread().interrupt();
+          throw ex;
+        }
+      }
+      if (!exceptions.isEmpty()) {
+        RuntimeException ex = new RuntimeException("Error installing some clients");
+        exceptions.forEach(ex::addSuppressed);
+        try {
+          uninstallAll();
+        } catch (RuntimeException e) {
+          ex.addSuppressed(e);
+        }
+        throw ex;
+      }
+    } finally {
+      pools.forEach(ExecutorService::shutdown);
+    }
+    logger.info("Installed {} clients in {} ms", clientIds.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
   }
 
   private void uninstallAll() {
     List<Exception> exceptions = new ArrayList<>();
 
-    for (ClientId clientId : clientArrayConfigurationContext.getClientArrayTopology().getClientIds()) {
+    for (ClientId clientId : hostedClientsFirst()) {
       try {
         uninstall(clientId);
       } catch (Exception ioe) {
@@ -92,6 +194,20 @@ public class ClientArray implements AutoCloseable {
     }
   }
 
+  /**
+   * @return the client ids, the clients hosted in the JVM of another client coming before the owners of the JVMs
+   */
+  private List<ClientId> hostedClientsFirst() {
+    List<ClientId> clientIds = new ArrayList<>();
+    List<ClientId> owners = new ArrayList<>();
+    for (ClientId clientId : clientArrayConfigurationContext.getClientArrayTopology().getClientIds()) {
+      Client client = clients.get(clientId);
+      (client == null || client.isJvmOwner() ? owners : clientIds).add(clientId);
+    }
+    clientIds.addAll(owners);
+    return clientIds;
+  }
+
   private void uninstall(ClientId clientId) {
     Client client = clients.get(clientId);
     try {
@@ -115,7 +231,7 @@ public class ClientArray implements AutoCloseable {
   public void stopAll() throws IOException {
     List<Exception> exceptions = new ArrayList<>();
 
-    for (ClientId clientId : clientArrayConfigurationContext.getClientArrayTopology().getClientIds()) {
+    for (ClientId clientId : hostedClientsFirst()) {
       try {
         stop(clientId);
       } catch (Exception e) {
@@ -155,7 +271,7 @@ public class ClientArray implements AutoCloseable {
     return new ClientArrayFuture(futures);
   }
 
-  public Future<Void> executeOn(ClientId clientId, ClientJob clientJob) {
+  public CompletableFuture<Void> executeOn(ClientId clientId, ClientJob clientJob) {
     return clients.get(clientId).submit(clientId, clientJob);
   }
 
@@ -22,23 +22,109 @@ import org.terracotta.angela.agent.com.IgniteFutureAdapter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import static java.util.stream.Collectors.toList;
+
 public class ClientArrayFuture implements Future<Void> {
   private final Collection<Future<Void>> futures;
+  private final List<CompletableFuture<Void>> stages;
+  private final CompletableFuture<Void> all;
 
   public ClientArrayFuture(Collection<Future<Void>> futures) {
     this.futures = futures;
+    this.stages = futures.stream().map(ClientArrayFuture::toStage).collect(toList());
+    this.all = CompletableFuture.allOf(stages.toArray(new CompletableFuture<?>[0])).handle((v, e) -> {
+      List<Throwable> failures = stages.stream().map(ClientArrayFuture::failure).filter(Objects::nonNull).collect(toList());
+      if (failures.isEmpty()) {
+        return null;
+      }
+      // the failures of the jobs are shared with their own futures: they are suppressed in the wrapper instead
+      CompletionException failure = new CompletionException(failures.get(0));
+      for (int i = 1; i < failures.size(); i++) {
+        Throwable t = failures.get(i);
+        if (t instanceof IgniteFutureAdapter.RemoteExecutionException) {
+          ((IgniteFutureAdapter.RemoteExecutionException) t).setRemoteStackTraceIndentation(2);
+        }
+        failure.addSuppressed(t);
+      }
+      throw failure;
+    });
   }
 
   public Collection<Future<Void>> getFutures() {
     return futures;
   }
 
+  /**
+   * @return a future completed when all the jobs are done, failed with the failure of the first failed job, the other
+   * failures being suppressed in the {@link CompletionException} wrapping it
+   */
+  public CompletableFuture<Void> allOf() {
+    return all.thenApply(v -> v);
+  }
+
+  /**
+   * @return a future completed, or failed, as soon as one of the jobs is done
+   */
+  public CompletableFuture<Void> anyOf() {
+    if (stages.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return CompletableFuture.anyOf(stages.toArray(new CompletableFuture<?>[0])).thenApply(v -> null);
+  }
+
+  /**
+   * @return a future failed as soon as one of the jobs fails, or completed when all the jobs have succeeded
+   */
+  public CompletableFuture<Void> firstFailure() {
+    CompletableFuture<Void> result = new CompletableFuture<>();
+    for (CompletableFuture<Void> stage : stages) {
+      stage.whenComplete((v, e) -> {
+        if (e != null) {
+          result.completeExceptionally(e instanceof CompletionException ? e.getCause() : e);
+        }
+      });
+    }
+    all.whenComplete((v, e) -> result.complete(null));
+    return result;
+  }
+
+  private static CompletableFuture<Void> toStage(Future<Void> future) {
+    if (future instanceof CompletableFuture) {
+      return (CompletableFuture<Void>) future;
+    }
+    // not composable: a thread has to wait for it
+    return CompletableFuture.runAsync(() -> {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        throw new CompletionException(e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new CompletionException(e);
+      }
+    });
+  }
+
+  private static Throwable failure(CompletableFuture<Void> stage) {
+    try {
+      stage.join();
+      return null;
+    } catch (CompletionException e) {
+      return e.getCause();
+    } catch (CancellationException e) {
+      return e;
+    }
+  }
+
   @SuppressFBWarnings("RCN_REDUNDANT_NULLCHECK_OF_NONNULL_VALUE")
   @Override
   public Void get(long timeout, TimeUnit unit) throws CancellationException, ExecutionException, InterruptedException, TimeoutException {
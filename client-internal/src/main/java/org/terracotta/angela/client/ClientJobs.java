@@ -0,0 +1,236 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.client;
+
+import org.apache.ignite.Ignite;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terracotta.angela.agent.Agent;
+import org.terracotta.angela.common.clientconfig.ClientId;
+import org.terracotta.angela.common.cluster.Cluster;
+import org.terracotta.angela.common.topology.InstanceId;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the client jobs in the client JVMs, accounting the CPU time and memory they use per client, and isolates them
+ * in class loaders of their own when the JVM is leased from a pool or shared by several clients.
+ */
+final class ClientJobs {
+  private static final Logger logger = LoggerFactory.getLogger(ClientJobs.class);
+
+  // classes which must be the same ones for the agent and for the jobs, identified by where they are loaded from
+  private static final Class<?>[] SHARED_CLASSES = {Agent.class, Cluster.class, ClientId.class, ClientJob.class, Ignite.class, Logger.class};
+  // packages always loaded by the JVM, whatever the classpath entries they are in (i.e. the Angela classes the jobs
+  // exchange with the agent, like the ids of the clients, are split across several modules)
+  private static final String[] SHARED_PACKAGES = {"java.", "org.terracotta.angela.common.", "org.terracotta.angela.agent.",
+      "org.apache.ignite.", "org.slf4j."};
+
+  private static final Map<InstanceId, Usage> USAGES = new ConcurrentHashMap<>();
+
+  private ClientJobs() {
+  }
+
+  /**
+   * Runs a job of a client in the current thread, accounting what it uses.
+   */
+  static void run(InstanceId instanceId, ClientJob job, Cluster cluster) throws Exception {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    boolean cpuTime = threads.isCurrentThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+    long cpuTimeBefore = cpuTime ? threads.getCurrentThreadCpuTime() : 0L;
+    long allocatedBytesBefore = allocatedBytes(threads);
+    try {
+      job.run(cluster);
+    } finally {
+      Usage usage = USAGES.computeIfAbsent(instanceId, id -> new Usage());
+      usage.jobCount.incrementAndGet();
+      if (cpuTime) {
+        usage.cpuTime.addAndGet(threads.getCurrentThreadCpuTime() - cpuTimeBefore);
+      }
+      long allocatedBytesAfter = allocatedBytes(threads);
+      if (allocatedBytesBefore >= 0 && allocatedBytesAfter >= 0) {
+        usage.allocatedBytes.addAndGet(allocatedBytesAfter - allocatedBytesBefore);
+      }
+    }
+  }
+
+  /**
+   * @return what the jobs of a client have used so far in this JVM
+   */
+  static ClientResourceUsage usage(InstanceId instanceId) {
+    Usage usage = USAGES.getOrDefault(instanceId, new Usage());
+    return new ClientResourceUsage(usage.jobCount.get(), Duration.ofNanos(usage.cpuTime.get()), usage.allocatedBytes.get());
+  }
+
+  static void forget(InstanceId instanceId) {
+    USAGES.remove(instanceId);
+  }
+
+  private static long allocatedBytes(ThreadMXBean threads) {
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean hotspotThreads = (com.sun.management.ThreadMXBean) threads;
+      if (hotspotThreads.isThreadAllocatedMemorySupported() && hotspotThreads.isThreadAllocatedMemoryEnabled()) {
+        return hotspotThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return -1L;
+  }
+
+  /**
+   * @return the serialized job, to be deserialized in an isolated class loader, or null if the job cannot be
+   * serialized without Ignite
+   */
+  static byte[] serialize(ClientJob job) {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+      oos.writeObject(job);
+    } catch (IOException e) {
+      logger.warn("Client job cannot be isolated and will share the static state of its JVM: {}", e.toString());
+      return null;
+    }
+    return baos.toByteArray();
+  }
+
+  static ClientJob deserialize(byte[] job, ClassLoader classLoader) throws IOException, ClassNotFoundException {
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(job)) {
+      @Override
+      protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+        return Class.forName(desc.getName(), false, classLoader);
+      }
+    }) {
+      return (ClientJob) ois.readObject();
+    }
+  }
+
+  /**
+   * @return a class loader which loads the test classes and their dependencies again, so that they have their own
+   * static state. Only Angela, Ignite and the logging classes are shared with the JVM. Used by the pooled and the
+   * hosted clients.
+   */
+  static URLClassLoader newIsolatedClassLoader() {
+    return new IsolatedClassLoader(isolatedClasspath(), ClientJobs.class.getClassLoader());
+  }
+
+  /**
+   * @return the classpath of this JVM, without the entries of the shared classes
+   */
+  private static URL[] isolatedClasspath() {
+    Set<Path> shared = new HashSet<>();
+    for (Class<?> sharedClass : SHARED_CLASSES) {
+      CodeSource codeSource = sharedClass.getProtectionDomain().getCodeSource();
+      if (codeSource != null) {
+        try {
+          shared.add(Paths.get(codeSource.getLocation().toURI()).toAbsolutePath().normalize());
+        } catch (URISyntaxException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    }
+    List<URL> urls = new ArrayList<>();
+    for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+      Path path = Paths.get(entry).toAbsolutePath().normalize();
+      if (!entry.isEmpty() && !shared.contains(path)) {
+        try {
+          urls.add(path.toUri().toURL());
+        } catch (MalformedURLException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+    return urls.toArray(new URL[0]);
+  }
+
+  private static class Usage {
+    final AtomicLong jobCount = new AtomicLong();
+    final AtomicLong cpuTime = new AtomicLong();
+    final AtomicLong allocatedBytes = new AtomicLong();
+  }
+
+  /**
+   * Child-first class loader: the classes of its classpath are loaded again, the other ones and the classes of the
+   * shared packages by the JVM.
+   */
+  private static class IsolatedClassLoader extends URLClassLoader {
+    static {
+      ClassLoader.registerAsParallelCapable();
+    }
+
+    IsolatedClassLoader(URL[] urls, ClassLoader parent) {
+      super(urls, parent);
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      synchronized (getClassLoadingLock(name)) {
+        Class<?> c = findLoadedClass(name);
+        if (c == null && !isShared(name)) {
+          try {
+            c = findClass(name);
+          } catch (ClassNotFoundException e) {
+            // not in the isolated classpath
+          }
+        }
+        if (c == null) {
+          return super.loadClass(name, resolve);
+        }
+        if (resolve) {
+          resolveClass(c);
+        }
+        return c;
+      }
+    }
+
+    private static boolean isShared(String className) {
+      for (String sharedPackage : SHARED_PACKAGES) {
+        if (className.startsWith(sharedPackage)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public URL getResource(String name) {
+      URL url = findResource(name);
+      return url != null ? url : super.getResource(name);
+    }
+  }
+}
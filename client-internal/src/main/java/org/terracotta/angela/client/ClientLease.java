@@ -0,0 +1,121 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.client;
+
+import org.terracotta.angela.common.cluster.Cluster;
+import org.terracotta.angela.common.topology.InstanceId;
+import org.terracotta.angela.common.util.FileUtils;
+
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Isolation of the clients running in a JVM leased from a client pool (see {@code angela.clientPool.size}).
+ * <p>
+ * While a JVM is leased, the client jobs are run in a class loader of the lease, which loads the test classes and
+ * their dependencies again, so that their static state does not leak from a lease to the next. When the lease ends,
+ * the system properties are restored and the files created in the working directory are deleted.
+ */
+final class ClientLease {
+  private static ClientLease current;
+
+  private final Path workDir;
+  private final Set<Path> workDirContent;
+  private final Properties systemProperties;
+  private final URLClassLoader classLoader;
+
+  private ClientLease(Path workDir) throws IOException {
+    this.workDir = workDir;
+    try (Stream<Path> list = Files.list(workDir)) {
+      this.workDirContent = list.collect(toSet());
+    }
+    this.systemProperties = (Properties) System.getProperties().clone();
+    this.classLoader = ClientJobs.newIsolatedClassLoader();
+  }
+
+  /**
+   * Starts the lease of this JVM by a client.
+   *
+   * @param workDir the working directory of the JVM
+   */
+  static synchronized void begin(Path workDir) throws IOException {
+    if (current != null) {
+      throw new IllegalStateException("Client JVM is already leased");
+    }
+    current = new ClientLease(workDir);
+  }
+
+  /**
+   * Ends the current lease, restoring the state of the JVM.
+   */
+  static synchronized void end() throws IOException {
+    if (current == null) {
+      return;
+    }
+    try {
+      current.close();
+    } finally {
+      current = null;
+    }
+  }
+
+  /**
+   * Runs a job serialized with {@link ClientJobs#serialize(ClientJob)} in the class loader of the current lease.
+   */
+  static void run(InstanceId instanceId, byte[] job, Cluster cluster) throws Exception {
+    ClientLease lease;
+    synchronized (ClientLease.class) {
+      lease = current;
+    }
+    if (lease == null) {
+      throw new IllegalStateException("Client JVM is not leased");
+    }
+    Thread thread = Thread.currentThread();
+    ClassLoader contextClassLoader = thread.getContextClassLoader();
+    thread.setContextClassLoader(lease.classLoader);
+    try {
+      ClientJobs.run(instanceId, ClientJobs.deserialize(job, lease.classLoader), cluster);
+    } finally {
+      thread.setContextClassLoader(contextClassLoader);
+    }
+  }
+
+  private void close() throws IOException {
+    Properties properties = System.getProperties();
+    for (String name : properties.stringPropertyNames()) {
+      if (!systemProperties.containsKey(name)) {
+        properties.remove(name);
+      }
+    }
+    properties.putAll(systemProperties);
+
+    try {
+      classLoader.close();
+    } finally {
+      try (Stream<Path> list = Files.list(workDir)) {
+        list.filter(path -> !workDirContent.contains(path)).forEach(FileUtils::deleteTree);
+      }
+    }
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.client;
+
+import java.io.Serializable;
+import java.time.Duration;
+
+/**
+ * What the jobs of a client have used in its JVM: the CPU time and the memory allocated by the threads running them.
+ * Threads started by the jobs themselves are not accounted.
+ */
+public class ClientResourceUsage implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private final long jobCount;
+  private final Duration cpuTime;
+  private final long allocatedBytes;
+
+  public ClientResourceUsage(long jobCount, Duration cpuTime, long allocatedBytes) {
+    this.jobCount = jobCount;
+    this.cpuTime = cpuTime;
+    this.allocatedBytes = allocatedBytes;
+  }
+
+  public long getJobCount() {
+    return jobCount;
+  }
+
+  public Duration getCpuTime() {
+    return cpuTime;
+  }
+
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  @Override
+  public String toString() {
+    return "ClientResourceUsage{" +
+        "jobCount=" + jobCount +
+        ", cpuTime=" + cpuTime +
+        ", allocatedBytes=" + allocatedBytes +
+        '}';
+  }
+}
@@ -42,7 +42,6 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -64,19 +63,21 @@ public class ClusterFactory implements AutoCloseable {
   private final List<AutoCloseable> controllers = new ArrayList<>();
   private final Executor executor;
   private final PortAllocator portAllocator;
+  private final KitPrefetcher kitPrefetcher;
   private final String idPrefix;
   private final AtomicInteger instanceIndex;
   private final ConfigurationContext configurationContext;
 
   private InstanceId monitorInstanceId;
 
-  ClusterFactory(Executor executor, PortAllocator portAllocator, String idPrefix, ConfigurationContext configurationContext) {
+  ClusterFactory(Executor executor, PortAllocator portAllocator, KitPrefetcher kitPrefetcher, String idPrefix, ConfigurationContext configurationContext) {
     // Using UTC to have consistent layout even in case of timezone skew between client and server.
     this.idPrefix = idPrefix + "-" + LocalDateTime.now(ZoneId.of("UTC")).format(PATH_FORMAT);
     this.instanceIndex = new AtomicInteger();
     this.configurationContext = configurationContext;
     this.executor = executor;
     this.portAllocator = portAllocator;
+    this.kitPrefetcher = kitPrefetcher;
   }
 
   private synchronized InstanceId init(String type, Collection<String> hostnames) {
@@ -88,12 +89,9 @@ public class ClusterFactory implements AutoCloseable {
     }
 
     // ensure agents are started on the configured hostnames
-    final List<AgentID> agentIDS = hostnames.stream()
-        .filter(hostname -> !executor.findAgentID(hostname).isPresent()) // no agent built for a hostname ?
-        .map(executor::startRemoteAgent) // then try spawn one
-        .filter(Optional::isPresent) //
-        .map(Optional::get)
-        .collect(toList());
+    final List<AgentID> agentIDS = executor.startRemoteAgents(hostnames.stream()
+        .filter(hostname -> !executor.findAgentID(hostname).isPresent()) // no agent built for a hostname ? then try spawn one
+        .collect(toList()));
 
     if (!agentIDS.isEmpty()) {
       logger.info("Spawned agents: {}", agentIDS);
@@ -113,7 +111,7 @@ public class ClusterFactory implements AutoCloseable {
     }
     InstanceId instanceId = init(TSA, tsaConfigurationContext.getTopology().getServersHostnames());
 
-    Tsa tsa = new Tsa(executor, portAllocator, instanceId, tsaConfigurationContext);
+    Tsa tsa = new Tsa(executor, portAllocator, kitPrefetcher, instanceId, tsaConfigurationContext);
     controllers.add(tsa);
     return tsa;
   }
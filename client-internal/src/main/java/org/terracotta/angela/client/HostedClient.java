@@ -0,0 +1,82 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.client;
+
+import org.terracotta.angela.common.cluster.Cluster;
+import org.terracotta.angela.common.topology.InstanceId;
+
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A client sharing its JVM with other clients (see {@code angela.clientArray.clientsPerJvm}): its jobs are run in a
+ * class loader of its own, and are given its own working directory through {@link Cluster#getWorkingDirectory()}.
+ */
+final class HostedClient {
+  private static final Map<InstanceId, HostedClient> CLIENTS = new ConcurrentHashMap<>();
+
+  private final Path workDir;
+  private final URLClassLoader classLoader;
+
+  private HostedClient(Path workDir) {
+    this.workDir = workDir;
+    this.classLoader = ClientJobs.newIsolatedClassLoader();
+  }
+
+  /**
+   * Makes this JVM host a client.
+   *
+   * @param workDir the working directory of the client
+   */
+  static void start(InstanceId instanceId, Path workDir) throws IOException {
+    Files.createDirectories(workDir);
+    HostedClient previous = CLIENTS.putIfAbsent(instanceId, new HostedClient(workDir));
+    if (previous != null) {
+      throw new IllegalStateException("Client " + instanceId + " is already hosted");
+    }
+  }
+
+  static void stop(InstanceId instanceId) throws IOException {
+    HostedClient client = CLIENTS.remove(instanceId);
+    ClientJobs.forget(instanceId);
+    if (client != null) {
+      client.classLoader.close();
+    }
+  }
+
+  /**
+   * Runs a job serialized with {@link ClientJobs#serialize(ClientJob)} in the class loader of the client.
+   */
+  static void run(InstanceId instanceId, byte[] job, Cluster cluster) throws Exception {
+    HostedClient client = CLIENTS.get(instanceId);
+    if (client == null) {
+      throw new IllegalStateException("Client " + instanceId + " is not hosted by this JVM");
+    }
+    Thread thread = Thread.currentThread();
+    ClassLoader contextClassLoader = thread.getContextClassLoader();
+    thread.setContextClassLoader(client.classLoader);
+    try {
+      ClientJobs.run(instanceId, ClientJobs.deserialize(job, client.classLoader), cluster.withWorkingDirectory(client.workDir));
+    } finally {
+      thread.setContextClassLoader(contextClassLoader);
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terracotta.angela.agent.com.AgentID;
+import org.terracotta.angela.agent.com.Executor;
+import org.terracotta.angela.agent.kit.LocalKitManager;
+import org.terracotta.angela.agent.kit.RemoteKitManager;
+import org.terracotta.angela.common.TerracottaCommandLineEnvironment;
+import org.terracotta.angela.common.distribution.Distribution;
+import org.terracotta.angela.common.net.PortAllocator;
+import org.terracotta.angela.common.tcconfig.License;
+import org.terracotta.angela.common.topology.InstanceId;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.stream.Collectors.toList;
+import static org.terracotta.angela.common.AngelaProperties.KIT_COPY;
+import static org.terracotta.angela.common.AngelaProperties.KIT_INSTALLATION_DIR;
+import static org.terracotta.angela.common.AngelaProperties.KIT_INSTALLATION_PATH;
+import static org.terracotta.angela.common.AngelaProperties.OFFLINE;
+import static org.terracotta.angela.common.AngelaProperties.getEitherOf;
+import static org.terracotta.angela.common.topology.PackageType.SAG_INSTALLER;
+
+/**
+ * Downloads, extracts and pushes kits to agents ahead of the installs. An install of a distribution being prefetched
+ * waits for the prefetch to complete, and then finds the kit where it needs it.
+ */
+class KitPrefetcher implements AutoCloseable {
+  private static final Logger logger = LoggerFactory.getLogger(KitPrefetcher.class);
+
+  private final Executor executor;
+  private final PortAllocator portAllocator;
+  private final Map<Distribution, CompletableFuture<Void>> prefetches = new ConcurrentHashMap<>();
+  private final ExecutorService pool;
+
+  KitPrefetcher(Executor executor, PortAllocator portAllocator) {
+    this.executor = executor;
+    this.portAllocator = portAllocator;
+    AtomicInteger counter = new AtomicInteger();
+    this.pool = Executors.newCachedThreadPool(r -> {
+      Thread thread = new Thread(r, "kit-prefetch-" + counter.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * @param license the license the kit is installed with, null if unknown. The install of a SAG installer needs it:
+   *                such a distribution is not prefetched without it
+   */
+  CompletableFuture<Void> prefetch(Collection<String> hostnames, Distribution distribution, License license) {
+    if (license == null && distribution.getPackageType() == SAG_INSTALLER) {
+      logger.info("Not prefetching: {}: its install needs a license", distribution);
+      return CompletableFuture.completedFuture(null);
+    }
+    CompletableFuture<Void> future = CompletableFuture.runAsync(() -> fetch(hostnames, distribution, license), pool);
+    prefetches.merge(distribution, future, CompletableFuture::allOf);
+    return future;
+  }
+
+  /**
+   * Waits for the prefetch of a distribution, if any. A failed prefetch is only logged: the install will do the work
+   * again and report the failure.
+   */
+  void await(Distribution distribution) {
+    CompletableFuture<Void> future = prefetches.get(distribution);
+    if (future != null) {
+      logger.debug("Waiting for the prefetch of: {}", distribution);
+      try {
+        future.join();
+      } catch (RuntimeException e) {
+        logger.warn("Prefetch of: {} failed: {}", distribution, e.getMessage());
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    pool.shutdownNow();
+  }
+
+  private void fetch(Collection<String> hostnames, Distribution distribution, License license) {
+    logger.info("Prefetching: {} for: {}", distribution, hostnames);
+    String kitInstallationPath = getEitherOf(KIT_INSTALLATION_DIR, KIT_INSTALLATION_PATH);
+    LocalKitManager localKitManager = new LocalKitManager(portAllocator, distribution);
+    localKitManager.setupLocalInstall(license, kitInstallationPath, OFFLINE.getBooleanValue(), TerracottaCommandLineEnvironment.DEFAULT);
+    if (kitInstallationPath != null && !KIT_COPY.getBooleanValue()) {
+      return; // the agents use the kit where it is
+    }
+    InstanceId instanceId = new InstanceId(UUID.randomUUID().toString(), "prefetch");
+    String kitInstallationName = localKitManager.getKitInstallationName();
+    executor.startRemoteAgents(hostnames.stream()
+        .filter(hostname -> !executor.findAgentID(hostname).isPresent())
+        .collect(toList()));
+    List<AgentID> agentIDs = hostnames.stream()
+        .distinct()
+        .map(executor::getAgentID)
+        .distinct()
+        .filter(agentID -> !executor.execute(agentID, () -> new RemoteKitManager(instanceId, distribution, kitInstallationName).isKitAvailable()))
+        .collect(toList());
+    if (!agentIDs.isEmpty()) {
+      executor.uploadKit(agentIDs, instanceId, distribution, kitInstallationName, localKitManager.getKitInstallationPath());
+    }
+    logger.info("Prefetched: {}", distribution);
+  }
+}
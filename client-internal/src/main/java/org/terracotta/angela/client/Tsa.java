@@ -21,8 +21,10 @@ import org.slf4j.LoggerFactory;
 import org.terracotta.angela.agent.AgentController;
 import org.terracotta.angela.agent.com.AgentExecutor;
 import org.terracotta.angela.agent.com.AgentID;
+import org.terracotta.angela.agent.com.Batch;
 import org.terracotta.angela.agent.com.Executor;
 import org.terracotta.angela.agent.kit.LocalKitManager;
+import org.terracotta.angela.agent.kit.RemoteKitManager;
 import org.terracotta.angela.client.config.TsaConfigurationContext;
 import org.terracotta.angela.client.filesystem.RemoteFolder;
 import org.terracotta.angela.client.net.DisruptionController;
@@ -50,9 +52,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 import static java.util.EnumSet.of;
@@ -81,16 +86,24 @@ public class Tsa implements AutoCloseable {
   private final transient DisruptionController disruptionController;
   private final transient TsaConfigurationContext tsaConfigurationContext;
   private final transient LocalKitManager localKitManager;
+  private final transient KitPrefetcher kitPrefetcher;
   private final transient PortAllocator portAllocator;
+  private final transient TsaStates states;
   private boolean closed = false;
 
   Tsa(Executor executor, PortAllocator portAllocator, InstanceId instanceId, TsaConfigurationContext tsaConfigurationContext) {
+    this(executor, portAllocator, null, instanceId, tsaConfigurationContext);
+  }
+
+  Tsa(Executor executor, PortAllocator portAllocator, KitPrefetcher kitPrefetcher, InstanceId instanceId, TsaConfigurationContext tsaConfigurationContext) {
     this.portAllocator = portAllocator;
+    this.kitPrefetcher = kitPrefetcher;
     this.tsaConfigurationContext = tsaConfigurationContext;
     this.instanceId = instanceId;
     this.executor = executor;
     this.disruptionController = new DisruptionController(executor, instanceId, tsaConfigurationContext.getTopology());
     this.localKitManager = new LocalKitManager(portAllocator, tsaConfigurationContext.getTopology().getDistribution());
+    this.states = new TsaStates(executor, instanceId);
     installAll();
   }
 
@@ -123,11 +136,35 @@ public class Tsa implements AutoCloseable {
   void installAll() {
     Topology topology = tsaConfigurationContext.getTopology();
     ConfigurationManager configurationManager = topology.getConfigurationManager();
+    uploadKit(configurationManager.getServers());
     for (TerracottaServer terracottaServer : configurationManager.getServers()) {
       install(terracottaServer, topology);
     }
   }
 
+  /**
+   * Sends the kit in one go to all the agents missing it, so that they can forward it to each other
+   * instead of each of them receiving it from the orchestrator during its server install.
+   */
+  private void uploadKit(Collection<TerracottaServer> servers) {
+    String kitInstallationPath = getEitherOf(KIT_INSTALLATION_DIR, KIT_INSTALLATION_PATH);
+    if (kitInstallationPath != null && !KIT_COPY.getBooleanValue()) {
+      return;
+    }
+    Distribution distribution = localKitManager.getDistribution();
+    awaitPrefetch(distribution);
+    localKitManager.setupLocalInstall(tsaConfigurationContext.getLicense(), kitInstallationPath, OFFLINE.getBooleanValue(), tsaConfigurationContext.getTerracottaCommandLineEnvironment("install"));
+    final String kitInstallationName = localKitManager.getKitInstallationName();
+    List<AgentID> agentIDs = servers.stream()
+        .map(server -> executor.getAgentID(server.getHostName()))
+        .distinct()
+        .filter(agentID -> !executor.execute(agentID, () -> new RemoteKitManager(instanceId, distribution, kitInstallationName).isKitAvailable()))
+        .collect(Collectors.toList());
+    if (!agentIDs.isEmpty()) {
+      executor.uploadKit(agentIDs, instanceId, distribution, kitInstallationName, localKitManager.getKitInstallationPath());
+    }
+  }
+
   void install(TerracottaServer terracottaServer, Topology topology) {
     installWithKitManager(terracottaServer, topology, this.localKitManager);
   }
@@ -142,6 +179,7 @@ public class Tsa implements AutoCloseable {
       throw new IllegalStateException("Cannot install: server " + terracottaServer.getServerSymbolicName() + " in state " + terracottaServerState);
     }
     Distribution distribution = localKitManager.getDistribution();
+    awaitPrefetch(distribution);
 
     License license = tsaConfigurationContext.getLicense();
 
@@ -171,6 +209,13 @@ public class Tsa implements AutoCloseable {
       // To end up here, KIT_COPY should be false
       executor.execute(agentID, () -> AgentController.getInstance().installTsa(instanceId, terracottaServer, license, kitInstallationName, distribution, topology, kitInstallationPath));
     }
+    states.listen(terracottaServer);
+  }
+
+  private void awaitPrefetch(Distribution distribution) {
+    if (kitPrefetcher != null) {
+      kitPrefetcher.await(distribution);
+    }
   }
 
   public Tsa upgrade(TerracottaServer server, Distribution newDistribution) {
@@ -182,10 +227,17 @@ public class Tsa implements AutoCloseable {
   }
 
   private void uninstallAll() {
-    Topology topology = tsaConfigurationContext.getTopology();
-    for (TerracottaServer terracottaServer : topology.getServers()) {
-      uninstall(terracottaServer);
-    }
+    // one job per agent uninstalling all its servers
+    Map<AgentID, Batch> batches = new LinkedHashMap<>();
+    getStates().forEach((terracottaServer, terracottaServerState) -> {
+      if (terracottaServerState == null) {
+        return;
+      }
+      final AgentID agentID = executor.getAgentID(terracottaServer.getHostName());
+      batches.computeIfAbsent(agentID, executor::batch).add(uninstaller(terracottaServer, terracottaServerState));
+    });
+    batches.values().forEach(Batch::execute);
+    tsaConfigurationContext.getTopology().getServers().forEach(terracottaServer -> states.update(terracottaServer, TerracottaServerState.NOT_INSTALLED));
   }
 
   private void uninstall(TerracottaServer terracottaServer) {
@@ -193,6 +245,12 @@ public class Tsa implements AutoCloseable {
     if (terracottaServerState == null) {
       return;
     }
+    final AgentID agentID = executor.getAgentID(terracottaServer.getHostName());
+    executor.execute(agentID, uninstaller(terracottaServer, terracottaServerState));
+    states.update(terracottaServer, TerracottaServerState.NOT_INSTALLED);
+  }
+
+  private RemoteRunnable uninstaller(TerracottaServer terracottaServer, TerracottaServerState terracottaServerState) {
     if (terracottaServerState != TerracottaServerState.STOPPED) {
       throw new IllegalStateException("Cannot uninstall: server " + terracottaServer.getServerSymbolicName() + " in state " + terracottaServerState);
     }
@@ -204,8 +262,7 @@ public class Tsa implements AutoCloseable {
 
     logger.info("Uninstalling TSA: {} from: {}", instanceId, agentID);
 
-    RemoteRunnable uninstaller = () -> AgentController.getInstance().uninstallTsa(instanceId, topology, terracottaServer, kitInstallationName, kitInstallationPath);
-    executor.execute(agentID, uninstaller);
+    return () -> AgentController.getInstance().uninstallTsa(instanceId, topology, terracottaServer, kitInstallationName, kitInstallationPath);
   }
 
   public Tsa createAll(String... startUpArgs) {
@@ -230,22 +287,30 @@ public class Tsa implements AutoCloseable {
   }
 
   public Tsa create(TerracottaServer terracottaServer, Map<String, String> envOverrides, String... startUpArgs) {
+    Batch batch = executor.batch(executor.getAgentID(terracottaServer.getHostName()));
+    create(terracottaServer, envOverrides, startUpArgs, batch);
+    batch.execute();
+    return this;
+  }
+
+  /**
+   * Adds the creation of the server to a batch, if it is not already running.
+   */
+  private void create(TerracottaServer terracottaServer, Map<String, String> envOverrides, String[] startUpArgs, Batch batch) {
     TerracottaServerState terracottaServerState = getState(terracottaServer);
     switch (terracottaServerState) {
       case STARTING:
       case STARTED_AS_ACTIVE:
       case STARTED_AS_PASSIVE:
       case STARTED_IN_DIAGNOSTIC_MODE:
-        return this;
+        return;
       case STOPPED:
-        final AgentID agentID = executor.getAgentID(terracottaServer.getHostName());
-        logger.info("Creating TSA: {} on: {}", instanceId, agentID);
+        logger.info("Creating TSA: {} on: {}", instanceId, batch.getTarget());
         String whatFor = SERVER_START_PREFIX + terracottaServer.getServerSymbolicName().getSymbolicName();
         TerracottaCommandLineEnvironment cliEnv = tsaConfigurationContext.getTerracottaCommandLineEnvironment(whatFor);
         Duration inactivityKillerDelay = tsaConfigurationContext.getInactivityKillerDelay();
-        RemoteRunnable tsaCreator = () -> AgentController.getInstance().createTsa(instanceId, terracottaServer, cliEnv, envOverrides, Arrays.asList(startUpArgs), inactivityKillerDelay);
-        executor.execute(agentID, tsaCreator);
-        return this;
+        batch.add(() -> AgentController.getInstance().createTsa(instanceId, terracottaServer, cliEnv, envOverrides, Arrays.asList(startUpArgs), inactivityKillerDelay));
+        return;
     }
     throw new IllegalStateException("Cannot create: server " + terracottaServer.getServerSymbolicName() + " in state " + terracottaServerState);
   }
@@ -266,10 +331,13 @@ public class Tsa implements AutoCloseable {
   }
 
   public Tsa start(TerracottaServer terracottaServer, Map<String, String> envOverrides, String... startUpArgs) {
-    spawn(terracottaServer, envOverrides, startUpArgs);
-    RemoteRunnable runnable = () -> AgentController.getInstance().waitForTsaInState(instanceId, terracottaServer, of(STARTED_AS_ACTIVE, STARTED_AS_PASSIVE, STARTED_IN_DIAGNOSTIC_MODE, START_SUSPENDED, STOPPED));
     final AgentID agentID = executor.getAgentID(terracottaServer.getHostName());
-    executor.execute(agentID, runnable);
+    // the creation and the wait for the server to be started are executed as one job
+    Batch batch = executor.batch(agentID);
+    create(terracottaServer, envOverrides, startUpArgs, batch);
+    logger.info("TSA: {} starting on: {}", instanceId, agentID);
+    batch.add(() -> AgentController.getInstance().waitForTsaInState(instanceId, terracottaServer, of(STARTED_AS_ACTIVE, STARTED_AS_PASSIVE, STARTED_IN_DIAGNOSTIC_MODE, START_SUSPENDED, STOPPED)));
+    batch.execute();
     logger.info("TSA: {} started on: {}", instanceId, agentID);
     return this;
   }
@@ -293,16 +361,33 @@ public class Tsa implements AutoCloseable {
   }
 
   public Tsa stopAll() {
-    List<Exception> exceptions = new ArrayList<>();
+    List<Throwable> exceptions = new ArrayList<>();
 
-    Topology topology = tsaConfigurationContext.getTopology();
-    for (TerracottaServer terracottaServer : topology.getServers()) {
+    // one job per agent stopping all its running servers
+    Map<AgentID, Batch> batches = new LinkedHashMap<>();
+    Map<TerracottaServer, CompletableFuture<Void>> stops = new LinkedHashMap<>();
+    getStates().forEach((terracottaServer, terracottaServerState) -> {
+      if (terracottaServerState != STOPPED && terracottaServerState != TerracottaServerState.NOT_INSTALLED) {
+        final AgentID agentID = executor.getAgentID(terracottaServer.getHostName());
+        logger.info("Stopping TSA: {} on: {}", instanceId, agentID);
+        stops.put(terracottaServer, batches.computeIfAbsent(agentID, executor::batch).add(() -> AgentController.getInstance().stopTsa(instanceId, terracottaServer)));
+      }
+    });
+    for (Batch batch : batches.values()) {
       try {
-        stop(terracottaServer);
-      } catch (Exception e) {
-        exceptions.add(e);
+        batch.flush();
+      } catch (RuntimeException e) {
+        // the futures of the batch are failed as well
       }
     }
+    stops.forEach((terracottaServer, stop) -> {
+      try {
+        stop.join();
+        states.update(terracottaServer, STOPPED);
+      } catch (CompletionException e) {
+        exceptions.add(e.getCause());
+      }
+    });
 
     if (!exceptions.isEmpty()) {
       RuntimeException re = new RuntimeException("Error stopping all servers");
@@ -314,12 +399,14 @@ public class Tsa implements AutoCloseable {
 
   public Tsa stop(TerracottaServer terracottaServer) {
     TerracottaServerState terracottaServerState = getState(terracottaServer);
-    if (terracottaServerState == STOPPED) {
+    if (terracottaServerState == STOPPED || terracottaServerState == TerracottaServerState.NOT_INSTALLED) {
       return this;
     }
     final AgentID agentID = executor.getAgentID(terracottaServer.getHostName());
     logger.info("Stopping TSA: {} on: {}", instanceId, agentID);
     executor.execute(agentID, () -> AgentController.getInstance().stopTsa(instanceId, terracottaServer));
+    // the agent only returns once the server is stopped: do not let a waiter see it running until the event arrives
+    states.update(terracottaServer, STOPPED);
     return this;
   }
 
@@ -333,6 +420,37 @@ public class Tsa implements AutoCloseable {
     return executor.execute(agentID, () -> AgentController.getInstance().getTsaState(instanceId, terracottaServer));
   }
 
+  /**
+   * Gets the states of all the servers of the topology, with one call per agent.
+   *
+   * @return the state of each server, in topology order
+   */
+  public Map<TerracottaServer, TerracottaServerState> getStates() {
+    List<TerracottaServer> servers = tsaConfigurationContext.getTopology().getServers();
+    Map<AgentID, List<TerracottaServer>> serversByAgent = servers.stream()
+        .collect(Collectors.groupingBy(server -> executor.getAgentID(server.getHostName()), LinkedHashMap::new, Collectors.toList()));
+    List<CompletableFuture<Map<TerracottaServer, TerracottaServerState>>> futures = serversByAgent.entrySet().stream()
+        .map(e -> {
+          final AgentID agentID = e.getKey();
+          final List<TerracottaServer> agentServers = e.getValue();
+          logger.debug("Getting states for TSA: {} on: {}", instanceId, agentID);
+          return executor.executeAsync(agentID, () -> AgentController.getInstance().getTsaStates(instanceId, agentServers));
+        })
+        .collect(Collectors.toList());
+    Map<TerracottaServer, TerracottaServerState> agentStates = new HashMap<>();
+    futures.forEach(future -> agentStates.putAll(future.join()));
+    Map<TerracottaServer, TerracottaServerState> states = new LinkedHashMap<>();
+    servers.forEach(server -> states.put(server, agentStates.get(server)));
+    return states;
+  }
+
+  private Collection<TerracottaServer> inState(Map<TerracottaServer, TerracottaServerState> states, TerracottaServerState state) {
+    return states.entrySet().stream()
+        .filter(e -> e.getValue() == state)
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toList());
+  }
+
   public Map<ServerSymbolicName, Integer> getProxyGroupPortsForServer(TerracottaServer terracottaServer) {
     final AgentID agentID = executor.getAgentID(terracottaServer.getHostName());
     logger.debug("Getting proxy group ports for TSA: {} on: {}", instanceId, agentID);
@@ -340,40 +458,42 @@ public class Tsa implements AutoCloseable {
   }
 
   public Collection<TerracottaServer> getStarted() {
+    Map<TerracottaServer, TerracottaServerState> states = getStates();
     Collection<TerracottaServer> allRunningServers = new ArrayList<>();
-    allRunningServers.addAll(getActives());
-    allRunningServers.addAll(getPassives());
-    allRunningServers.addAll(getDiagnosticModeSevers());
+    allRunningServers.addAll(inState(states, STARTED_AS_ACTIVE));
+    allRunningServers.addAll(inState(states, STARTED_AS_PASSIVE));
+    allRunningServers.addAll(inState(states, STARTED_IN_DIAGNOSTIC_MODE));
     return allRunningServers;
   }
 
   public Collection<TerracottaServer> getStopped() {
-    Collection<TerracottaServer> result = new ArrayList<>();
-    for (TerracottaServer terracottaServer : tsaConfigurationContext.getTopology().getServers()) {
-      if (getState(terracottaServer) == STOPPED) {
-        result.add(terracottaServer);
-      }
-    }
-    return result;
+    return inState(getStates(), STOPPED);
   }
 
   public Collection<TerracottaServer> getPassives() {
-    Collection<TerracottaServer> result = new ArrayList<>();
-    for (TerracottaServer terracottaServer : tsaConfigurationContext.getTopology().getServers()) {
-      if (getState(terracottaServer) == STARTED_AS_PASSIVE) {
-        result.add(terracottaServer);
-      }
-    }
-    return result;
+    return inState(getStates(), STARTED_AS_PASSIVE);
   }
 
-  @SuppressWarnings("BusyWait")
   public Collection<TerracottaServer> waitForPassives(int count) throws InterruptedException {
-    Collection<TerracottaServer> terracottaServers;
-    while ((terracottaServers = getPassives()).size() < count) {
-      Thread.sleep(200);
-    }
-    return terracottaServers;
+    return waitForPassives(tsaConfigurationContext.getTopology().getServers(), count);
+  }
+
+  /**
+   * Waits until at least {@code count} of the given servers are passive, as pushed by their agents on each state transition.
+   */
+  public Collection<TerracottaServer> waitForPassives(Collection<TerracottaServer> terracottaServers, int count) throws InterruptedException {
+    return states.await(() -> {
+      Collection<TerracottaServer> passives = states.inState(STARTED_AS_PASSIVE, terracottaServers);
+      return passives.size() >= count ? passives : null;
+    });
+  }
+
+  /**
+   * Waits until the given server reaches a state, as pushed by its agent on each state transition.
+   */
+  public Tsa waitForState(TerracottaServer terracottaServer, TerracottaServerState terracottaServerState) throws InterruptedException {
+    states.await(() -> states.get(terracottaServer) == terracottaServerState ? this : null);
+    return this;
   }
 
   public TerracottaServer getPassive() {
@@ -388,23 +508,12 @@ public class Tsa implements AutoCloseable {
     }
   }
 
-  @SuppressWarnings("BusyWait")
   public TerracottaServer waitForPassive() throws InterruptedException {
-    TerracottaServer terracottaServer;
-    while ((terracottaServer = getPassive()) == null) {
-      Thread.sleep(200);
-    }
-    return terracottaServer;
+    return states.await(() -> single(states.inState(STARTED_AS_PASSIVE, tsaConfigurationContext.getTopology().getServers()), "Passive Terracotta server"));
   }
 
   public Collection<TerracottaServer> getActives() {
-    Collection<TerracottaServer> result = new ArrayList<>();
-    for (TerracottaServer terracottaServer : tsaConfigurationContext.getTopology().getServers()) {
-      if (getState(terracottaServer) == STARTED_AS_ACTIVE) {
-        result.add(terracottaServer);
-      }
-    }
-    return result;
+    return inState(getStates(), STARTED_AS_ACTIVE);
   }
 
   public Collection<TerracottaServer> getServer(ServerSymbolicName symbolicName) {
@@ -430,11 +539,27 @@ public class Tsa implements AutoCloseable {
   }
 
   public TerracottaServer waitForActive() throws InterruptedException {
-    TerracottaServer terracottaServer;
-    while ((terracottaServer = getActive()) == null) {
-      Thread.sleep(200);
+    return states.await(() -> single(states.inState(STARTED_AS_ACTIVE, tsaConfigurationContext.getTopology().getServers()), "Active Terracotta server"));
+  }
+
+  /**
+   * Waits until one of the given servers is active, as pushed by their agents on each state transition.
+   *
+   * @return the first of the given servers found active
+   */
+  public TerracottaServer waitForActive(Collection<TerracottaServer> terracottaServers) throws InterruptedException {
+    return states.await(() -> states.inState(STARTED_AS_ACTIVE, terracottaServers).stream().findFirst().orElse(null));
+  }
+
+  private static TerracottaServer single(Collection<TerracottaServer> servers, String what) {
+    switch (servers.size()) {
+      case 0:
+        return null;
+      case 1:
+        return servers.iterator().next();
+      default:
+        throw new IllegalStateException("There is more than one " + what + ", found " + servers.size());
     }
-    return terracottaServer;
   }
 
   public TerracottaServer getActive() {
@@ -450,13 +575,7 @@ public class Tsa implements AutoCloseable {
   }
 
   public Collection<TerracottaServer> getDiagnosticModeSevers() {
-    Collection<TerracottaServer> result = new ArrayList<>();
-    for (TerracottaServer terracottaServer : tsaConfigurationContext.getTopology().getServers()) {
-      if (getState(terracottaServer) == STARTED_IN_DIAGNOSTIC_MODE) {
-        result.add(terracottaServer);
-      }
-    }
-    return result;
+    return inState(getStates(), STARTED_IN_DIAGNOSTIC_MODE);
   }
 
   public TerracottaServer getDiagnosticModeServer() {
@@ -603,6 +722,8 @@ public class Tsa implements AutoCloseable {
       uninstallAll();
     }
 
+    states.close();
+
     if (tsaConfigurationContext.getTopology().isNetDisruptionEnabled()) {
       try {
         disruptionController.close();
@@ -0,0 +1,141 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.client;
+
+import org.terracotta.angela.agent.AgentController;
+import org.terracotta.angela.agent.com.AgentID;
+import org.terracotta.angela.agent.com.Executor;
+import org.terracotta.angela.agent.com.grid.RemoteRunnable;
+import org.terracotta.angela.common.TerracottaServerState;
+import org.terracotta.angela.common.tcconfig.ServerSymbolicName;
+import org.terracotta.angela.common.tcconfig.TerracottaServer;
+import org.terracotta.angela.common.topology.InstanceId;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * The states of the servers of a TSA, as pushed by their agents on each state transition.
+ */
+final class TsaStates implements AutoCloseable {
+
+  private final Executor executor;
+  private final InstanceId instanceId;
+  private final String topic;
+  private final Map<ServerSymbolicName, TerracottaServerState> states = new ConcurrentHashMap<>();
+  private final List<Runnable> waiters = new CopyOnWriteArrayList<>();
+  private final Consumer<Serializable> listener = this::onEvent;
+
+  TsaStates(Executor executor, InstanceId instanceId) {
+    this.executor = executor;
+    this.instanceId = instanceId;
+    this.topic = instanceId + "@tsa-states";
+    executor.addEventListener(topic, listener);
+  }
+
+  /**
+   * Makes the agent of an installed server push its state transitions.
+   */
+  void listen(TerracottaServer terracottaServer) {
+    final AgentID agentID = executor.getAgentID(terracottaServer.getHostName());
+    final AgentID orchestratorID = executor.getLocalAgentID();
+    final Executor executor = this.executor;
+    final InstanceId instanceId = this.instanceId;
+    final String topic = this.topic;
+    final ServerSymbolicName serverSymbolicName = terracottaServer.getServerSymbolicName();
+    executor.execute(agentID, (RemoteRunnable) () -> AgentController.getInstance().addTsaStateListener(instanceId, terracottaServer,
+        state -> executor.sendEvent(orchestratorID, topic, new StateEvent(serverSymbolicName, state))));
+  }
+
+  /**
+   * Records a state known without waiting for its event, like the one of a server that has been uninstalled.
+   */
+  void update(TerracottaServer terracottaServer, TerracottaServerState state) {
+    states.put(terracottaServer.getServerSymbolicName(), state);
+    waiters.forEach(Runnable::run);
+  }
+
+  TerracottaServerState get(TerracottaServer terracottaServer) {
+    return states.getOrDefault(terracottaServer.getServerSymbolicName(), TerracottaServerState.NOT_INSTALLED);
+  }
+
+  Collection<TerracottaServer> inState(TerracottaServerState state, Collection<TerracottaServer> terracottaServers) {
+    return terracottaServers.stream().filter(terracottaServer -> get(terracottaServer) == state).collect(toList());
+  }
+
+  /**
+   * Waits until a condition on the states of the servers is met.
+   *
+   * @param condition evaluated on each state transition until it returns a non-null result
+   * @return the result of the condition
+   */
+  <T> T await(Supplier<T> condition) throws InterruptedException {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    Runnable waiter = () -> {
+      try {
+        T value = condition.get();
+        if (value != null) {
+          result.complete(value);
+        }
+      } catch (RuntimeException e) {
+        result.completeExceptionally(e);
+      }
+    };
+    waiters.add(waiter);
+    try {
+      waiter.run();
+      return result.get();
+    } catch (ExecutionException e) {
+      throw (RuntimeException) e.getCause();
+    } finally {
+      waiters.remove(waiter);
+    }
+  }
+
+  private void onEvent(Serializable event) {
+    StateEvent stateEvent = (StateEvent) event;
+    states.put(stateEvent.serverSymbolicName, stateEvent.state);
+    waiters.forEach(Runnable::run);
+  }
+
+  @Override
+  public void close() {
+    executor.removeEventListener(topic, listener);
+  }
+
+  static final class StateEvent implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final ServerSymbolicName serverSymbolicName;
+    private final TerracottaServerState state;
+
+    StateEvent(ServerSymbolicName serverSymbolicName, TerracottaServerState state) {
+      this.serverSymbolicName = serverSymbolicName;
+      this.state = state;
+    }
+  }
+}
@@ -20,6 +20,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terracotta.angela.agent.AgentController;
 import org.terracotta.angela.agent.com.AgentID;
+import org.terracotta.angela.agent.com.Batch;
 import org.terracotta.angela.agent.com.Executor;
 import org.terracotta.angela.agent.kit.LocalKitManager;
 import org.terracotta.angela.client.config.VoterConfigurationContext;
@@ -36,9 +37,12 @@ import org.terracotta.angela.agent.com.grid.RemoteRunnable;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static org.terracotta.angela.common.AngelaProperties.KIT_COPY;
 import static org.terracotta.angela.common.AngelaProperties.KIT_INSTALLATION_DIR;
@@ -77,6 +81,22 @@ public class Voter implements AutoCloseable {
     return executor.execute(agentID, () -> AgentController.getInstance().getVoterState(instanceId, terracottaVoter));
   }
 
+  /**
+   * Gets the states of all the voters, with one call per agent.
+   */
+  private Map<TerracottaVoter, TerracottaVoterState> getTerracottaVoterStates() {
+    Map<AgentID, Batch> batches = new LinkedHashMap<>();
+    Map<TerracottaVoter, CompletableFuture<TerracottaVoterState>> futures = new LinkedHashMap<>();
+    for (TerracottaVoter terracottaVoter : voterConfigurationContext.getTerracottaVoters()) {
+      final AgentID agentID = executor.getAgentID(terracottaVoter.getHostName());
+      futures.put(terracottaVoter, batches.computeIfAbsent(agentID, executor::batch).add(() -> AgentController.getInstance().getVoterState(instanceId, terracottaVoter)));
+    }
+    batches.values().forEach(Batch::execute);
+    Map<TerracottaVoter, TerracottaVoterState> states = new LinkedHashMap<>();
+    futures.forEach((terracottaVoter, future) -> states.put(terracottaVoter, future.join()));
+    return states;
+  }
+
   public Voter startAll() {
     voterConfigurationContext.getTerracottaVoters().stream()
         .map(voter -> CompletableFuture.runAsync(() -> start(voter)))
@@ -96,13 +116,30 @@ public class Voter implements AutoCloseable {
   }
 
   public Voter stopAll() {
-    List<Exception> exceptions = new ArrayList<>();
-
-    for (TerracottaVoter terracottaVoter : voterConfigurationContext.getTerracottaVoters()) {
+    List<Throwable> exceptions = new ArrayList<>();
+
+    // one job per agent stopping all its running voters
+    Map<AgentID, Batch> batches = new LinkedHashMap<>();
+    List<CompletableFuture<Void>> stops = new ArrayList<>();
+    getTerracottaVoterStates().forEach((terracottaVoter, terracottaVoterState) -> {
+      if (terracottaVoterState != TerracottaVoterState.STOPPED) {
+        final AgentID agentID = executor.getAgentID(terracottaVoter.getHostName());
+        logger.info("Stopping Voter: {} on: {}", instanceId, agentID);
+        stops.add(batches.computeIfAbsent(agentID, executor::batch).add(() -> AgentController.getInstance().stopVoter(instanceId, terracottaVoter)));
+      }
+    });
+    for (Batch batch : batches.values()) {
       try {
-        stop(terracottaVoter);
-      } catch (Exception e) {
-        exceptions.add(e);
+        batch.flush();
+      } catch (RuntimeException e) {
+        // the futures of the batch are failed as well
+      }
+    }
+    for (CompletableFuture<Void> stop : stops) {
+      try {
+        stop.join();
+      } catch (CompletionException e) {
+        exceptions.add(e.getCause());
       }
     }
 
@@ -173,15 +210,20 @@ public class Voter implements AutoCloseable {
   }
 
   private void uninstallAll() {
-    for (TerracottaVoter terracottaVoter : voterConfigurationContext.getTerracottaVoters()) {
-      uninstall(terracottaVoter);
-    }
+    // one job per agent uninstalling all its voters
+    Map<AgentID, Batch> batches = new LinkedHashMap<>();
+    getTerracottaVoterStates().forEach((terracottaVoter, terracottaVoterState) -> {
+      uninstaller(terracottaVoter, terracottaVoterState).ifPresent(uninstaller -> {
+        final AgentID agentID = executor.getAgentID(terracottaVoter.getHostName());
+        batches.computeIfAbsent(agentID, executor::batch).add(uninstaller);
+      });
+    });
+    batches.values().forEach(Batch::execute);
   }
 
-  private void uninstall(TerracottaVoter terracottaVoter) {
-    TerracottaVoterState terracottaVoterState = getTerracottaVoterState(terracottaVoter);
+  private Optional<RemoteRunnable> uninstaller(TerracottaVoter terracottaVoter, TerracottaVoterState terracottaVoterState) {
     if (terracottaVoterState == null) {
-      return;
+      return Optional.empty();
     }
     if (terracottaVoterState != TerracottaVoterState.STOPPED) {
       throw new IllegalStateException("Cannot uninstall: voter " + terracottaVoter.getId() + " in state " + terracottaVoterState);
@@ -192,7 +234,6 @@ public class Voter implements AutoCloseable {
 
     logger.info("Uninstalling Voter: {} from: {}", instanceId, agentID);
 
-    RemoteRunnable uninstaller = () -> AgentController.getInstance().uninstallVoter(instanceId, distribution, terracottaVoter, kitInstallationName);
-    executor.execute(agentID, uninstaller);
+    return Optional.of(() -> AgentController.getInstance().uninstallVoter(instanceId, distribution, terracottaVoter, kitInstallationName));
   }
 }
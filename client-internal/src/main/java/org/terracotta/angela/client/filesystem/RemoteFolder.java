@@ -21,11 +21,9 @@ import org.apache.commons.io.IOUtils;
 import org.terracotta.angela.agent.AgentController;
 import org.terracotta.angela.agent.com.AgentExecutor;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.net.URL;
 import java.nio.file.Files;
@@ -33,10 +31,9 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Stream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 import static java.util.stream.Collectors.toList;
+import static org.terracotta.angela.common.AngelaProperties.DOWNLOAD_COMPRESSION_LEVEL;
 
 public class RemoteFolder extends RemoteFile {
 
@@ -106,33 +103,25 @@ public class RemoteFolder extends RemoteFile {
     agentExecutor.execute(() -> AgentController.getInstance().uploadFile(filename, data));
   }
 
-  @SuppressFBWarnings({"RV_RETURN_VALUE_IGNORED_BAD_PRACTICE", "NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE"})
   @Override
   public void downloadTo(Path localPath) throws IOException {
+    downloadTo(localPath, Integer.parseInt(DOWNLOAD_COMPRESSION_LEVEL.getValue()));
+  }
+
+  /**
+   * Downloads the folder content, streamed file by file. Archives, media and files whose first bytes do not compress
+   * are always sent as they are.
+   *
+   * @param compressionLevel deflate level (0 to 9, -1 for the deflate default), {@link java.util.zip.Deflater#NO_COMPRESSION}
+   *                         to send all the files as they are
+   */
+  public void downloadTo(Path localPath, int compressionLevel) throws IOException {
     String foldername = getAbsoluteName();
-    byte[] bytes;
     try {
-      bytes = agentExecutor.execute(() -> AgentController.getInstance().downloadFolder(foldername));
+      agentExecutor.downloadFolder(foldername, localPath, compressionLevel);
     } catch (RuntimeException e) {
       throw new IOException("Error downloading remote folder '" + foldername + "' into local folder '" + localPath + "'", e);
     }
-
-    Files.createDirectories(localPath);
-
-    try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(bytes))) {
-      while (true) {
-        ZipEntry nextEntry = zis.getNextEntry();
-        if (nextEntry == null) {
-          break;
-        }
-        String name = nextEntry.getName();
-        Path file = localPath.resolve(name);
-        Files.createDirectories(file.getParent());
-        try (OutputStream fos = Files.newOutputStream(file)) {
-          IOUtils.copy(zis, fos);
-        }
-      }
-    }
   }
 
   @Override
@@ -31,6 +31,7 @@ import org.terracotta.angela.client.Tsa;
 import org.terracotta.angela.client.Voter;
 import org.terracotta.angela.client.config.ConfigurationContext;
 import org.terracotta.angela.client.filesystem.RemoteFolder;
+import org.terracotta.angela.common.TerracottaServerState;
 import org.terracotta.angela.common.ToolExecutionResult;
 import org.terracotta.angela.common.cluster.Cluster;
 import org.terracotta.angela.common.tcconfig.TerracottaServer;
@@ -43,6 +44,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -55,10 +57,7 @@ import java.util.stream.Stream;
 
 import static java.util.stream.IntStream.rangeClosed;
 import static org.hamcrest.Matchers.containsString;
-import static org.hamcrest.Matchers.equalTo;
-import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.hasItem;
-import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.terracotta.angela.common.TerracottaServerState.STARTED_AS_ACTIVE;
 import static org.terracotta.angela.common.TerracottaServerState.STARTED_AS_PASSIVE;
@@ -246,10 +245,7 @@ public class AngelaRule extends ExtendedTestRule implements AutoCloseable {
 
   public void stopNode(int stripeId, int nodeId) {
     tsa().stop(getNode(stripeId, nodeId));
-    // waitForStopped is required because Ignite has a little cache
-    // and when the server is stopped, the angela server state read from the test jvm
-    // can still be an old state for some milliseconds.
-    // So this ensures the server has completed and also that this completion is seen on the test jvm
+    // waitForStopped ensures the server has completed and also that this completion is seen on the test jvm
     waitForStopped(stripeId, nodeId);
   }
 
@@ -313,15 +309,17 @@ public class AngelaRule extends ExtendedTestRule implements AutoCloseable {
 
   public OptionalInt findActive(int stripeId) {
     List<TerracottaServer> nodes = getStripe(stripeId);
+    Map<TerracottaServer, TerracottaServerState> states = tsa().getStates();
     return rangeClosed(1, nodes.size())
-        .filter(nodeId -> tsa().getState(nodes.get(nodeId - 1)) == STARTED_AS_ACTIVE)
+        .filter(nodeId -> states.get(nodes.get(nodeId - 1)) == STARTED_AS_ACTIVE)
         .findFirst();
   }
 
   public int[] findPassives(int stripeId) {
     List<TerracottaServer> nodes = getStripe(stripeId);
+    Map<TerracottaServer, TerracottaServerState> states = tsa().getStates();
     return rangeClosed(1, nodes.size())
-        .filter(nodeId -> tsa().getState(nodes.get(nodeId - 1)) == STARTED_AS_PASSIVE)
+        .filter(nodeId -> states.get(nodes.get(nodeId - 1)) == STARTED_AS_PASSIVE)
         .toArray();
   }
 
@@ -397,39 +395,57 @@ public class AngelaRule extends ExtendedTestRule implements AutoCloseable {
   }
 
   public final int waitForActive(int stripeId) {
-    waitUntil(() -> findActive(stripeId).isPresent(), is(true));
-    return findActive(stripeId).getAsInt();
+    List<TerracottaServer> nodes = getStripe(stripeId);
+    return nodes.indexOf(await(() -> tsa().waitForActive(nodes))) + 1;
   }
 
   public final void waitForActive(int stripeId, int nodeId) {
-    waitUntil(() -> tsa().getState(getNode(stripeId, nodeId)), is(equalTo(STARTED_AS_ACTIVE)));
+    waitForState(stripeId, nodeId, STARTED_AS_ACTIVE);
   }
 
   public final void waitForPassive(int stripeId, int nodeId) {
-    waitUntil(() -> tsa().getState(getNode(stripeId, nodeId)), is(equalTo(STARTED_AS_PASSIVE)));
+    waitForState(stripeId, nodeId, STARTED_AS_PASSIVE);
   }
 
   public final void waitForPassiveRelay(int stripeId, int nodeId) {
-    waitUntil(() -> tsa().getState(getNode(stripeId, nodeId)), is(equalTo(STARTED_AS_PASSIVE_RELAY)));
+    waitForState(stripeId, nodeId, STARTED_AS_PASSIVE_RELAY);
   }
 
   public final void waitForDiagnostic(int stripeId, int nodeId) {
-    waitUntil(() -> tsa().getState(getNode(stripeId, nodeId)), is(equalTo(STARTED_IN_DIAGNOSTIC_MODE)));
+    waitForState(stripeId, nodeId, STARTED_IN_DIAGNOSTIC_MODE);
   }
 
   public final void waitForStopped(int stripeId, int nodeId) {
-    waitUntil(() -> tsa().getState(getNode(stripeId, nodeId)), is(equalTo(STOPPED)));
+    waitForState(stripeId, nodeId, STOPPED);
   }
 
   public final int[] waitForPassives(int stripeId) {
-    int expectedPassiveCount = getNodeCount(stripeId) - 1;
-    waitUntil(() -> findPassives(stripeId).length, is(equalTo(expectedPassiveCount)));
-    return findPassives(stripeId);
+    return waitForNPassives(stripeId, getNodeCount(stripeId) - 1);
   }
 
   public final int[] waitForNPassives(int stripeId, int count) {
-    waitUntil(() -> findPassives(stripeId).length, is(greaterThanOrEqualTo(count)));
-    return findPassives(stripeId);
+    List<TerracottaServer> nodes = getStripe(stripeId);
+    Collection<TerracottaServer> passives = await(() -> tsa().waitForPassives(nodes, count));
+    return passives.stream().mapToInt(node -> nodes.indexOf(node) + 1).toArray();
+  }
+
+  private void waitForState(int stripeId, int nodeId, TerracottaServerState state) {
+    TerracottaServer node = getNode(stripeId, nodeId);
+    await(() -> tsa().waitForState(node, state));
+  }
+
+  private static <T> T await(Waiter<T> waiter) {
+    try {
+      return waiter.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+  }
+
+  @FunctionalInterface
+  private interface Waiter<T> {
+    T await() throws InterruptedException;
   }
 
   // =========================================
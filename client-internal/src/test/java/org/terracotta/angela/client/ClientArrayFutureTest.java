@@ -0,0 +1,63 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.client;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.fail;
+
+public class ClientArrayFutureTest {
+
+  @Test
+  public void testComposition() {
+    CompletableFuture<Void> job1 = new CompletableFuture<>();
+    CompletableFuture<Void> job2 = new CompletableFuture<>();
+    CompletableFuture<Void> job3 = new CompletableFuture<>();
+    ClientArrayFuture future = new ClientArrayFuture(Arrays.<Future<Void>>asList(job1, job2, job3));
+    CompletableFuture<Void> all = future.allOf();
+    CompletableFuture<Void> any = future.anyOf();
+    CompletableFuture<Void> firstFailure = future.firstFailure();
+
+    job1.complete(null);
+    assertThat(any.isDone(), equalTo(true));
+    assertThat(firstFailure.isDone(), equalTo(false));
+
+    IllegalStateException failure2 = new IllegalStateException("job2");
+    job2.completeExceptionally(failure2);
+    assertThat(firstFailure.isCompletedExceptionally(), equalTo(true));
+    assertThat(all.isDone(), equalTo(false));
+
+    IllegalStateException failure3 = new IllegalStateException("job3");
+    job3.completeExceptionally(failure3);
+    try {
+      all.join();
+      fail();
+    } catch (CompletionException e) {
+      assertThat(e.getCause(), sameInstance(failure2));
+      assertThat(e.getSuppressed().length, equalTo(1));
+      assertThat(e.getSuppressed()[0], sameInstance(failure3));
+    }
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.client;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.terracotta.angela.common.clientconfig.ClientId;
+import org.terracotta.angela.common.cluster.Cluster;
+import org.terracotta.angela.common.topology.InstanceId;
+
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+
+public class ClientLeaseTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testLeasesDoNotShareStateWithEachOther() throws Exception {
+    Path workDir = temporaryFolder.newFolder().toPath();
+    Files.createDirectories(workDir.resolve("lib"));
+    String file = workDir.resolve("written-by-job").toString();
+    byte[] job = ClientJobs.serialize(cluster -> {
+      if (++Counter.count != 1) {
+        throw new AssertionError("static state leaked from a previous lease");
+      }
+      System.setProperty("angela.test.lease", "leased");
+      Files.createFile(Paths.get(file));
+    });
+
+    for (int i = 0; i < 2; i++) {
+      ClientLease.begin(workDir);
+      try {
+        ClientLease.run(new InstanceId("lease", "client"), job, null);
+      } finally {
+        ClientLease.end();
+      }
+      assertThat(System.getProperty("angela.test.lease"), nullValue());
+      assertThat(Files.exists(workDir.resolve("written-by-job")), equalTo(false));
+      assertThat(Files.exists(workDir.resolve("lib")), equalTo(true));
+    }
+    assertThat(Counter.count, equalTo(0));
+  }
+
+  @Test
+  public void testAngelaClassesAreSharedWithTheJvm() throws Exception {
+    try (URLClassLoader classLoader = ClientJobs.newIsolatedClassLoader()) {
+      for (Class<?> shared : new Class<?>[]{ClientId.class, InstanceId.class, Cluster.class, ClientJob.class}) {
+        assertThat(shared.getName(), classLoader.loadClass(shared.getName()) == shared, equalTo(true));
+      }
+      assertThat(classLoader.loadClass(Counter.class.getName()) == Counter.class, equalTo(false));
+    }
+  }
+
+  static class Counter {
+    static int count;
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.client;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.terracotta.angela.agent.com.AgentID;
+import org.terracotta.angela.agent.com.grid.GridCluster;
+import org.terracotta.angela.common.clientconfig.ClientId;
+import org.terracotta.angela.common.clientconfig.ClientSymbolicName;
+import org.terracotta.angela.common.cluster.Cluster;
+import org.terracotta.angela.common.topology.InstanceId;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class HostedClientTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testHostedClientsHaveTheirOwnStateAndWorkingDirectory() throws Exception {
+    GridCluster gridCluster = (GridCluster) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{GridCluster.class}, (proxy, method, args) -> {
+      throw new UnsupportedOperationException();
+    });
+    Cluster cluster = new Cluster(gridCluster, AgentID.local(), null);
+    byte[] job = ClientJobs.serialize(c -> {
+      if (++Counter.count != 1) {
+        throw new AssertionError("static state shared with another client");
+      }
+      Files.createFile(c.getWorkingDirectory().resolve("written-by-job"));
+    });
+
+    InstanceId[] instanceIds = {new InstanceId("hosted-1", "client"), new InstanceId("hosted-2", "client")};
+    Path[] workDirs = {temporaryFolder.getRoot().toPath().resolve("1"), temporaryFolder.getRoot().toPath().resolve("2")};
+    try {
+      for (int i = 0; i < instanceIds.length; i++) {
+        HostedClient.start(instanceIds[i], workDirs[i]);
+      }
+      for (int i = 0; i < instanceIds.length; i++) {
+        HostedClient.run(instanceIds[i], job, cluster);
+        assertThat(Files.exists(workDirs[i].resolve("written-by-job")), equalTo(true));
+        assertThat(ClientJobs.usage(instanceIds[i]).getJobCount(), equalTo(1L));
+      }
+    } finally {
+      for (InstanceId instanceId : instanceIds) {
+        HostedClient.stop(instanceId);
+      }
+    }
+    assertThat(Counter.count, equalTo(0));
+  }
+
+  @Test
+  public void testHostedClientJobsSeeTheirClientId() throws Exception {
+    GridCluster gridCluster = (GridCluster) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{GridCluster.class}, (proxy, method, args) -> {
+      throw new UnsupportedOperationException();
+    });
+    ClientId clientId = new ClientId(new ClientSymbolicName("client-1"), "localhost");
+    Cluster cluster = new Cluster(gridCluster, AgentID.local(), clientId);
+    byte[] job = ClientJobs.serialize(c -> {
+      ClientId id = c.getClientId();
+      if (!id.getSymbolicName().getSymbolicName().equals("client-1") || !id.getHostName().equals("localhost")) {
+        throw new AssertionError("unexpected client id: " + id);
+      }
+    });
+
+    InstanceId instanceId = new InstanceId("hosted-id", "client");
+    try {
+      HostedClient.start(instanceId, temporaryFolder.getRoot().toPath().resolve("1"));
+      HostedClient.run(instanceId, job, cluster);
+      assertThat(ClientJobs.usage(instanceId).getJobCount(), equalTo(1L));
+    } finally {
+      HostedClient.stop(instanceId);
+    }
+  }
+
+  static class Counter {
+    static int count;
+  }
+}
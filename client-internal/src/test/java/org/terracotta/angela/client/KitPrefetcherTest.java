@@ -0,0 +1,41 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.client;
+
+import org.junit.Test;
+import org.terracotta.angela.common.distribution.Distribution;
+
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.terracotta.angela.common.distribution.Distribution.distribution;
+import static org.terracotta.angela.common.topology.LicenseType.TERRACOTTA;
+import static org.terracotta.angela.common.topology.PackageType.SAG_INSTALLER;
+import static org.terracotta.angela.common.topology.Version.version;
+
+public class KitPrefetcherTest {
+
+  @Test
+  public void testSagInstallerIsNotPrefetchedWithoutLicense() {
+    Distribution distribution = distribution(version("10.7.0.0.0"), SAG_INSTALLER, TERRACOTTA);
+    try (KitPrefetcher kitPrefetcher = new KitPrefetcher(null, null)) {
+      assertThat(kitPrefetcher.prefetch(Collections.emptyList(), distribution, null).isDone(), equalTo(true));
+      kitPrefetcher.await(distribution); // nothing to wait for
+    }
+  }
+}
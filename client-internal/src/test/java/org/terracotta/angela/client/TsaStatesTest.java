@@ -0,0 +1,68 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.client;
+
+import org.junit.Test;
+import org.terracotta.angela.agent.com.AgentID;
+import org.terracotta.angela.agent.com.Executor;
+import org.terracotta.angela.agent.com.IgniteFreeExecutor;
+import org.terracotta.angela.common.tcconfig.TerracottaServer;
+import org.terracotta.angela.common.topology.InstanceId;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.terracotta.angela.common.TerracottaServerState.STARTED_AS_ACTIVE;
+import static org.terracotta.angela.common.TerracottaServerState.STARTED_AS_PASSIVE;
+import static org.terracotta.angela.common.TerracottaServerState.STARTING;
+import static org.terracotta.angela.common.tcconfig.TerracottaServer.server;
+
+public class TsaStatesTest {
+
+  @Test
+  public void testWaiterCompletesOnPushedTransition() throws Exception {
+    InstanceId instanceId = new InstanceId("states", "tsa");
+    TerracottaServer server1 = server("server-1", "localhost");
+    TerracottaServer server2 = server("server-2", "localhost");
+    try (Executor executor = new IgniteFreeExecutor(UUID.randomUUID(), AgentID.local());
+         TsaStates states = new TsaStates(executor, instanceId)) {
+      CompletableFuture<Collection<TerracottaServer>> actives = CompletableFuture.supplyAsync(() -> {
+        try {
+          return states.await(() -> {
+            Collection<TerracottaServer> servers = states.inState(STARTED_AS_ACTIVE, Arrays.asList(server1, server2));
+            return servers.isEmpty() ? null : servers;
+          });
+        } catch (InterruptedException e) {
+          throw new AssertionError(e);
+        }
+      });
+
+      String topic = instanceId + "@tsa-states";
+      executor.sendEvent(AgentID.local(), topic, new TsaStates.StateEvent(server1.getServerSymbolicName(), STARTING));
+      executor.sendEvent(AgentID.local(), topic, new TsaStates.StateEvent(server2.getServerSymbolicName(), STARTED_AS_PASSIVE));
+      executor.sendEvent(AgentID.local(), topic, new TsaStates.StateEvent(server1.getServerSymbolicName(), STARTED_AS_ACTIVE));
+
+      assertThat(actives.get(10, TimeUnit.SECONDS), equalTo(Arrays.asList(server1)));
+      assertThat(states.get(server2), equalTo(STARTED_AS_PASSIVE));
+    }
+  }
+}
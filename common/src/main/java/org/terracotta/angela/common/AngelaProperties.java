@@ -47,6 +47,12 @@ public enum AngelaProperties {
 
   // display Ignite logging (used to help debugging the behaviour of Angela)
   IGNITE_LOGGING("angela.igniteLogging", "false"),
+  // maximum number of threads running the asynchronous jobs of an executor without Ignite (local mode). When they are all
+  // busy, the jobs run in the calling thread
+  IGNITE_FREE_THREADS("angela.igniteFree.threads", "64"),
+  // record the count, latency and sampled serialized sizes of the remote calls of each call site, reported when the
+  // orchestrator is closed
+  REMOTE_CALL_STATS("angela.remoteCallStats", "false"),
 
   // Define additional hostnames or ip addresses to be considered as local, separated by comma.
   // For some testing, it is possible ot fake some local hostnames.
@@ -58,6 +64,50 @@ public enum AngelaProperties {
   // forces a kit copy instead of using a common kit install for multiple tests. useful for parallel execution of tests
   // that changes files in the kit install (e.g. tmc.properties)
   KIT_COPY("angela.kitCopy", "false"),
+  // when a kit is copied for an instance, its jars and native libraries are hard-linked instead of copied (falling back
+  // to a copy when hard links are not supported). Only the other files, which Angela or the servers can modify, are
+  // copied. The linked files share their content with the cached kit, so they must never be written to
+  KIT_COPY_LINKS("angela.kitCopy.links", "false"),
+
+  // file transfers (kits, client jars, downloaded folders) are sent in frames of this size (in bytes) through a queue of this capacity, so
+  // that the memory used by a transfer is bounded by chunkSize x queueSize whatever the size of the transferred files
+  FILE_TRANSFER_CHUNK_SIZE("angela.fileTransfer.chunkSize", String.valueOf(256 * 1024)),
+  FILE_TRANSFER_QUEUE_SIZE("angela.fileTransfer.queueSize", "64"),
+  // number of queues a transfer is spread over, each one being fed and drained by its own thread. The queue capacity
+  // is shared between them, so each stream needs a few frames in flight to keep its producer and consumer busy
+  FILE_TRANSFER_STREAMS("angela.fileTransfer.streams", "4"),
+  // a file transfer fails when a stream receives nothing for this long (in seconds)
+  FILE_TRANSFER_TIMEOUT_SECONDS("angela.fileTransfer.timeoutSeconds", "300"),
+
+  // deflate level (0 to 9, -1 for the deflate default) of the frames used to download remote folders (logs, data
+  // directories). 0 sends the files as they are, which is best for files that are already compressed
+  DOWNLOAD_COMPRESSION_LEVEL("angela.download.compressionLevel", "-1"),
+  // codec used to compress the frames of a compressed transfer, looked up by name amongst the FileTransferCodec services.
+  // Only the files which are worth it are compressed: known archives and media are sent as they are, and so are the
+  // files whose first bytes do not compress
+  FILE_TRANSFER_CODEC("angela.fileTransfer.codec", "deflate"),
+
+  // when a kit has to be uploaded to several agents, the orchestrator only sends it to two of them, and each agent
+  // forwards it to two others once received (binary tree), so that the install time grows with log(agents)
+  KIT_BROADCAST("angela.kitBroadcast", "false"),
+  // number of concurrent range requests used to download a kit installer, when the server accepts them
+  KIT_DOWNLOAD_CONNECTIONS("angela.kitDownload.connections", "4"),
+  // disk space (in MB) the kits and installers cached in the root dir can use. When exceeded, the least recently used
+  // versions are evicted in the background when an orchestrator starts, unless they are in use. Unbounded by default
+  KIT_CACHE_MAX_SIZE_MB("angela.kitCache.maxSizeMB", null),
+  // maximum time (in seconds) to wait for another JVM installing the same kit version before failing
+  KIT_INSTALL_LOCK_TIMEOUT_SECONDS("angela.kitInstall.lockTimeoutSeconds", "1800"),
+  // speed up the startup of the client JVMs and remote agents with AppCDS archives (JDK 15+ for clients, 13+ for
+  // remote agents), generated the first time a JVM is spawned with a given JDK, JVM options and classpath jars
+  CLASS_DATA_SHARING("angela.classDataSharing", "false"),
+  // number of idle client JVMs each agent keeps for a given classpath, so that spawning a client only consists in leasing
+  // one of them. Closed clients give their JVM back to the pool. Disabled by default
+  CLIENT_POOL_SIZE("angela.clientPool.size", "0"),
+  // maximum number of clients of a client array spawned at the same time on each host
+  CLIENT_ARRAY_PARALLELISM_PER_HOST("angela.clientArray.parallelismPerHost", "4"),
+  // number of clients of a client array hosted by each spawned client JVM, each one running its jobs in a class loader
+  // and a working directory of its own. One JVM per client by default
+  CLIENTS_PER_JVM("angela.clientArray.clientsPerJvm", "1"),
 
   // ssh properties
   SSH_USERNAME("angela.ssh.userName", System.getProperty("user.name")),
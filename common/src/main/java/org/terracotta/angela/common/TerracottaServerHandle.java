@@ -16,6 +16,8 @@
  */
 package org.terracotta.angela.common;
 
+import java.util.function.Consumer;
+
 /**
  *
  */
@@ -27,4 +29,13 @@ public interface TerracottaServerHandle {
   boolean isAlive();
 
   void stop();
+
+  /**
+   * Registers a listener called on each state transition of the server.
+   *
+   * @return false if the server does not report its state transitions, which then have to be polled
+   */
+  default boolean addStateListener(Consumer<TerracottaServerState> listener) {
+    return false;
+  }
 }
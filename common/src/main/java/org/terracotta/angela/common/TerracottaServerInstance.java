@@ -16,6 +16,8 @@
  */
 package org.terracotta.angela.common;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.terracotta.angela.common.distribution.Distribution;
 import org.terracotta.angela.common.distribution.DistributionController;
 import org.terracotta.angela.common.net.DisruptionProvider;
@@ -38,6 +40,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * Terracotta server instance
@@ -45,6 +49,7 @@ import java.util.concurrent.ConcurrentHashMap;
  * @author Aurelien Broszniowski
  */
 public class TerracottaServerInstance implements Closeable {
+  private static final Logger logger = LoggerFactory.getLogger(TerracottaServerInstance.class);
   private static final DisruptionProvider DISRUPTION_PROVIDER = DisruptionProviderFactory.getDefault();
   private final Map<ServerSymbolicName, Disruptor> disruptionLinks = new ConcurrentHashMap<>();
   private final Map<ServerSymbolicName, Integer> proxiedPorts = new HashMap<>();
@@ -56,6 +61,8 @@ public class TerracottaServerInstance implements Closeable {
   private final PortAllocator portAllocator;
   private final String licenseFilename;
   private volatile TerracottaServerHandle serverInstance;
+  private final List<Consumer<TerracottaServerState>> stateListeners = new CopyOnWriteArrayList<>();
+  private TerracottaServerState lastState = TerracottaServerState.STOPPED;
   private final boolean netDisruptionEnabled;
   private final Topology topology;
 
@@ -90,7 +97,59 @@ public class TerracottaServerInstance implements Closeable {
   }
 
   public void create(TerracottaCommandLineEnvironment env, Map<String, String> envOverrides, List<String> startUpArgs, Duration inactivityKillerDelay) {
-    setServerHandle(this.distributionController.createTsa(terracottaServer, kitDir, workingDir, topology, proxiedPorts, env, envOverrides, startUpArgs, inactivityKillerDelay));
+    TerracottaServerHandle handle = this.distributionController.createTsa(terracottaServer, kitDir, workingDir, topology, proxiedPorts, env, envOverrides, startUpArgs, inactivityKillerDelay);
+    setServerHandle(handle);
+    if (!handle.addStateListener(state -> stateChanged(handle, state))) {
+      pollState(handle);
+    }
+    // catch up with the transitions done before the listener was registered
+    stateChanged(handle, handle.getState());
+  }
+
+  /**
+   * Registers a listener called with the current state of the server, then on each of its state transitions,
+   * including the ones of the next times it is created.
+   */
+  public synchronized void addStateListener(Consumer<TerracottaServerState> listener) {
+    stateListeners.add(listener);
+    listener.accept(lastState);
+  }
+
+  private synchronized void stateChanged(TerracottaServerHandle handle, TerracottaServerState state) {
+    if (handle != serverInstance || state == lastState) {
+      return;
+    }
+    lastState = state;
+    for (Consumer<TerracottaServerState> listener : stateListeners) {
+      try {
+        listener.accept(state);
+      } catch (RuntimeException e) {
+        logger.warn("Error notifying state: {} of server: {}", state, terracottaServer.getServerSymbolicName(), e);
+      }
+    }
+  }
+
+  private void pollState(TerracottaServerHandle handle) {
+    Thread poller = new Thread(() -> {
+      while (getServerHandle() == handle) {
+        try {
+          stateChanged(handle, handle.getState());
+          if (!handle.isAlive()) {
+            stateChanged(handle, TerracottaServerState.STOPPED);
+            return;
+          }
+        } catch (RuntimeException e) {
+          logger.debug("Error reading state of server: {}", terracottaServer.getServerSymbolicName(), e);
+        }
+        try {
+          Thread.sleep(100);
+        } catch (InterruptedException e) {
+          return;
+        }
+      }
+    }, "state-poller-" + terracottaServer.getServerSymbolicName().getSymbolicName());
+    poller.setDaemon(true);
+    poller.start();
   }
 
   private synchronized TerracottaServerHandle getServerHandle() {
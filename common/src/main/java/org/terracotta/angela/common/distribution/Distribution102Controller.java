@@ -44,6 +44,7 @@ import org.terracotta.angela.common.util.HostPort;
 import org.terracotta.angela.common.util.OS;
 import org.terracotta.angela.common.util.ProcessUtil;
 import org.terracotta.angela.common.util.RetryUtils;
+import org.terracotta.angela.common.util.StateReference;
 import org.terracotta.angela.common.util.TriggeringOutputStream;
 import org.zeroturnaround.exec.ProcessExecutor;
 import org.zeroturnaround.exec.ProcessResult;
@@ -66,6 +67,7 @@ import java.util.Properties;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static java.io.File.separator;
@@ -93,7 +95,7 @@ public class Distribution102Controller extends DistributionController {
                                           TerracottaCommandLineEnvironment tcEnv, Map<String, String> envOverrides,
                                           List<String> startUpArgs, Duration inactivityKillerDelay) {
     Map<String, String> env = tcEnv.buildEnv(envOverrides);
-    AtomicReference<TerracottaServerState> stateRef = new AtomicReference<>(TerracottaServerState.STOPPED);
+    StateReference<TerracottaServerState> stateRef = new StateReference<>(TerracottaServerState.STOPPED);
     AtomicInteger javaPid = new AtomicInteger(-1);
 
     TriggeringOutputStream serverLogOutputStream = TriggeringOutputStream
@@ -122,7 +124,7 @@ public class Distribution102Controller extends DistributionController {
             .environment(env)
             .redirectErrorStream(true)
             .redirectOutput(serverLogOutputStream),
-        stateRef,
+        stateRef::set,
         TerracottaServerState.STOPPED);
 
     while (javaPid.get() == -1 && watchedProcess.isAlive()) {
@@ -143,6 +145,12 @@ public class Distribution102Controller extends DistributionController {
         return stateRef.get();
       }
 
+      @Override
+      public boolean addStateListener(Consumer<TerracottaServerState> listener) {
+        stateRef.addListener(listener);
+        return true;
+      }
+
       @Override
       public int getJavaPid() {
         return javaPid.get();
@@ -40,6 +40,7 @@ import org.terracotta.angela.common.util.HostPort;
 import org.terracotta.angela.common.util.OS;
 import org.terracotta.angela.common.util.ProcessUtil;
 import org.terracotta.angela.common.util.RetryUtils;
+import org.terracotta.angela.common.util.StateReference;
 import org.terracotta.angela.common.util.TriggeringOutputStream;
 import org.zeroturnaround.exec.ProcessExecutor;
 import org.zeroturnaround.exec.ProcessResult;
@@ -63,6 +64,7 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static java.io.File.separator;
@@ -91,7 +93,7 @@ public class Distribution107Controller extends DistributionController {
                                           TerracottaCommandLineEnvironment tcEnv, Map<String, String> envOverrides,
                                           List<String> startUpArgs, Duration inactivityKillerDelay) {
     Map<String, String> env = tcEnv.buildEnv(envOverrides);
-    AtomicReference<TerracottaServerState> stateRef = new AtomicReference<>(TerracottaServerState.STOPPED);
+    StateReference<TerracottaServerState> stateRef = new StateReference<>(TerracottaServerState.STOPPED);
     AtomicInteger javaPid = new AtomicInteger(-1);
 
     TriggeringOutputStream serverLogOutputStream = TriggeringOutputStream
@@ -142,7 +144,7 @@ public class Distribution107Controller extends DistributionController {
             .environment(env)
             .redirectErrorStream(true)
             .redirectOutput(new TrackedOutputStream(activityTracker, serverLogOutputStream)),
-        stateRef,
+        stateRef::set,
         TerracottaServerState.STOPPED);
 
     activityTracker.start();
@@ -164,6 +166,12 @@ public class Distribution107Controller extends DistributionController {
         return stateRef.get();
       }
 
+      @Override
+      public boolean addStateListener(Consumer<TerracottaServerState> listener) {
+        stateRef.addListener(listener);
+        return true;
+      }
+
       @Override
       public int getJavaPid() {
         return javaPid.get();
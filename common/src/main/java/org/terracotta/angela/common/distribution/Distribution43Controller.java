@@ -42,6 +42,7 @@ import org.terracotta.angela.common.util.JavaBinaries;
 import org.terracotta.angela.common.util.OS;
 import org.terracotta.angela.common.util.ProcessUtil;
 import org.terracotta.angela.common.util.RetryUtils;
+import org.terracotta.angela.common.util.StateReference;
 import org.terracotta.angela.common.util.TriggeringOutputStream;
 import org.zeroturnaround.exec.ProcessExecutor;
 import org.zeroturnaround.exec.ProcessResult;
@@ -59,6 +60,7 @@ import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -91,7 +93,7 @@ public class Distribution43Controller extends DistributionController {
                                           Topology topology, Map<ServerSymbolicName, Integer> proxiedPorts,
                                           TerracottaCommandLineEnvironment tcEnv, Map<String, String> envOverrides,
                                           List<String> startUpArgs, Duration inactivityKillerDelay) {
-    AtomicReference<TerracottaServerState> stateRef = new AtomicReference<>(STOPPED);
+    StateReference<TerracottaServerState> stateRef = new StateReference<>(STOPPED);
 
     TriggeringOutputStream serverLogOutputStream = getServerLogOutputStream(stateRef);
     serverLogOutputStream = tsaFullLogging ?
@@ -112,7 +114,7 @@ public class Distribution43Controller extends DistributionController {
             .environment(env)
             .redirectErrorStream(true)
             .redirectOutput(serverLogOutputStream),
-        stateRef,
+        stateRef::set,
         STOPPED);
 
     Number javaPid = findWithJcmdJavaPidOf(terracottaServer.getId().toString(), tcEnv);
@@ -122,6 +124,12 @@ public class Distribution43Controller extends DistributionController {
         return stateRef.get();
       }
 
+      @Override
+      public boolean addStateListener(Consumer<TerracottaServerState> listener) {
+        stateRef.addListener(listener);
+        return true;
+      }
+
       @Override
       public int getJavaPid() {
         return javaPid.intValue();
@@ -160,7 +168,7 @@ public class Distribution43Controller extends DistributionController {
     };
   }
 
-  TriggeringOutputStream getServerLogOutputStream(AtomicReference<TerracottaServerState> stateRef) {
+  TriggeringOutputStream getServerLogOutputStream(StateReference<TerracottaServerState> stateRef) {
     AtomicReference<TerracottaServerState> tempStateRef = new AtomicReference<>(STOPPED);
     AtomicBoolean isManagementServerStarted = new AtomicBoolean(false);
 
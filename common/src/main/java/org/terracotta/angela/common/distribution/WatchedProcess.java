@@ -24,6 +24,7 @@ import org.zeroturnaround.process.PidUtil;
 
 import java.io.IOException;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 
 class WatchedProcess<S extends Enum<S>> {
@@ -32,15 +33,19 @@ class WatchedProcess<S extends Enum<S>> {
   private final int pid;
 
   public WatchedProcess(ProcessExecutor processExecutor, final AtomicReference<S> stateRef, final S deadState) {
+    this(processExecutor, stateRef::set, deadState);
+  }
+
+  public WatchedProcess(ProcessExecutor processExecutor, final Consumer<S> stateSetter, final S deadState) {
     processExecutor.addListener(new ProcessListener() {
       @Override
       public void afterFinish(Process process, ProcessResult result) {
-        stateRef.set(deadState);
+        stateSetter.accept(deadState);
       }
 
       @Override
       public void afterStop(Process process) {
-        stateRef.set(deadState);
+        stateSetter.accept(deadState);
       }
     });
 
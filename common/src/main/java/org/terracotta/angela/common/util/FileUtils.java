@@ -17,22 +17,38 @@
 package org.terracotta.angela.common.util;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.nio.file.CopyOption;
 import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.PosixFilePermission;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
+import static java.nio.file.StandardCopyOption.COPY_ATTRIBUTES;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static java.nio.file.attribute.PosixFilePermission.GROUP_EXECUTE;
 import static java.nio.file.attribute.PosixFilePermission.OTHERS_EXECUTE;
 import static java.nio.file.attribute.PosixFilePermission.OWNER_EXECUTE;
 
 public class FileUtils {
+  // hard links first, then symbolic links
+  private static final List<Link> LINKS = Arrays.asList(Files::createLink, (link, target) -> Files.createSymbolicLink(link, target.toAbsolutePath()));
+  private static final List<Link> HARD_LINKS = Collections.singletonList(Files::createLink);
+
   public static void setCorrectPermissions(Path dest) {
     if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
       return;
@@ -104,4 +120,119 @@ public class FileUtils {
       throw new UncheckedIOException(e);
     }
   }
+
+  /**
+   * @return the hex-encoded SHA-256 of the file content
+   */
+  public static String sha256(Path file) {
+    try (InputStream is = Files.newInputStream(file)) {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      byte[] buffer = new byte[64 * 1024];
+      int count;
+      while ((count = is.read(buffer)) != -1) {
+        digest.update(buffer, 0, count);
+      }
+      return toHex(digest.digest());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public static String toHex(byte[] bytes) {
+    StringBuilder sb = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Makes dest point to the same content as source without copying bytes when possible:
+   * a hard link is tried first, then a symbolic link, and a real copy is done as a last resort.
+   */
+  public static void linkOrCopy(Path source, Path dest) {
+    linkOrCopy(source, dest, LINKS);
+  }
+
+  /**
+   * Makes dest an independent entry with the same content as source: a hard link, or a real copy when it is not
+   * supported. Unlike a symbolic link, it stays valid when source is deleted or replaced.
+   */
+  public static void hardLinkOrCopy(Path source, Path dest) {
+    linkOrCopy(source, dest, HARD_LINKS);
+  }
+
+  static void linkOrCopy(Path source, Path dest, List<Link> links) {
+    try {
+      Files.deleteIfExists(dest);
+      for (Link link : links) {
+        try {
+          link.create(dest, source);
+          return;
+        } catch (IOException | UnsupportedOperationException e) {
+          // not supported by the file system, source and dest are on different devices, or not allowed (i.e. symbolic
+          // links on Windows without the required privilege)
+        }
+      }
+      Files.copy(source, dest, REPLACE_EXISTING);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Mirrors the source directory tree into dest: the files accepted by the filter are linked with
+   * {@link #linkOrCopy(Path, Path)}, and the other ones are copied so that they can be modified without altering the
+   * source. Linked files must thus never be modified in place.
+   */
+  public static void linkOrCopyTree(Path source, Path dest, Predicate<Path> link) {
+    linkOrCopyTree(source, dest, link, LINKS);
+  }
+
+  /**
+   * Like {@link #linkOrCopyTree(Path, Path, Predicate)}, but the files accepted by the filter are linked with
+   * {@link #hardLinkOrCopy(Path, Path)}, so that dest stays valid when source is deleted.
+   */
+  public static void hardLinkOrCopyTree(Path source, Path dest, Predicate<Path> link) {
+    linkOrCopyTree(source, dest, link, HARD_LINKS);
+  }
+
+  static void linkOrCopyTree(Path source, Path dest, Predicate<Path> link, List<Link> links) {
+    try {
+      Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+          Path target = dest.resolve(source.relativize(dir).toString());
+          if (!Files.isDirectory(target)) {
+            Files.copy(dir, target, COPY_ATTRIBUTES);
+          }
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+          Path target = dest.resolve(source.relativize(file).toString());
+          if (link.test(file)) {
+            linkOrCopy(file, target, links);
+          } else {
+            try {
+              Files.copy(file, target, REPLACE_EXISTING, COPY_ATTRIBUTES);
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          }
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @FunctionalInterface
+  interface Link {
+    void create(Path link, Path target) throws IOException;
+  }
 }
@@ -20,22 +20,68 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.ArchiveInputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
-import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 
 import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.WRITE;
 import static org.terracotta.angela.common.util.FileUtils.setCorrectPermissions;
 
 public class KitUtils {
+  private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+  // entries of a streamed archive are handed over to the writer threads in memory, up to these sizes. Bigger entries
+  // are written by the thread reading the archive
+  private static final int MAX_BUFFERED_ENTRY_SIZE = 8 * 1024 * 1024;
+  private static final int MAX_BUFFERED_SIZE = 64 * 1024 * 1024;
+
+  /**
+   * Extracts a zip in parallel: its central directory gives access to each entry, so that entries are inflated and
+   * written by several threads at the same time.
+   */
+  @SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
   public static void extractZip(Path kitInstaller, Path kitDest) {
-    try (ArchiveInputStream archiveIs = new ZipArchiveInputStream(new BufferedInputStream(Files.newInputStream(kitInstaller)))) {
-      extractArchive(archiveIs, kitDest);
+    try (ZipFile zipFile = new ZipFile(kitInstaller.toFile())) {
+      List<Callable<Void>> tasks = new ArrayList<>();
+      for (ZipEntry entry : Collections.list(zipFile.entries())) {
+        Path pathEntryOutput = kitDest.resolve(entry.getName());
+        if (!entry.isDirectory()) {
+          // directories are created upfront so that the writers do not race for them
+          Files.createDirectories(pathEntryOutput.getParent());
+          tasks.add(() -> {
+            try (InputStream is = zipFile.getInputStream(entry)) {
+              Files.copy(is, pathEntryOutput);
+            }
+            return null;
+          });
+        }
+      }
+      ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+      try {
+        awaitAll(pool.invokeAll(tasks));
+      } finally {
+        pool.shutdownNow();
+      }
     } catch (IOException ioe) {
       ioe.printStackTrace();
       throw new UncheckedIOException("Error when extracting installer package", ioe);
@@ -43,22 +89,56 @@ public class KitUtils {
     setCorrectPermissions(kitDest);
   }
 
+  /**
+   * Extracts an archive which can only be read sequentially: the calling thread reads (and decompresses) the entries
+   * while other threads write them to disk.
+   */
   @SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
   public static void extractArchive(ArchiveInputStream archiveIs, Path pathOutput) throws IOException {
-    while (true) {
-      ArchiveEntry archiveEntry = archiveIs.getNextEntry();
-      if (archiveEntry == null) {
-        break;
-      }
+    AtomicInteger counter = new AtomicInteger();
+    ExecutorService writers = Executors.newFixedThreadPool(PARALLELISM, r -> {
+      Thread thread = new Thread(r, "archive-writer-" + counter.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+    Semaphore buffered = new Semaphore(MAX_BUFFERED_SIZE);
+    List<Future<Void>> writes = new ArrayList<>();
+    try {
+      while (true) {
+        ArchiveEntry archiveEntry = archiveIs.getNextEntry();
+        if (archiveEntry == null) {
+          break;
+        }
 
-      Path pathEntryOutput = pathOutput.resolve(archiveEntry.getName());
-      if (!archiveEntry.isDirectory()) {
-        Path parentPath = pathEntryOutput.getParent();
-        if (!Files.isDirectory(parentPath)) {
-          Files.createDirectories(parentPath);
+        Path pathEntryOutput = pathOutput.resolve(archiveEntry.getName());
+        if (!archiveEntry.isDirectory()) {
+          Path parentPath = pathEntryOutput.getParent();
+          if (!Files.isDirectory(parentPath)) {
+            Files.createDirectories(parentPath);
+          }
+          long size = archiveEntry.getSize();
+          if (size < 0 || size > MAX_BUFFERED_ENTRY_SIZE) {
+            Files.copy(archiveIs, pathEntryOutput);
+            continue;
+          }
+          buffered.acquire((int) size);
+          byte[] bytes = archiveIs.readNBytes((int) size);
+          writes.add(writers.submit(() -> {
+            try {
+              Files.write(pathEntryOutput, bytes, CREATE_NEW, WRITE);
+            } finally {
+              buffered.release((int) size);
+            }
+            return null;
+          }));
         }
-        Files.copy(archiveIs, pathEntryOutput);
       }
+      awaitAll(writes);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while extracting archive to " + pathOutput);
+    } finally {
+      writers.shutdownNow();
     }
   }
 
@@ -82,4 +162,38 @@ public class KitUtils {
       throw new UncheckedIOException("Error when getting parent dir from archive", ioe);
     }
   }
+
+  private static void awaitAll(List<Future<Void>> futures) throws IOException {
+    IOException failure = null;
+    for (Future<Void> future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        IOException error = ioException(e.getCause());
+        if (failure == null) {
+          failure = error;
+        } else {
+          failure.addSuppressed(error);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while extracting archive");
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * The fork join pool wraps the checked exceptions of its tasks into runtime exceptions: unwraps them.
+   */
+  private static IOException ioException(Throwable failure) {
+    for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+      if (cause instanceof IOException) {
+        return (IOException) cause;
+      }
+    }
+    return new IOException(failure);
+  }
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.common.util;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * A reference to the state of a process, which tells its listeners about each state transition.
+ * Listeners are called in the order of the transitions, by the thread changing the state.
+ */
+public class StateReference<S> {
+
+  private final List<Consumer<S>> listeners = new CopyOnWriteArrayList<>();
+  private volatile S state;
+
+  public StateReference(S initialState) {
+    this.state = initialState;
+  }
+
+  public S get() {
+    return state;
+  }
+
+  public synchronized void set(S newState) {
+    S oldState = state;
+    state = newState;
+    if (!Objects.equals(oldState, newState)) {
+      listeners.forEach(listener -> listener.accept(newState));
+    }
+  }
+
+  public synchronized boolean compareAndSet(S expectedState, S newState) {
+    if (state != expectedState) {
+      return false;
+    }
+    set(newState);
+    return true;
+  }
+
+  public void addListener(Consumer<S> listener) {
+    listeners.add(listener);
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.common.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class FileUtilsTest {
+
+  private static final FileUtils.Link FAILING_LINK = (link, target) -> {
+    throw new IOException("Invalid cross-device link");
+  };
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testLinkOrCopyTree() throws Exception {
+    Path source = kit();
+    Path dest = temporaryFolder.getRoot().toPath().resolve("dest");
+
+    FileUtils.linkOrCopyTree(source, dest, file -> file.toString().endsWith(".jar"));
+
+    assertThat(Files.isSameFile(source.resolve("lib/a.jar"), dest.resolve("lib/a.jar")), equalTo(true));
+    assertThat(Files.isSameFile(source.resolve("conf/tc-config.xml"), dest.resolve("conf/tc-config.xml")), equalTo(false));
+    assertThat(Files.isDirectory(dest.resolve("logs")), equalTo(true));
+
+    // the copied files can be modified without altering the source
+    Files.write(dest.resolve("conf/tc-config.xml"), "<modified/>".getBytes(UTF_8));
+    assertThat(read(source.resolve("conf/tc-config.xml")), equalTo("<tc-config/>"));
+  }
+
+  @Test
+  public void testLinkOrCopyTreeCopiesWhenLinksFail() throws Exception {
+    Path source = kit();
+    Path dest = temporaryFolder.getRoot().toPath().resolve("dest");
+
+    FileUtils.linkOrCopyTree(source, dest, file -> true, Collections.singletonList(FAILING_LINK));
+
+    assertThat(Files.isSameFile(source.resolve("lib/a.jar"), dest.resolve("lib/a.jar")), equalTo(false));
+    assertThat(Files.isSymbolicLink(dest.resolve("lib/a.jar")), equalTo(false));
+    assertThat(read(dest.resolve("lib/a.jar")), equalTo("jar"));
+    assertThat(read(dest.resolve("conf/tc-config.xml")), equalTo("<tc-config/>"));
+  }
+
+  @Test
+  public void testLinkOrCopyFallsBackToSymbolicLink() throws Exception {
+    Path source = kit().resolve("lib/a.jar");
+    Path dest = temporaryFolder.getRoot().toPath().resolve("a.jar");
+
+    FileUtils.linkOrCopy(source, dest, Arrays.asList(FAILING_LINK, (link, target) -> Files.createSymbolicLink(link, target.toAbsolutePath())));
+
+    assertThat(Files.isSymbolicLink(dest), equalTo(true));
+    assertThat(read(dest), equalTo("jar"));
+  }
+
+  @Test
+  public void testLinkOrCopyReplacesExistingFile() throws Exception {
+    Path source = kit().resolve("lib/a.jar");
+    Path dest = Files.write(temporaryFolder.getRoot().toPath().resolve("a.jar"), "previous build".getBytes(UTF_8));
+
+    FileUtils.linkOrCopy(source, dest);
+
+    assertThat(read(dest), equalTo("jar"));
+  }
+
+  @Test
+  public void testHardLinkOrCopyOutlivesSource() throws Exception {
+    Path source = kit().resolve("lib/a.jar");
+    Path dest = temporaryFolder.getRoot().toPath().resolve("a.jar");
+
+    FileUtils.hardLinkOrCopy(source, dest);
+    Files.delete(source);
+
+    assertThat(Files.isSymbolicLink(dest), equalTo(false));
+    assertThat(read(dest), equalTo("jar"));
+  }
+
+  private Path kit() throws IOException {
+    Path kit = temporaryFolder.newFolder("kit").toPath();
+    Files.write(Files.createDirectories(kit.resolve("lib")).resolve("a.jar"), "jar".getBytes(UTF_8));
+    Files.write(Files.createDirectories(kit.resolve("conf")).resolve("tc-config.xml"), "<tc-config/>".getBytes(UTF_8));
+    Files.createDirectories(kit.resolve("logs"));
+    return kit;
+  }
+
+  private static String read(Path file) throws IOException {
+    return new String(Files.readAllBytes(file), UTF_8);
+  }
+}
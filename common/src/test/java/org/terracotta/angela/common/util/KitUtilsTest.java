@@ -0,0 +1,159 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.angela.common.util;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+public class KitUtilsTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testExtractZip() throws Exception {
+    Map<String, byte[]> entries = entries();
+    Path zip = temporaryFolder.getRoot().toPath().resolve("kit.zip");
+    try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zip))) {
+      zos.putNextEntry(new ZipEntry("kit/"));
+      zos.closeEntry();
+      for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+        zos.putNextEntry(new ZipEntry(entry.getKey()));
+        zos.write(entry.getValue());
+        zos.closeEntry();
+      }
+    }
+    Path dest = temporaryFolder.newFolder("dest").toPath();
+
+    KitUtils.extractZip(zip, dest);
+
+    assertExtracted(entries, dest);
+  }
+
+  @Test
+  public void testExtractTarGz() throws Exception {
+    Map<String, byte[]> entries = entries();
+    // bigger than what is buffered in memory: written by the reading thread between buffered entries
+    entries.put("kit/lib/big.jar", random(9 * 1024 * 1024, 1));
+    entries.put("kit/lib/after-big.jar", random(10, 2));
+    Path tarGz = tarGz(entries);
+    Path dest = temporaryFolder.newFolder("dest").toPath();
+
+    KitUtils.extractTarGz(tarGz, dest);
+
+    assertExtracted(entries, dest);
+  }
+
+  @Test
+  public void testExtractZipPropagatesWriteErrors() throws Exception {
+    Path zip = temporaryFolder.getRoot().toPath().resolve("kit.zip");
+    try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zip))) {
+      zos.putNextEntry(new ZipEntry("kit/a.txt"));
+      zos.write(new byte[]{1});
+      zos.closeEntry();
+    }
+    Path dest = temporaryFolder.newFolder("dest").toPath();
+    Files.createDirectories(dest.resolve("kit"));
+    Files.write(dest.resolve("kit").resolve("a.txt"), new byte[]{2});
+
+    try {
+      KitUtils.extractZip(zip, dest);
+      fail("expected UncheckedIOException");
+    } catch (UncheckedIOException e) {
+      assertThat(e.getCause(), instanceOf(FileAlreadyExistsException.class));
+    }
+  }
+
+  @Test
+  public void testExtractTarGzPropagatesWriteErrors() throws Exception {
+    Map<String, byte[]> entries = entries();
+    Path tarGz = tarGz(entries);
+    Path dest = temporaryFolder.newFolder("dest").toPath();
+    Files.createDirectories(dest.resolve("kit").resolve("lib"));
+    Files.write(dest.resolve("kit").resolve("lib").resolve("4.jar"), new byte[]{2});
+
+    try {
+      KitUtils.extractTarGz(tarGz, dest);
+      fail("expected UncheckedIOException");
+    } catch (UncheckedIOException e) {
+      assertThat(e.getCause(), instanceOf(FileAlreadyExistsException.class));
+    }
+  }
+
+  /**
+   * Many entries in nested directories which are not entries of the archive themselves, so that the parallel writers
+   * need the directories to be created for them.
+   */
+  private static Map<String, byte[]> entries() {
+    Map<String, byte[]> entries = new LinkedHashMap<>();
+    for (int i = 0; i < 200; i++) {
+      entries.put("kit/" + (i % 2 == 0 ? "lib" : "server/plugins/lib" + (i % 7)) + "/" + i + ".jar", random(i * 97, i));
+    }
+    entries.put("kit/bin/start.sh", random(0, 0));
+    return entries;
+  }
+
+  private static byte[] random(int size, long seed) {
+    byte[] bytes = new byte[size];
+    new Random(seed).nextBytes(bytes);
+    return bytes;
+  }
+
+  private Path tarGz(Map<String, byte[]> entries) throws IOException {
+    Path tarGz = temporaryFolder.getRoot().toPath().resolve("kit.tar.gz");
+    try (OutputStream os = Files.newOutputStream(tarGz);
+         TarArchiveOutputStream tos = new TarArchiveOutputStream(new GzipCompressorOutputStream(os))) {
+      for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+        TarArchiveEntry tarEntry = new TarArchiveEntry(entry.getKey());
+        tarEntry.setSize(entry.getValue().length);
+        tos.putArchiveEntry(tarEntry);
+        tos.write(entry.getValue());
+        tos.closeArchiveEntry();
+      }
+    }
+    return tarGz;
+  }
+
+  private static void assertExtracted(Map<String, byte[]> entries, Path dest) throws IOException {
+    for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+      assertArrayEquals(entry.getKey(), entry.getValue(), Files.readAllBytes(dest.resolve(entry.getKey())));
+    }
+    assertThat(Files.isExecutable(dest.resolve("kit/bin/start.sh")), equalTo(true));
+  }
+}